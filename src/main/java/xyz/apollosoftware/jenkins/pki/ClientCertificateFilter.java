@@ -2,37 +2,47 @@ package xyz.apollosoftware.jenkins.pki;
 
 import hudson.model.User;
 import hudson.tasks.Mailer;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import hudson.util.Scrambler;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jenkins.model.Jenkins;
 import jenkins.security.ApiTokenProperty;
-import org.springframework.ldap.core.AttributesMapper;
-import org.springframework.ldap.core.LdapClient;
-import org.springframework.ldap.core.support.DefaultDirObjectFactory;
-import org.springframework.ldap.core.support.LdapContextSource;
 import org.springframework.security.authentication.ott.OneTimeTokenAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import xyz.apollosoftware.jenkins.pki.metrics.AuthenticationMetrics;
+import xyz.apollosoftware.jenkins.pki.metrics.AuthenticationMetrics.AnonymousReason;
+import xyz.apollosoftware.jenkins.pki.metrics.AuthenticationMetrics.Stage;
+import xyz.apollosoftware.jenkins.pki.services.APITokenCache;
+import xyz.apollosoftware.jenkins.pki.services.AuthenticationCache;
+import xyz.apollosoftware.jenkins.pki.services.AuthorizationFallback;
+import xyz.apollosoftware.jenkins.pki.services.GroupDictionary;
+import xyz.apollosoftware.jenkins.pki.services.IdentityCookie;
+import xyz.apollosoftware.jenkins.pki.services.LDAPCircuitBreaker;
+import xyz.apollosoftware.jenkins.pki.services.LDAPDirectory;
 import xyz.apollosoftware.jenkins.pki.services.LDAPCache;
-import xyz.apollosoftware.jenkins.pki.settings.CustomAttributeSelector;
+import xyz.apollosoftware.jenkins.pki.services.LDAPReplicaSet;
+import xyz.apollosoftware.jenkins.pki.services.LDAPUnavailableException;
+import xyz.apollosoftware.jenkins.pki.services.LDAPWarmUp;
+import xyz.apollosoftware.jenkins.pki.services.UserStateWriter;
 import xyz.apollosoftware.jenkins.pki.struct.*;
-import xyz.apollosoftware.jenkins.pki.x500.Principal;
+import xyz.apollosoftware.jenkins.pki.x500.SubjectExtractionPlan;
 
 import java.io.IOException;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-
-import static org.springframework.ldap.query.LdapQueryBuilder.query;
-import static xyz.apollosoftware.jenkins.pki.struct.LDAPSettings.*;
 
 public class ClientCertificateFilter implements Filter {
 
@@ -43,12 +53,121 @@ public class ClientCertificateFilter implements Filter {
      */
     private static final String X509_CERTIFICATE_ATTRIBUTE = "jakarta.servlet.request.X509Certificate";
 
-    private final PKIMapping pkiMapping;
+    /**
+     * The prefix (matched case-insensitively) of an {@code Authorization} header carrying HTTP Basic credentials.
+     */
+    private static final String BASIC_AUTHORIZATION_PREFIX = "Basic ";
+
+    /**
+     * The maximum number of suspended requests waiting for an LDAP enrichment thread. Further requests are enriched
+     * on their own request thread.
+     */
+    private static final int ENRICHMENT_QUEUE_CAPACITY = 1000;
+
+    /**
+     * The plan for extracting users from the subjects of their certificates, compiled from the realm's
+     * {@link PKIMapping}.
+     */
+    private final SubjectExtractionPlan subjectExtractionPlan;
     private final LDAPMapping ldapMapping;
 
-    public ClientCertificateFilter(PKIMapping pkiMapping, LDAPMapping ldapMapping) {
-        this.pkiMapping = pkiMapping;
+    /**
+     * The realm configuration version that {@link AuthenticationCache} entries are created with.
+     */
+    private final long configVersion;
+
+    /**
+     * The duration (in seconds) that authentication results are cached for, or zero if they are not cached.
+     */
+    private final int authenticationCacheDuration;
+
+    /**
+     * The identity cookies issued to (and accepted from) clients, or null if they are not enabled.
+     */
+    @Nullable
+    private final IdentityCookie identityCookie;
+
+    /**
+     * The (pooled) LDAP directory, or null if LDAP is not enabled.
+     */
+    @Nullable
+    private final LDAPDirectory ldapDirectory;
+
+    /**
+     * The circuit breaker (and bulkhead) for LDAP searches, or null if LDAP is not enabled.
+     */
+    @Nullable
+    private final LDAPCircuitBreaker ldapCircuitBreaker;
+
+    /**
+     * The LDAP cache warm-up for this filter's configuration, or null if it is not enabled.
+     */
+    @Nullable
+    private final LDAPWarmUp ldapWarmUp;
+
+    /**
+     * The executor that users are enriched from LDAP on while their requests are suspended, or null if requests are
+     * not suspended (see {@link LDAPResilienceSettings#asyncEnrichment()}).
+     */
+    @Nullable
+    private final ThreadPoolExecutor ldapEnrichmentExecutor;
+
+    public ClientCertificateFilter(
+        SubjectExtractionPlan subjectExtractionPlan,
+        LDAPMapping ldapMapping,
+        int authenticationCacheDuration,
+        int identityCookieDuration
+    ) {
+        this.subjectExtractionPlan = subjectExtractionPlan;
         this.ldapMapping = ldapMapping;
+        this.configVersion = AuthenticationCache.nextConfigVersion();
+
+        // Cached authentication results include the user's LDAP entry, so they must not outlive the LDAP cache.
+        if (ldapMapping.isEnabled()) {
+            authenticationCacheDuration = Math.min(authenticationCacheDuration, ldapMapping.settings().cacheDuration());
+        }
+        this.authenticationCacheDuration = authenticationCacheDuration;
+
+        // Likewise, identity cookies carry the user's groups, and cannot be revoked - so they are not issued at all if
+        // LDAP results are not cached.
+        if (ldapMapping.isEnabled()) {
+            identityCookieDuration = Math.min(identityCookieDuration, ldapMapping.settings().cacheDuration());
+        }
+        this.identityCookie = identityCookieDuration > 0 ? new IdentityCookie(identityCookieDuration) : null;
+
+        this.ldapDirectory = ldapMapping.isEnabled() ? new LDAPDirectory(ldapMapping.settings()) : null;
+        this.ldapCircuitBreaker = ldapMapping.isEnabled()
+            ? new LDAPCircuitBreaker(ldapMapping.settings().resilience(), System::currentTimeMillis)
+            : null;
+        if (ldapMapping.isEnabled()) LDAPCache.get().configure(ldapMapping.settings().cache());
+
+        this.ldapWarmUp = ldapDirectory != null &&
+                ldapMapping.settings().isCacheEnabled() &&
+                ldapMapping.settings().cache().warmUp()
+            ? LDAPWarmUp.schedule(ldapDirectory, ldapMapping)
+            : null;
+        if (ldapDirectory != null && ldapMapping.settings().resilience().fallback()) AuthorizationFallback.get().schedule();
+
+        this.ldapEnrichmentExecutor = ldapDirectory != null && ldapMapping.settings().resilience().asyncEnrichment()
+            ? createEnrichmentExecutor(ldapMapping.settings().resilience().maxConcurrentSearches())
+            : null;
+    }
+
+    @Override
+    public void destroy() {
+        if (ldapWarmUp != null) ldapWarmUp.cancel();
+        if (ldapEnrichmentExecutor != null) ldapEnrichmentExecutor.shutdown();
+        if (ldapDirectory != null) ldapDirectory.close();
+    }
+
+    /**
+     * Get the executor that users are enriched from LDAP on while their requests are suspended.
+     *
+     * @return the executor, or null if requests are not suspended.
+     */
+    @Nullable
+    ThreadPoolExecutor ldapEnrichmentExecutor() {
+        return ldapEnrichmentExecutor;
     }
 
     @Nullable
@@ -56,15 +175,22 @@ public class ClientCertificateFilter implements Filter {
         if (!(request instanceof HttpServletRequest r)) return null;
 
         final String authorizationHeader = r.getHeader("Authorization");
-        if (authorizationHeader == null || !authorizationHeader.toLowerCase().startsWith("basic ")) return null;
+        if (authorizationHeader == null ||
+            !authorizationHeader.regionMatches(true, 0, BASIC_AUTHORIZATION_PREFIX, 0, BASIC_AUTHORIZATION_PREFIX.length())) {
+            return null;
+        }
 
-        final var basicAuth = Scrambler.descramble(authorizationHeader.substring(6));
-        final var basicAuthComponents = basicAuth.split(":");
-        if (basicAuthComponents.length == 2) {
-            final var username = basicAuthComponents[0];
-            final var password = basicAuthComponents[1];
+        // Headers that have been verified recently are served from the cache, without decoding them.
+        final var apiTokenCache = APITokenCache.get();
+        final var cacheKey = apiTokenCache.key(authorizationHeader);
+        final var cached = apiTokenCache.lookup(cacheKey);
+        if (cached != null) return cached;
 
-            if (username.isEmpty()) return null;
+        final var basicAuth = Scrambler.descramble(authorizationHeader.substring(BASIC_AUTHORIZATION_PREFIX.length()));
+        final var separator = basicAuth.indexOf(':');
+        if (separator > 0 && separator < basicAuth.length() - 1 && basicAuth.indexOf(':', separator + 1) < 0) {
+            final var username = basicAuth.substring(0, separator);
+            final var password = basicAuth.substring(separator + 1);
 
             // Look up the user and attempt to resolve their API token.
             final var user = User.get(username, false, Collections.emptyMap());
@@ -75,13 +201,21 @@ public class ClientCertificateFilter implements Filter {
 
             final var apiToken = user.getProperty(ApiTokenProperty.class);
             if (apiToken != null && apiToken.matchesPassword(password)) {
-                return new PKIUser.Builder()
+                // Prefer the identity extracted from the user's certificate (where it has been stored), so that LDAP
+                // is searched (and cached) exactly as it is for certificate authentication.
+                final var hasPKIIdentity = authorization.getPKIUsername() != null;
+                final var pkiUser = new PKIUser.Builder()
                     .dn(authorization.getPKIDistinguishedName())
-                    .username(user.getId())
+                    .username(hasPKIIdentity ? authorization.getPKIUsername() : user.getId())
                     .name(user.getFullName())
-                    .email(Optional.ofNullable(user.getProperty(Mailer.UserProperty.class)).map(Mailer.UserProperty::getEmailAddress).orElse(null))
+                    .email(hasPKIIdentity
+                        ? authorization.getPKIEmail()
+                        : Optional.ofNullable(user.getProperty(Mailer.UserProperty.class)).map(Mailer.UserProperty::getEmailAddress).orElse(null))
                     .groups(authorization.getGroups())
                     .build();
+
+                apiTokenCache.put(cacheKey, user.getId(), pkiUser);
+                return pkiUser;
             }
         }
 
@@ -90,145 +224,430 @@ public class ClientCertificateFilter implements Filter {
 
     @Override
     public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain filterChain) throws ServletException, IOException {
-        final var authentication = Optional.ofNullable(handleAPIToken(request)).or(() -> Optional.ofNullable(locateX500Subject(request))).map(pkiUser -> {
-            // Derive user information from the X.509 certificate and LDAP entry.
-            String username = pkiUser.username();
-            String name = pkiUser.name();
-            String emailAddress = pkiUser.email();
-            Set<String> groups = new HashSet<>(pkiUser.groups());
+        final var start = System.nanoTime();
+        final var suspension = ldapEnrichmentExecutor != null && isSuspendable(request, response)
+            ? new Suspension(request, response, filterChain, start)
+            : null;
 
-            if (ldapMapping.isEnabled()) {
-                final Supplier<LDAPUser> searchForLDAPUser = () -> searchLDAP(ldapMapping, pkiUser);
+        final var authentication = resolveAuthentication(request, response, suspension);
 
-                final LDAPUser ldapUser;
-                if (ldapMapping.settings().isCacheEnabled()) {
-                    final var cacheDuration = ldapMapping.settings().cacheDuration();
-                    LDAPCache.get().removeExpiredEntries(cacheDuration);
-                    ldapUser = LDAPCache.get().getOrUpdate(pkiUser, searchForLDAPUser, cacheDuration);
-                } else {
-                    ldapUser = searchForLDAPUser.get();
-                }
+        // The request has been suspended, and is continued once the user has been enriched.
+        if (authentication == null) return;
 
-                if (ldapUser.hasUsername()) username = ldapUser.username();
-                if (ldapUser.hasName()) name = ldapUser.name();
-                if (ldapUser.hasEmail()) emailAddress = ldapUser.email();
-                if (ldapUser.hasGroups()) {
-                    groups.addAll(ldapUser.groups());
-                }
-            }
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        AuthenticationMetrics.get().record(Stage.REQUEST, start);
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Resolve the {@link Authentication} for the given {@link ServletRequest}.
+     *
+     * <p>Requests carrying an API token are authenticated with it. Otherwise, the client certificate is used - and
+     * the result is served from (or added to) the {@link AuthenticationCache} where it is enabled. Where
+     * {@link IdentityCookie identity cookies} are enabled, a valid cookie for the certificate is accepted before
+     * anything else, and a cookie is issued whenever the certificate is authenticated in full (on the thread that
+     * continues the request).
+     *
+     * <p>If a {@link Suspension} is given and the user must be searched for in LDAP, the request is suspended while
+     * the user is authenticated on the {@link #ldapEnrichmentExecutor} - see {@link #suspend}.
+     *
+     * @param request to authenticate.
+     * @param response to issue an identity cookie with.
+     * @param suspension to suspend the request with, or null if it must be authenticated on the calling thread.
+     * @return the user's authentication token, {@link Jenkins#ANONYMOUS2} if the user could not be authenticated, or
+     *         null if the request was suspended.
+     */
+    @Nullable
+    private Authentication resolveAuthentication(
+        final ServletRequest request,
+        final ServletResponse response,
+        @Nullable final Suspension suspension
+    ) {
+        final var apiTokenStart = System.nanoTime();
+        final var apiTokenUser = handleAPIToken(request);
+        AuthenticationMetrics.get().record(Stage.API_TOKEN, apiTokenStart);
+        if (apiTokenUser != null) {
+            final Supplier<Resolution> authenticateAPITokenUser = () -> {
+                final var authenticated = authenticate(apiTokenUser);
+                return new Resolution(
+                    authenticated != null ? authenticated.token() : anonymous(AnonymousReason.UNMAPPED_USER),
+                    null
+                );
+            };
+
+            return suspend(apiTokenUser, authenticateAPITokenUser, suspension)
+                ? null
+                : authenticateAPITokenUser.get().authentication();
+        }
+
+        final var certificate = locateCertificate(request);
+        if (certificate == null) return Jenkins.ANONYMOUS2;
+
+        final var fingerprint = identityCookie != null || authenticationCacheDuration > 0
+            ? AuthenticationCache.fingerprint(certificate)
+            : null;
+
+        final var cookies = identityCookie != null && fingerprint != null &&
+            request instanceof HttpServletRequest &&
+            response instanceof HttpServletResponse;
+        if (cookies) {
+            final var identity = identityCookie.verify((HttpServletRequest) request, fingerprint);
+            if (identity != null) return createToken(identity.username(), identity.groups());
+        }
+
+        final var cacheKey = authenticationCacheDuration > 0 && fingerprint != null
+            ? new AuthenticationCache.Key(fingerprint, configVersion)
+            : null;
+        if (cacheKey != null) {
+            final var cached = AuthenticationCache.get().lookup(cacheKey);
+            if (cached != null) return cached.authentication();
+        }
+
+        final var locateStart = System.nanoTime();
+        final var pkiUser = locateX500Subject(certificate);
+        AuthenticationMetrics.get().record(Stage.LOCATE_X500_SUBJECT, locateStart);
+        if (pkiUser == null) return Jenkins.ANONYMOUS2;
+
+        final Supplier<Resolution> authenticateCertificateUser =
+            () -> authenticateCertificate(certificate, pkiUser, fingerprint, cacheKey, cookies);
+        if (suspend(pkiUser, authenticateCertificateUser, suspension)) return null;
+
+        final var resolution = authenticateCertificateUser.get();
+        issueCookie(request, response, resolution.cookie());
+        return resolution.authentication();
+    }
 
-            // Create the user's authentication token.
-            final var token = createToken(
-                Objects.requireNonNull(username, "Failed to derive username for user."),
-                groups
+    /**
+     * Authenticate the user extracted from a client certificate, adding the result to the {@link AuthenticationCache}
+     * and preparing an {@link IdentityCookie} to be issued (where they are enabled).
+     *
+     * @param certificate that the user presented.
+     * @param pkiUser extracted from the certificate.
+     * @param fingerprint of the certificate, or null if it is not needed.
+     * @param cacheKey to cache the result with, or null if the {@link AuthenticationCache} is not enabled.
+     * @param cookies whether an identity cookie can be issued for the request.
+     * @return the user's authentication token (or {@link Jenkins#ANONYMOUS2} if the user could not be
+     *         authenticated), and the identity cookie to issue.
+     */
+    @Nonnull
+    private Resolution authenticateCertificate(
+        final X509Certificate certificate,
+        final PKIUser pkiUser,
+        @Nullable final String fingerprint,
+        @Nullable final AuthenticationCache.Key cacheKey,
+        final boolean cookies
+    ) {
+        final var authenticated = authenticate(pkiUser);
+        if (authenticated == null) return new Resolution(anonymous(AnonymousReason.UNMAPPED_USER), null);
+
+        // Fallback authentications are not cached, so that the user is re-authenticated once LDAP is available.
+        if (cacheKey != null && !authenticated.fallback()) {
+            AuthenticationCache.get().put(
+                cacheKey,
+                certificate,
+                new AuthenticationCache.CachedAuthentication(authenticated.token(), pkiUser),
+                authenticationCacheDuration
             );
-            final var user = User.get2(token);
-            if (user == null) {
-                LOGGER.severe("Failed to map PKI user to Jenkins user: %s".formatted(pkiUser));
-                return null;
-            }
+        }
 
-            // Apply the user's display name.
-            user.setFullName(name);
+        // Likewise, fallback authentications are not issued a cookie.
+        final var cookie = cookies && !authenticated.fallback()
+            ? new PendingCookie(
+                Objects.requireNonNull(fingerprint),
+                certificate.getNotAfter().getTime(),
+                new IdentityCookie.Identity(authenticated.token().getName(), authenticated.groups())
+            )
+            : null;
 
+        return new Resolution(authenticated.token(), cookie);
+    }
+
+    /**
+     * Issue the given identity cookie (if any) with the response to the given request.
+     *
+     * @param request to issue the cookie for.
+     * @param response to add the cookie to.
+     * @param cookie to issue, or null if no cookie is to be issued.
+     */
+    private void issueCookie(
+        final ServletRequest request,
+        final ServletResponse response,
+        @Nullable final PendingCookie cookie
+    ) {
+        if (cookie == null || identityCookie == null) return;
+
+        if (request instanceof HttpServletRequest httpRequest && response instanceof HttpServletResponse httpResponse) {
+            identityCookie.issue(httpRequest, httpResponse, cookie.fingerprint(), cookie.certificateExpiry(), cookie.identity());
+        }
+    }
+
+    /**
+     * Suspend the request while the given {@link PKIUser} is authenticated on the {@link #ldapEnrichmentExecutor}, if
+     * they must be searched for in LDAP (i.e., they cannot be served from the {@link LDAPCache}).
+     *
+     * <p>Once the user has been authenticated, {@link #resume} continues the rest of the filter chain on a container
+     * thread (with {@link AsyncContext#start}), and then completes the request. The request is not dispatched again,
+     * as the container's security filters may not be mapped for async dispatches. If the executor is saturated (or has
+     * been shut down), the user is authenticated on the request thread instead, and the request is continued in the
+     * same way.
+     *
+     * @param pkiUser to authenticate.
+     * @param authenticate function that authenticates the user.
+     * @param suspension to suspend the request with, or null if it must not be suspended.
+     * @return true if the request was suspended.
+     */
+    private boolean suspend(
+        final PKIUser pkiUser,
+        final Supplier<Resolution> authenticate,
+        @Nullable final Suspension suspension
+    ) {
+        if (suspension == null || ldapEnrichmentExecutor == null || !needsLDAPSearch(pkiUser)) return false;
+
+        // LDAP searches are bounded by their own timeouts (and the bulkhead), so the container's is not applied.
+        final var request = suspension.request();
+        final var asyncContext = request.startAsync(request, suspension.response());
+        asyncContext.setTimeout(0);
+
+        final Runnable enrich = () -> {
+            Enrichment enrichment;
             try {
-                // Apply the email address to the user.
-                if (emailAddress != null) {
-                    final var emailProperty = user.getProperty(Mailer.UserProperty.class);
-                    if (emailProperty == null || !emailAddress.equals(emailProperty.getEmailAddress())) {
-                        user.addProperty(new Mailer.UserProperty(emailAddress));
-                    }
-                }
+                enrichment = new Enrichment(authenticate.get(), null);
+            } catch (RuntimeException | Error ex) {
+                enrichment = new Enrichment(null, ex);
+            }
 
-                user.addProperty(new ClientCertificateUserAuthorization(
-                    pkiUser.dn(),
-                    groups
-                ));
+            final var result = enrichment;
+            asyncContext.start(() -> resume(asyncContext, suspension, result));
+        };
 
-                user.save();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+        try {
+            ldapEnrichmentExecutor.execute(enrich);
+        } catch (RejectedExecutionException ex) {
+            enrich.run();
+        }
+
+        return true;
+    }
+
+    /**
+     * Continue a suspended request on the current (container) thread, once its user has been authenticated, and then
+     * complete it.
+     *
+     * <p>The user's authentication is set on this thread for the rest of the filter chain, and cleared afterwards (as
+     * the thread is pooled). If the user could not be authenticated, or the rest of the chain fails, the failure is
+     * logged and an error is sent (if the response has not been committed yet).
+     *
+     * @param asyncContext that the request was suspended with.
+     * @param suspension that the request was suspended with.
+     * @param enrichment the outcome of authenticating the request's user.
+     */
+    private void resume(final AsyncContext asyncContext, final Suspension suspension, final Enrichment enrichment) {
+        final var request = suspension.request();
+        final var response = (HttpServletResponse) suspension.response();
+
+        try {
+            final var resolution = enrichment.resolution();
+            if (resolution == null) {
+                fail(response, "Failed to authenticate request", enrichment.failure());
+                return;
             }
 
-            return token;
-        }).orElse(Jenkins.ANONYMOUS2);
+            issueCookie(request, response, resolution.cookie());
+            SecurityContextHolder.getContext().setAuthentication(resolution.authentication());
+            AuthenticationMetrics.get().record(Stage.REQUEST, suspension.start());
 
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        filterChain.doFilter(request, response);
+            suspension.filterChain().doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException ex) {
+            fail(response, "Failed to continue request", ex);
+        } finally {
+            SecurityContextHolder.clearContext();
+            asyncContext.complete();
+        }
     }
 
-    LdapClient createLdapClient(final LDAPSettings settings) {
-        LdapContextSource ldapContextSource = new LdapContextSource();
-        ldapContextSource.setUrl(settings.url());
-        ldapContextSource.setBase(settings.baseDN());
+    /**
+     * Log the given failure of a suspended request, and send an error (if the response has not been committed yet).
+     */
+    private static void fail(final HttpServletResponse response, final String message, @Nullable final Throwable ex) {
+        LOGGER.log(Level.WARNING, message, ex);
+        if (response.isCommitted()) return;
 
-        final var manager = settings.manager();
-        if (manager == null) {
-            ldapContextSource.setAnonymousReadOnly(true);
-        } else {
-            ldapContextSource.setAuthenticationSource(settings.manager());
+        try {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        } catch (IOException | IllegalStateException sendFailure) {
+            LOGGER.log(Level.FINE, "Failed to send error", sendFailure);
         }
+    }
 
-        ldapContextSource.setDirObjectFactory(DefaultDirObjectFactory.class);
-        ldapContextSource.afterPropertiesSet();
+    /**
+     * Returns true if the given {@link PKIUser} must be searched for in LDAP to be authenticated.
+     *
+     * @param pkiUser to check.
+     * @return true if LDAP is enabled, and the user cannot be served from the {@link LDAPCache}.
+     */
+    private boolean needsLDAPSearch(final PKIUser pkiUser) {
+        if (!ldapMapping.isEnabled()) return false;
 
-        return LdapClient.builder().contextSource(ldapContextSource).build();
+        final var settings = ldapMapping.settings();
+        return !settings.isCacheEnabled() || !LDAPCache.get().isCached(pkiUser, settings.cacheDuration());
     }
 
-    @Nonnull
-    LDAPUser searchLDAP(final LDAPMapping mapping, final PKIUser pkiUser) {
-        ClassLoader originalClassLoader = Thread.currentThread().getContextClassLoader();
-        Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
+    /**
+     * Returns true if the given request can be suspended while its user is enriched from LDAP.
+     *
+     * <p>WebSocket (and other upgrade) requests are never suspended, as they can only be upgraded on the thread that
+     * they were dispatched on.
+     *
+     * @param request to check.
+     * @param response to the request.
+     * @return true if the request is an (initial) HTTP request that supports async processing.
+     */
+    private static boolean isSuspendable(final ServletRequest request, final ServletResponse response) {
+        return request instanceof HttpServletRequest httpRequest &&
+            response instanceof HttpServletResponse &&
+            request.getDispatcherType() == DispatcherType.REQUEST &&
+            request.isAsyncSupported() &&
+            !request.isAsyncStarted() &&
+            httpRequest.getHeader("Upgrade") == null;
+    }
 
-        try {
-            final var settings = mapping.settings();
-            final var client = createLdapClient(settings);
-
-            final var user = client.search()
-                    .query(query()
-                            .countLimit(LDAP_SINGLE_ENTRY_LIMIT)
-                            .timeLimit(LDAP_TIME_LIMIT_MILLIS)
-                            .base(settings.userSearchBase())
-                            .filter(settings.userSearchFilter(), pkiUser.dn(), pkiUser.username(), pkiUser.email()))
-                    .toList(LDAPUser.mapper(mapping))
-                    .stream().findFirst().orElseThrow(() -> new UsernameNotFoundException("User could not be found in LDAP"));
-
-            final var groups = client.search()
-                    .query(query()
-                            .countLimit(LDAP_LIST_ENTRY_LIMIT)
-                            .timeLimit(LDAP_TIME_LIMIT_MILLIS)
-                            .base(settings.groupSearchBase())
-                            .filter(settings.groupSearchFilter(), user.dn()))
-                    .toList((AttributesMapper<String>) attribute -> {
-                        final var value = attribute.get("CN");
-                        if (value != null) return value.get().toString();
-                        return null;
-                    }).stream().filter(Objects::nonNull).collect(Collectors.toSet());
-
-            return user.withGroups(groups);
-        } finally {
-            Thread.currentThread().setContextClassLoader(originalClassLoader);
+    private static ThreadPoolExecutor createEnrichmentExecutor(final int threads) {
+        final var executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            60L,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(ENRICHMENT_QUEUE_CAPACITY),
+            new NamingThreadFactory(new DaemonThreadFactory(), ClientCertificateFilter.class.getSimpleName() + ".ldapEnrichment")
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Authenticate the given {@link PKIUser}, enriching it from LDAP (where enabled) and applying the resulting
+     * details to the Jenkins user.
+     *
+     * <p>If LDAP is unavailable (and {@link LDAPResilienceSettings#fallback()} is enabled), the user is authenticated
+     * with their last known groups instead - see {@link #authenticateFromLastKnownState(PKIUser, RuntimeException)}.
+     *
+     * @param pkiUser to authenticate.
+     * @return the user's authentication token, or null if the user could not be mapped to a Jenkins user.
+     */
+    @Nullable
+    private Authenticated authenticate(final PKIUser pkiUser) {
+        // Derive user information from the X.509 certificate and LDAP entry.
+        String username = pkiUser.username();
+        String name = pkiUser.name();
+        String emailAddress = pkiUser.email();
+        Set<String> groups = pkiUser.groups();
+
+        if (ldapMapping.isEnabled()) {
+            final Supplier<LDAPUser> searchForLDAPUser = () -> searchLDAP(ldapMapping, pkiUser);
+
+            final LDAPUser ldapUser;
+            try {
+                if (ldapMapping.settings().isCacheEnabled()) {
+                    final var cacheDuration = ldapMapping.settings().cacheDuration();
+                    ldapUser = LDAPCache.get().getOrUpdate(pkiUser, searchForLDAPUser, cacheDuration);
+                } else {
+                    ldapUser = searchForLDAPUser.get();
+                }
+            } catch (RuntimeException ex) {
+                final var unavailable = ex instanceof LDAPUnavailableException || LDAPReplicaSet.isUnavailable(ex);
+                if (!unavailable || !ldapMapping.settings().resilience().fallback()) throw ex;
+
+                return authenticateFromLastKnownState(pkiUser, ex);
+            }
+
+            if (ldapUser.hasUsername()) username = ldapUser.username();
+            if (ldapUser.hasName()) name = ldapUser.name();
+            if (ldapUser.hasEmail()) emailAddress = ldapUser.email();
+            if (ldapUser.hasGroups()) {
+                if (groups.isEmpty()) {
+                    groups = ldapUser.groups();
+                } else {
+                    groups = new HashSet<>(groups);
+                    groups.addAll(ldapUser.groups());
+                }
+            }
         }
+
+        // Share the group set with every other user that has the same groups.
+        groups = GroupDictionary.get().canonicalize(groups);
+
+        // Create the user's authentication token.
+        final var token = createToken(
+            Objects.requireNonNull(username, "Failed to derive username for user."),
+            groups
+        );
+        final var user = User.get2(token);
+        if (user == null) {
+            LOGGER.severe("Failed to map PKI user to Jenkins user: %s".formatted(pkiUser));
+            return null;
+        }
+
+        // Queue the user's details to be saved, if they have changed.
+        UserStateWriter.get().update(user, new UserStateWriter.UserState(
+            name,
+            emailAddress,
+            pkiUser.dn(),
+            groups,
+            pkiUser.username(),
+            pkiUser.email()
+        ));
+        AuthorizationFallback.get().record(pkiUser.dn(), user.getId());
+
+        return new Authenticated(token, groups, false);
     }
 
     /**
-     * Locate the X.500 subject from the user certificate presented during the {@link ServletRequest}.
+     * Authenticate the given {@link PKIUser} as the Jenkins user they were last authenticated as, with the groups
+     * saved in their {@link ClientCertificateUserAuthorization} - for when LDAP is unavailable.
      *
-     * <p>If authentication fails, log messages are produced and null is returned - to indicate anonymous authentication
-     * should be used instead.
+     * <p>The user's saved state is not updated.
+     *
+     * @param pkiUser to authenticate.
+     * @param failure that prevented the user from being looked up in LDAP.
+     * @return the user's authentication token.
+     * @throws RuntimeException the given failure, if the user has not been authenticated before.
+     */
+    @Nonnull
+    private Authenticated authenticateFromLastKnownState(final PKIUser pkiUser, final RuntimeException failure) {
+        final var lastKnown = AuthorizationFallback.get().lookup(pkiUser);
+        if (lastKnown == null) throw failure;
+
+        LOGGER.fine("LDAP is unavailable - authenticating %s with their last known groups".formatted(pkiUser.dn()));
+        return new Authenticated(createToken(lastKnown.user().getId(), lastKnown.groups()), lastKnown.groups(), true);
+    }
+
+    @Nonnull
+    LDAPUser searchLDAP(final LDAPMapping mapping, final PKIUser pkiUser) {
+        final var directory = Objects.requireNonNull(ldapDirectory, "LDAP is not enabled");
+        return Objects.requireNonNull(ldapCircuitBreaker).execute(() -> directory.searchUser(mapping, pkiUser));
+    }
+
+    /**
+     * Locate the user (leaf) certificate presented during the {@link ServletRequest}.
+     *
+     * <p>If there is no usable certificate, log messages are produced and null is returned - to indicate anonymous
+     * authentication should be used instead.
      *
-     * @param request to locate the X.500 subject from.
-     * @return an X.500 subject, using information gained from the X.509 certificate supplied in the request (or null).
+     * @param request to locate the certificate from.
+     * @return the user's X.509 certificate (or null).
      */
     @Nullable
-    PKIUser locateX500Subject(final ServletRequest request) {
+    X509Certificate locateCertificate(final ServletRequest request) {
         final Object maybeChain = request.getAttribute(X509_CERTIFICATE_ATTRIBUTE);
 
         // Ensure the chain is a) supplied, b) castable to an X509Certificate array.
         if (!(maybeChain instanceof X509Certificate[] chain)) {
             if (maybeChain == null) {
                 LOGGER.warning("Missing X.509 certificate - returning ANONYMOUS as user");
+                AuthenticationMetrics.get().anonymous(AnonymousReason.MISSING_CERTIFICATE);
             } else {
+                AuthenticationMetrics.get().anonymous(AnonymousReason.INVALID_CERTIFICATE_CHAIN);
                 LOGGER.severe("Invalid X.509 certificate chain value (for key = '%s') on request - returning ANONYMOUS as user".formatted(X509_CERTIFICATE_ATTRIBUTE));
             }
 
@@ -238,24 +657,36 @@ public class ClientCertificateFilter implements Filter {
         // Ensure the chain includes a user certificate...
         if (chain.length == 0 || chain[0] == null) {
             LOGGER.warning("Empty X.509 certificate chain on request - returning ANONYMOUS as user");
+            AuthenticationMetrics.get().anonymous(AnonymousReason.EMPTY_CERTIFICATE_CHAIN);
             return null;
         }
 
         // If there is a certificate in the chain, the user certificate (leaf) will be the first entry.
-        final var subject = Principal.parse(chain[0].getSubjectX500Principal(), Optional.ofNullable(pkiMapping.customAttributes())
-                .map(customAttributes -> customAttributes.stream()
-                        .map(CustomAttributeSelector::getOid)
-                        .collect(Collectors.toSet())
-                ).orElse(Collections.emptySet()));
+        return chain[0];
+    }
+
+    /**
+     * Locate the X.500 subject from the user certificate presented during the {@link ServletRequest}.
+     *
+     * <p>If authentication fails, log messages are produced and null is returned - to indicate anonymous authentication
+     * should be used instead.
+     *
+     * @param certificate to locate the X.500 subject from.
+     * @return an X.500 subject, using information gained from the X.509 certificate (or null).
+     */
+    @Nullable
+    PKIUser locateX500Subject(final X509Certificate certificate) {
+        final var subject = subjectExtractionPlan.extract(certificate.getSubjectX500Principal());
 
         if (subject == null) {
             LOGGER.warning("Failed to parse X.500 subject from X.509 certificate - returning ANONYMOUS as user");
+            AuthenticationMetrics.get().anonymous(AnonymousReason.INVALID_SUBJECT);
             return null;
         }
 
         // Extract the user's information from the subject.
-        Optional<String> username = Optional.ofNullable(pkiMapping.usernameField()).map(subject::getValueForAttribute);
-        Optional<String> name = Optional.ofNullable(pkiMapping.nameField()).map(subject::getValueForAttribute);
+        var username = subject.username();
+        var name = subject.name();
 
         // If the username has not been specified, attempt to derive it from the common name of the certificate.
         //
@@ -264,39 +695,107 @@ public class ClientCertificateFilter implements Filter {
         //
         // An alternative could be to use the Issuer DN and certificate serial number - but that is not really usable,
         // so we haven't bothered implementing that.
-        if (username.isEmpty()) {
-            final var commonName = subject.getCommonName();
-            if (commonName == null) {
+        if (username == null) {
+            username = subject.commonName();
+            if (username == null) {
                 LOGGER.warning("Failed to extract username from X.500 subject of X.509 certificate - returning ANONYMOUS as user");
+                AuthenticationMetrics.get().anonymous(AnonymousReason.MISSING_USERNAME);
                 return null;
             }
-            username = Optional.of(commonName);
         }
 
         // Now we can safely fallback to using the username instead of the name.
-        if (name.isEmpty()) name = username;
+        if (name == null) name = username;
 
         return new PKIUser.Builder()
                 .dn(subject.dn())
-                .username(username.get())
-                .name(name.get())
-                .group(Optional.ofNullable(pkiMapping.groupField()).map(subject::getValueForAttribute).orElse(null))
-                .email(Optional.ofNullable(pkiMapping.emailField()).map(subject::getValueForAttribute).orElse(null))
+                .username(username)
+                .name(name)
+                .group(subject.group())
+                .email(subject.email())
                 .build();
     }
 
+    /**
+     * Count a request that is authenticated as anonymous.
+     *
+     * @param reason the request could not be authenticated.
+     * @return {@link Jenkins#ANONYMOUS2}.
+     */
+    private static Authentication anonymous(final AnonymousReason reason) {
+        AuthenticationMetrics.get().anonymous(reason);
+        return Jenkins.ANONYMOUS2;
+    }
+
     /**
      * Create an {@link Authentication} token for the given username.
      *
-     * <p>The username must be non-null.
+     * <p>The username must be non-null. The token's authorities are shared with every other token for the same
+     * groups - see {@link GroupDictionary#authorities(Set)}.
      *
      * @param username to create the token for.
      * @return the created {@link Authentication} token.
      */
-    private static Authentication createToken(@Nonnull final String username, @Nonnull Set<String> groups) {
-        final Set<GrantedAuthority> authorities = groups.stream().map(group -> new SimpleGrantedAuthority(String.format("%s", group))).collect(Collectors.toCollection(HashSet::new));
-        authorities.add(ClientCertificateSecurityRealm.AUTHENTICATED_AUTHORITY2);
-        return new OneTimeTokenAuthenticationToken(username, authorities);
+    static Authentication createToken(@Nonnull final String username, @Nonnull Set<String> groups) {
+        return new OneTimeTokenAuthenticationToken(username, GroupDictionary.get().authorities(groups));
+    }
+
+    /**
+     * The result of authenticating a user.
+     *
+     * @param token the user's authentication token.
+     * @param groups the user's groups.
+     * @param fallback whether the user was authenticated from their last known state, because LDAP was unavailable.
+     */
+    private record Authenticated(@Nonnull Authentication token, @Nonnull Set<String> groups, boolean fallback) {
+    }
+
+    /**
+     * The result of authenticating a request.
+     *
+     * @param authentication the user's authentication token.
+     * @param cookie the identity cookie to issue with the response, or null if no cookie is to be issued.
+     */
+    private record Resolution(@Nonnull Authentication authentication, @Nullable PendingCookie cookie) {
+    }
+
+    /**
+     * An identity cookie to be issued, once the request is continued.
+     *
+     * @param fingerprint of the client certificate to bind the cookie to.
+     * @param certificateExpiry the time (in milliseconds) that the client certificate expires.
+     * @param identity to issue the cookie for.
+     */
+    private record PendingCookie(
+        @Nonnull String fingerprint,
+        long certificateExpiry,
+        @Nonnull IdentityCookie.Identity identity
+    ) {
+    }
+
+    /**
+     * A request that may be suspended while its user is enriched from LDAP.
+     *
+     * @param request to suspend.
+     * @param response to the request.
+     * @param filterChain to continue the request with, once it has been authenticated.
+     * @param start the {@link System#nanoTime()} that the request started at.
+     */
+    private record Suspension(
+        @Nonnull ServletRequest request,
+        @Nonnull ServletResponse response,
+        @Nonnull FilterChain filterChain,
+        long start
+    ) {
+    }
+
+    /**
+     * The outcome of authenticating a suspended request's user, carried to the thread that continues the request.
+     *
+     * @param resolution the result of authenticating the request, or null if authentication failed.
+     * @param failure that prevented the user from being authenticated, or null if authentication succeeded.
+     */
+    private record Enrichment(@Nullable Resolution resolution, @Nullable Throwable failure) {
     }
 
 }
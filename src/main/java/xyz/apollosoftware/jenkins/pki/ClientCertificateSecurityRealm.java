@@ -10,13 +10,21 @@ import jakarta.servlet.Filter;
 import jakarta.servlet.FilterConfig;
 import jenkins.security.HexStringConfidentialKey;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.springframework.security.authentication.*;
+import xyz.apollosoftware.jenkins.pki.services.AuthenticationCache;
+import xyz.apollosoftware.jenkins.pki.services.IdentityCookie;
+import xyz.apollosoftware.jenkins.pki.struct.GroupResolutionStrategy;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPCacheSettings;
 import xyz.apollosoftware.jenkins.pki.struct.LDAPManager;
 import xyz.apollosoftware.jenkins.pki.struct.LDAPMapping;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPPoolSettings;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPResilienceSettings;
 import xyz.apollosoftware.jenkins.pki.struct.LDAPSettings;
 import xyz.apollosoftware.jenkins.pki.struct.PKIMapping;
 import xyz.apollosoftware.jenkins.pki.userdetails.ClientCertificateUserDetailsService;
 import xyz.apollosoftware.jenkins.pki.settings.CustomAttributeSelector;
+import xyz.apollosoftware.jenkins.pki.x500.SubjectExtractionPlan;
 
 import java.util.ArrayList;
 import java.util.Set;
@@ -48,6 +56,67 @@ public class ClientCertificateSecurityRealm extends SecurityRealm {
     private final String ldapNameField;
     private final String ldapEmailField;
 
+    @Nullable
+    private Integer authenticationCacheDuration;
+    @Nullable
+    private Integer identityCookieDuration;
+
+    @Nullable
+    private GroupResolutionStrategy ldapGroupResolution;
+    @Nullable
+    private String ldapGroupMembershipAttribute;
+    @Nullable
+    private Integer ldapPageSize;
+    @Nullable
+    private Boolean ldapNestedGroups;
+    @Nullable
+    private Integer ldapNestedGroupDepth;
+    @Nullable
+    private Integer ldapGroupIndexRefreshInterval;
+    @Nullable
+    private Integer ldapChangePollInterval;
+
+    @Nullable
+    private Integer ldapCacheMaxEntries;
+    @Nullable
+    private Integer ldapCacheMaxMemory;
+    @Nullable
+    private Integer ldapCacheRefreshAhead;
+    @Nullable
+    private Integer ldapCacheStaleGrace;
+    @Nullable
+    private Integer ldapCacheJitter;
+    @Nullable
+    private Integer ldapCacheNegativeDuration;
+    @Nullable
+    private Integer ldapCacheNegativeMaxEntries;
+    @Nullable
+    private Boolean ldapCacheWarmUp;
+    @Nullable
+    private Integer ldapCacheWarmUpRate;
+
+    @Nullable
+    private Integer ldapPoolMinIdle;
+    @Nullable
+    private Integer ldapPoolMaxIdle;
+    @Nullable
+    private Integer ldapPoolMaxTotal;
+    @Nullable
+    private Boolean ldapPoolTestOnBorrow;
+    @Nullable
+    private Integer ldapPoolEvictionInterval;
+
+    @Nullable
+    private Integer ldapCircuitBreakerThreshold;
+    @Nullable
+    private Integer ldapCircuitBreakerDuration;
+    @Nullable
+    private Integer ldapMaxConcurrentSearches;
+    @Nullable
+    private Boolean ldapFallback;
+    @Nullable
+    private Boolean ldapAsyncEnrichment;
+
     @DataBoundConstructor
     public ClientCertificateSecurityRealm(
         final String usernameField,
@@ -163,6 +232,258 @@ public class ClientCertificateSecurityRealm extends SecurityRealm {
         return ldapEmailField;
     }
 
+    public Integer getAuthenticationCacheDuration() {
+        return authenticationCacheDuration;
+    }
+
+    @DataBoundSetter
+    public void setAuthenticationCacheDuration(final Integer authenticationCacheDuration) {
+        this.authenticationCacheDuration = authenticationCacheDuration;
+    }
+
+    public Integer getIdentityCookieDuration() {
+        return identityCookieDuration;
+    }
+
+    @DataBoundSetter
+    public void setIdentityCookieDuration(final Integer identityCookieDuration) {
+        this.identityCookieDuration = identityCookieDuration;
+    }
+
+    public Integer getLdapCacheMaxEntries() {
+        return ldapCacheMaxEntries;
+    }
+
+    @DataBoundSetter
+    public void setLdapCacheMaxEntries(final Integer ldapCacheMaxEntries) {
+        this.ldapCacheMaxEntries = ldapCacheMaxEntries;
+    }
+
+    public Integer getLdapCacheMaxMemory() {
+        return ldapCacheMaxMemory;
+    }
+
+    @DataBoundSetter
+    public void setLdapCacheMaxMemory(final Integer ldapCacheMaxMemory) {
+        this.ldapCacheMaxMemory = ldapCacheMaxMemory;
+    }
+
+    public Integer getLdapCacheRefreshAhead() {
+        return ldapCacheRefreshAhead;
+    }
+
+    @DataBoundSetter
+    public void setLdapCacheRefreshAhead(final Integer ldapCacheRefreshAhead) {
+        this.ldapCacheRefreshAhead = ldapCacheRefreshAhead;
+    }
+
+    public Integer getLdapCacheStaleGrace() {
+        return ldapCacheStaleGrace;
+    }
+
+    @DataBoundSetter
+    public void setLdapCacheStaleGrace(final Integer ldapCacheStaleGrace) {
+        this.ldapCacheStaleGrace = ldapCacheStaleGrace;
+    }
+
+    public Integer getLdapCacheJitter() {
+        return ldapCacheJitter;
+    }
+
+    @DataBoundSetter
+    public void setLdapCacheJitter(final Integer ldapCacheJitter) {
+        this.ldapCacheJitter = ldapCacheJitter;
+    }
+
+    public Integer getLdapCacheNegativeDuration() {
+        return ldapCacheNegativeDuration;
+    }
+
+    @DataBoundSetter
+    public void setLdapCacheNegativeDuration(final Integer ldapCacheNegativeDuration) {
+        this.ldapCacheNegativeDuration = ldapCacheNegativeDuration;
+    }
+
+    public Integer getLdapCacheNegativeMaxEntries() {
+        return ldapCacheNegativeMaxEntries;
+    }
+
+    @DataBoundSetter
+    public void setLdapCacheNegativeMaxEntries(final Integer ldapCacheNegativeMaxEntries) {
+        this.ldapCacheNegativeMaxEntries = ldapCacheNegativeMaxEntries;
+    }
+
+    public GroupResolutionStrategy getLdapGroupResolution() {
+        return ldapGroupResolution != null ? ldapGroupResolution : LDAPSettings.GROUP_RESOLUTION_DEFAULT;
+    }
+
+    @DataBoundSetter
+    public void setLdapGroupResolution(final GroupResolutionStrategy ldapGroupResolution) {
+        this.ldapGroupResolution = ldapGroupResolution;
+    }
+
+    public String getLdapGroupMembershipAttribute() {
+        return ldapGroupMembershipAttribute;
+    }
+
+    @DataBoundSetter
+    public void setLdapGroupMembershipAttribute(final String ldapGroupMembershipAttribute) {
+        this.ldapGroupMembershipAttribute = ldapGroupMembershipAttribute;
+    }
+
+    public Integer getLdapPageSize() {
+        return ldapPageSize;
+    }
+
+    @DataBoundSetter
+    public void setLdapPageSize(final Integer ldapPageSize) {
+        this.ldapPageSize = ldapPageSize;
+    }
+
+    public boolean isLdapNestedGroups() {
+        return ldapNestedGroups != null && ldapNestedGroups;
+    }
+
+    @DataBoundSetter
+    public void setLdapNestedGroups(final boolean ldapNestedGroups) {
+        this.ldapNestedGroups = ldapNestedGroups;
+    }
+
+    public Integer getLdapNestedGroupDepth() {
+        return ldapNestedGroupDepth;
+    }
+
+    @DataBoundSetter
+    public void setLdapNestedGroupDepth(final Integer ldapNestedGroupDepth) {
+        this.ldapNestedGroupDepth = ldapNestedGroupDepth;
+    }
+
+    public Integer getLdapGroupIndexRefreshInterval() {
+        return ldapGroupIndexRefreshInterval;
+    }
+
+    @DataBoundSetter
+    public void setLdapGroupIndexRefreshInterval(final Integer ldapGroupIndexRefreshInterval) {
+        this.ldapGroupIndexRefreshInterval = ldapGroupIndexRefreshInterval;
+    }
+
+    public Integer getLdapChangePollInterval() {
+        return ldapChangePollInterval;
+    }
+
+    @DataBoundSetter
+    public void setLdapChangePollInterval(final Integer ldapChangePollInterval) {
+        this.ldapChangePollInterval = ldapChangePollInterval;
+    }
+
+    public boolean isLdapCacheWarmUp() {
+        return ldapCacheWarmUp != null ? ldapCacheWarmUp : LDAPCacheSettings.WARM_UP_DEFAULT;
+    }
+
+    @DataBoundSetter
+    public void setLdapCacheWarmUp(final boolean ldapCacheWarmUp) {
+        this.ldapCacheWarmUp = ldapCacheWarmUp;
+    }
+
+    public Integer getLdapCacheWarmUpRate() {
+        return ldapCacheWarmUpRate;
+    }
+
+    @DataBoundSetter
+    public void setLdapCacheWarmUpRate(final Integer ldapCacheWarmUpRate) {
+        this.ldapCacheWarmUpRate = ldapCacheWarmUpRate;
+    }
+
+    public Integer getLdapPoolMinIdle() {
+        return ldapPoolMinIdle;
+    }
+
+    @DataBoundSetter
+    public void setLdapPoolMinIdle(final Integer ldapPoolMinIdle) {
+        this.ldapPoolMinIdle = ldapPoolMinIdle;
+    }
+
+    public Integer getLdapPoolMaxIdle() {
+        return ldapPoolMaxIdle;
+    }
+
+    @DataBoundSetter
+    public void setLdapPoolMaxIdle(final Integer ldapPoolMaxIdle) {
+        this.ldapPoolMaxIdle = ldapPoolMaxIdle;
+    }
+
+    public Integer getLdapPoolMaxTotal() {
+        return ldapPoolMaxTotal;
+    }
+
+    @DataBoundSetter
+    public void setLdapPoolMaxTotal(final Integer ldapPoolMaxTotal) {
+        this.ldapPoolMaxTotal = ldapPoolMaxTotal;
+    }
+
+    public boolean isLdapPoolTestOnBorrow() {
+        return ldapPoolTestOnBorrow != null ? ldapPoolTestOnBorrow : LDAPPoolSettings.TEST_ON_BORROW_DEFAULT;
+    }
+
+    @DataBoundSetter
+    public void setLdapPoolTestOnBorrow(final boolean ldapPoolTestOnBorrow) {
+        this.ldapPoolTestOnBorrow = ldapPoolTestOnBorrow;
+    }
+
+    public Integer getLdapPoolEvictionInterval() {
+        return ldapPoolEvictionInterval;
+    }
+
+    @DataBoundSetter
+    public void setLdapPoolEvictionInterval(final Integer ldapPoolEvictionInterval) {
+        this.ldapPoolEvictionInterval = ldapPoolEvictionInterval;
+    }
+
+    public Integer getLdapCircuitBreakerThreshold() {
+        return ldapCircuitBreakerThreshold;
+    }
+
+    @DataBoundSetter
+    public void setLdapCircuitBreakerThreshold(final Integer ldapCircuitBreakerThreshold) {
+        this.ldapCircuitBreakerThreshold = ldapCircuitBreakerThreshold;
+    }
+
+    public Integer getLdapCircuitBreakerDuration() {
+        return ldapCircuitBreakerDuration;
+    }
+
+    @DataBoundSetter
+    public void setLdapCircuitBreakerDuration(final Integer ldapCircuitBreakerDuration) {
+        this.ldapCircuitBreakerDuration = ldapCircuitBreakerDuration;
+    }
+
+    public Integer getLdapMaxConcurrentSearches() {
+        return ldapMaxConcurrentSearches;
+    }
+
+    @DataBoundSetter
+    public void setLdapMaxConcurrentSearches(final Integer ldapMaxConcurrentSearches) {
+        this.ldapMaxConcurrentSearches = ldapMaxConcurrentSearches;
+    }
+
+    public boolean isLdapFallback() {
+        return ldapFallback != null ? ldapFallback : LDAPResilienceSettings.FALLBACK_DEFAULT;
+    }
+
+    @DataBoundSetter
+    public void setLdapFallback(final boolean ldapFallback) {
+        this.ldapFallback = ldapFallback;
+    }
+
+    public boolean isLdapAsyncEnrichment() {
+        return ldapAsyncEnrichment != null ? ldapAsyncEnrichment : LDAPResilienceSettings.ASYNC_ENRICHMENT_DEFAULT;
+    }
+
+    @DataBoundSetter
+    public void setLdapAsyncEnrichment(final boolean ldapAsyncEnrichment) {
+        this.ldapAsyncEnrichment = ldapAsyncEnrichment;
+    }
+
     @Override
     public boolean canLogOut() {
         return false;
@@ -171,13 +492,13 @@ public class ClientCertificateSecurityRealm extends SecurityRealm {
     @Override
     public Filter createFilter(FilterConfig filterConfig) {
         return new ClientCertificateFilter(
-            new PKIMapping.Builder()
+            SubjectExtractionPlan.compile(new PKIMapping.Builder()
                 .usernameField(getUsernameField())
                 .nameField(getNameField())
                 .groupField(getGroupField())
                 .emailField(getEmailField())
                 .customAttributes(getCustomAttributes())
-                .build(),
+                .build()),
             new LDAPMapping.Builder()
                 .usernameField(getLdapUsernameField())
                 .nameField(getLdapNameField())
@@ -197,8 +518,45 @@ public class ClientCertificateSecurityRealm extends SecurityRealm {
                         .userSearchFilter(getUserSearchFilter())
                         .groupSearchBase(getGroupSearchBase())
                         .groupSearchFilter(getGroupSearchFilter())
+                        .groupResolution(getLdapGroupResolution())
+                        .groupMembershipAttribute(getLdapGroupMembershipAttribute())
+                        .pageSize(getLdapPageSize())
+                        .nestedGroups(isLdapNestedGroups())
+                        .nestedGroupDepth(getLdapNestedGroupDepth())
+                        .groupIndexRefreshInterval(getLdapGroupIndexRefreshInterval())
+                        .changePollInterval(getLdapChangePollInterval())
+                        .pool(
+                            new LDAPPoolSettings.Builder()
+                                .minIdle(getLdapPoolMinIdle())
+                                .maxIdle(getLdapPoolMaxIdle())
+                                .maxTotal(getLdapPoolMaxTotal())
+                                .testOnBorrow(isLdapPoolTestOnBorrow())
+                                .evictionInterval(getLdapPoolEvictionInterval())
+                                .build())
+                        .cache(
+                            new LDAPCacheSettings.Builder()
+                                .maxEntries(getLdapCacheMaxEntries())
+                                .maxMemory(getLdapCacheMaxMemory())
+                                .refreshAhead(getLdapCacheRefreshAhead())
+                                .staleGrace(getLdapCacheStaleGrace())
+                                .jitter(getLdapCacheJitter())
+                                .negativeDuration(getLdapCacheNegativeDuration())
+                                .negativeMaxEntries(getLdapCacheNegativeMaxEntries())
+                                .warmUp(isLdapCacheWarmUp())
+                                .warmUpRate(getLdapCacheWarmUpRate())
+                                .build())
+                        .resilience(
+                            new LDAPResilienceSettings.Builder()
+                                .failureThreshold(getLdapCircuitBreakerThreshold())
+                                .openDuration(getLdapCircuitBreakerDuration())
+                                .maxConcurrentSearches(getLdapMaxConcurrentSearches())
+                                .fallback(isLdapFallback())
+                                .asyncEnrichment(isLdapAsyncEnrichment())
+                                .build())
                         .build())
-                .build());
+                .build(),
+            AuthenticationCache.normalizeDuration(getAuthenticationCacheDuration()),
+            IdentityCookie.normalizeDuration(getIdentityCookieDuration()));
     }
 
     @Override
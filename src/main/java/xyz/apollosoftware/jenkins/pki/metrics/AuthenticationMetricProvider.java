@@ -0,0 +1,33 @@
+package xyz.apollosoftware.jenkins.pki.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import hudson.Extension;
+import jakarta.annotation.Nonnull;
+import jenkins.metrics.api.MetricProvider;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Registers the {@link AuthenticationMetrics} with the Metrics plugin (when it is installed), as a gauge for each
+ * metric under {@link #PREFIX}.
+ */
+@Extension(optional = true)
+public class AuthenticationMetricProvider extends MetricProvider {
+
+    public static final String PREFIX = "jenkins.pki.authentication.";
+
+    @Nonnull
+    @Override
+    public MetricSet getMetricSet() {
+        final var metrics = AuthenticationMetrics.get();
+        final var gauges = new LinkedHashMap<String, Metric>();
+        for (final var name : metrics.names()) {
+            gauges.put(PREFIX + name, (Gauge<Long>) () -> metrics.value(name));
+        }
+
+        return () -> gauges;
+    }
+
+}
@@ -0,0 +1,295 @@
+package xyz.apollosoftware.jenkins.pki.metrics;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Timers and counters for each stage of authenticating a request, cheap enough to record on every request.
+ *
+ * <p>Timers are {@link LatencyHistogram}s of durations (recorded in nanoseconds), and counters are
+ * {@link LongAdder}s - so recording never contends between threads, nor allocates. The metrics are read (by name) for
+ * the {@link AuthenticationMetricsJMX MBean} and the Metrics plugin (see {@link AuthenticationMetricProvider}), with
+ * durations reported in microseconds.
+ */
+public class AuthenticationMetrics {
+
+    private static final AuthenticationMetrics INSTANCE = new AuthenticationMetrics();
+
+    private final LatencyHistogram[] timers = new LatencyHistogram[Stage.values().length];
+
+    private final LongAdder[] counters = new LongAdder[Event.values().length];
+
+    private final LongAdder[] anonymous = new LongAdder[AnonymousReason.values().length];
+
+    /**
+     * Every metric (including the gauges registered with {@link #gauge(String, LongSupplier)}), by name.
+     */
+    private final Map<String, LongSupplier> metrics = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    AuthenticationMetrics() {
+        for (final var stage : Stage.values()) {
+            final var timer = new LatencyHistogram();
+            timers[stage.ordinal()] = timer;
+
+            metrics.put(stage.metricName + ".count", () -> timer.snapshot().count());
+            metrics.put(stage.metricName + ".mean", () -> micros(timer.snapshot().mean()));
+            metrics.put(stage.metricName + ".p50", () -> micros(timer.snapshot().quantile(0.5)));
+            metrics.put(stage.metricName + ".p99", () -> micros(timer.snapshot().quantile(0.99)));
+            metrics.put(stage.metricName + ".max", () -> micros(timer.snapshot().max()));
+        }
+
+        for (final var event : Event.values()) {
+            final var counter = new LongAdder();
+            counters[event.ordinal()] = counter;
+            metrics.put(event.metricName, counter::sum);
+        }
+
+        for (final var reason : AnonymousReason.values()) {
+            final var counter = new LongAdder();
+            anonymous[reason.ordinal()] = counter;
+            metrics.put(reason.metricName, counter::sum);
+        }
+    }
+
+    /**
+     * Get the global authentication metrics.
+     *
+     * @return the {@link AuthenticationMetrics} singleton instance.
+     */
+    public static AuthenticationMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record the duration of a stage.
+     *
+     * @param stage that has completed.
+     * @param startNanos the {@link System#nanoTime()} that the stage started at.
+     */
+    public void record(@Nonnull final Stage stage, final long startNanos) {
+        timers[stage.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Count an occurrence of an event.
+     *
+     * @param event that occurred.
+     * @param count of occurrences.
+     */
+    public void increment(@Nonnull final Event event, final long count) {
+        counters[event.ordinal()].add(count);
+    }
+
+    /**
+     * Count a single occurrence of an event.
+     *
+     * @param event that occurred.
+     */
+    public void increment(@Nonnull final Event event) {
+        counters[event.ordinal()].increment();
+    }
+
+    /**
+     * Count a request that was authenticated as anonymous.
+     *
+     * @param reason the request could not be authenticated.
+     */
+    public void anonymous(@Nonnull final AnonymousReason reason) {
+        anonymous[reason.ordinal()].increment();
+    }
+
+    /**
+     * Register a gauge: a metric that is read from elsewhere when it is reported (e.g., the size of a cache).
+     *
+     * @param name of the gauge.
+     * @param value supplies the gauge's current value.
+     */
+    public void gauge(@Nonnull final String name, @Nonnull final LongSupplier value) {
+        metrics.put(name, value);
+    }
+
+    /**
+     * Get a snapshot of the given stage's timer.
+     *
+     * @param stage to snapshot.
+     * @return the timer's {@link LatencyHistogram.Snapshot}, in nanoseconds.
+     */
+    @Nonnull
+    public LatencyHistogram.Snapshot timer(@Nonnull final Stage stage) {
+        return timers[stage.ordinal()].snapshot();
+    }
+
+    /**
+     * Get the value of the given event's counter.
+     *
+     * @param event to read.
+     * @return the number of occurrences.
+     */
+    public long count(@Nonnull final Event event) {
+        return counters[event.ordinal()].sum();
+    }
+
+    /**
+     * Get the number of requests authenticated as anonymous for the given reason.
+     *
+     * @param reason to read.
+     * @return the number of requests.
+     */
+    public long count(@Nonnull final AnonymousReason reason) {
+        return anonymous[reason.ordinal()].sum();
+    }
+
+    /**
+     * Get the names of every metric.
+     *
+     * <p>Each timer is reported as {@code <stage>.count}, {@code .mean}, {@code .p50}, {@code .p99} and {@code .max}
+     * (in microseconds), each counter as {@code <event>} and each anonymous reason as {@code anonymous.<reason>} -
+     * followed by the registered gauges.
+     *
+     * @return the metric names, in order.
+     */
+    @Nonnull
+    public List<String> names() {
+        synchronized (metrics) {
+            return List.copyOf(metrics.keySet());
+        }
+    }
+
+    /**
+     * Read the current value of the named metric.
+     *
+     * @param name of the metric.
+     * @return the metric's value, or null if there is no such metric.
+     */
+    @Nullable
+    public Long value(@Nonnull final String name) {
+        final var metric = metrics.get(name);
+        return metric != null ? metric.getAsLong() : null;
+    }
+
+    /**
+     * Read the current value of every metric.
+     *
+     * @return each metric's value, by name (see {@link #names()}).
+     */
+    @Nonnull
+    public Map<String, Long> snapshot() {
+        final var snapshot = new LinkedHashMap<String, Long>();
+        synchronized (metrics) {
+            metrics.forEach((name, value) -> snapshot.put(name, value.getAsLong()));
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Discard every recorded timing and count. Gauges are kept.
+     */
+    public void reset() {
+        for (final var timer : timers) timer.reset();
+        for (final var counter : counters) counter.reset();
+        for (final var counter : anonymous) counter.reset();
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Converts an enum constant (e.g., {@code LDAP_CACHE_HIT}) to a metric name (e.g., {@code ldapCacheHit}).
+     */
+    private static String metricName(final Enum<?> constant) {
+        final var words = constant.name().toLowerCase(Locale.ROOT).split("_");
+        final var name = new StringBuilder(words[0]);
+        for (int i = 1; i < words.length; i++) {
+            name.append(Character.toUpperCase(words[i].charAt(0))).append(words[i], 1, words[i].length());
+        }
+
+        return name.toString();
+    }
+
+    /**
+     * The timed stages of authenticating a request.
+     */
+    public enum Stage {
+        /**
+         * The whole of {@code ClientCertificateFilter.doFilter} (excluding the rest of the filter chain).
+         */
+        REQUEST,
+        /**
+         * Checking the request for an API token (and verifying it).
+         */
+        API_TOKEN,
+        /**
+         * Extracting the user from the subject of their certificate.
+         */
+        LOCATE_X500_SUBJECT,
+        /**
+         * Searching LDAP for the user's entry.
+         */
+        LDAP_USER_SEARCH,
+        /**
+         * Resolving the user's groups from LDAP (after their entry has been found).
+         */
+        LDAP_GROUP_SEARCH,
+        /**
+         * Saving a Jenkins user's changed state.
+         */
+        USER_SAVE;
+
+        private final String metricName = metricName(this);
+    }
+
+    /**
+     * The counted events.
+     */
+    public enum Event {
+        LDAP_CACHE_HIT,
+        LDAP_CACHE_MISS,
+        LDAP_CACHE_EVICTION;
+
+        private final String metricName = metricName(this);
+    }
+
+    /**
+     * The reasons for authenticating a request as anonymous.
+     */
+    public enum AnonymousReason {
+        /**
+         * The request did not carry a client certificate.
+         */
+        MISSING_CERTIFICATE,
+        /**
+         * The request's certificate attribute was not an X.509 certificate chain.
+         */
+        INVALID_CERTIFICATE_CHAIN,
+        /**
+         * The request's certificate chain was empty.
+         */
+        EMPTY_CERTIFICATE_CHAIN,
+        /**
+         * The certificate's subject could not be parsed.
+         */
+        INVALID_SUBJECT,
+        /**
+         * No username could be extracted from the certificate's subject.
+         */
+        MISSING_USERNAME,
+        /**
+         * The user could not be mapped to a Jenkins user.
+         */
+        UNMAPPED_USER;
+
+        private final String metricName = "anonymous." + metricName(this);
+    }
+
+}
@@ -0,0 +1,139 @@
+package xyz.apollosoftware.jenkins.pki.metrics;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import jakarta.annotation.Nonnull;
+import xyz.apollosoftware.jenkins.pki.services.LDAPCache;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exposes the {@link AuthenticationMetrics} as an MBean, with a (read-only, {@code long}) attribute for each metric
+ * and a {@code reset} operation.
+ */
+public class AuthenticationMetricsJMX implements DynamicMBean {
+
+    private static final Logger LOGGER = Logger.getLogger(AuthenticationMetricsJMX.class.getName());
+
+    /**
+     * The name the MBean is registered under.
+     */
+    public static final String OBJECT_NAME = "xyz.apollosoftware.jenkins.pki:type=AuthenticationMetrics";
+
+    private static final String RESET_OPERATION = "reset";
+
+    private final AuthenticationMetrics metrics;
+
+    AuthenticationMetricsJMX(@Nonnull final AuthenticationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Register the gauges that are read from the plugin's services, and the MBean (before the Metrics plugin reads
+     * its providers).
+     */
+    @Initializer(after = InitMilestone.PLUGINS_STARTED, before = InitMilestone.EXTENSIONS_AUGMENTED)
+    public static void register() {
+        final var metrics = AuthenticationMetrics.get();
+        metrics.gauge("ldapCacheSize", () -> LDAPCache.get().size());
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                new AuthenticationMetricsJMX(metrics),
+                new ObjectName(OBJECT_NAME)
+            );
+        } catch (JMException ex) {
+            LOGGER.log(Level.WARNING, "Failed to register authentication metrics MBean", ex);
+        }
+    }
+
+    /**
+     * Unregister the MBean when Jenkins shuts down.
+     */
+    @Terminator
+    public static void unregister() {
+        try {
+            final var server = ManagementFactory.getPlatformMBeanServer();
+            final var name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+        } catch (JMException ex) {
+            LOGGER.log(Level.FINE, "Failed to unregister authentication metrics MBean", ex);
+        }
+    }
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        final var value = metrics.value(attribute);
+        if (value == null) throw new AttributeNotFoundException(attribute);
+        return value;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Authentication metrics are read-only: %s".formatted(attribute.getName()));
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        final var list = new AttributeList(attributes.length);
+        for (final var attribute : attributes) {
+            final var value = metrics.value(attribute);
+            if (value != null) list.add(new Attribute(attribute, value));
+        }
+
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature) {
+        if (!RESET_OPERATION.equals(actionName)) {
+            throw new UnsupportedOperationException("Unknown operation: %s".formatted(actionName));
+        }
+
+        metrics.reset();
+        return null;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        final var attributes = metrics.names().stream()
+            .map(name -> new MBeanAttributeInfo(name, Long.class.getName(), name, true, false, false))
+            .toArray(MBeanAttributeInfo[]::new);
+
+        final var reset = new MBeanOperationInfo(
+            RESET_OPERATION,
+            "Discard every recorded timing and count",
+            new MBeanParameterInfo[0],
+            void.class.getName(),
+            MBeanOperationInfo.ACTION
+        );
+
+        return new MBeanInfo(
+            AuthenticationMetricsJMX.class.getName(),
+            "Client certificate authentication metrics (durations in microseconds)",
+            attributes,
+            null,
+            new MBeanOperationInfo[] { reset },
+            null
+        );
+    }
+
+}
@@ -0,0 +1,176 @@
+package xyz.apollosoftware.jenkins.pki.metrics;
+
+import jakarta.annotation.Nonnull;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent, fixed-size histogram of (non-negative) latencies, with log-linear buckets in the style of an
+ * HdrHistogram.
+ *
+ * <p>Each power of two is split into {@link #SUB_BUCKETS} linear sub-buckets, so every recorded value is counted in
+ * a bucket within 12.5% of it - whatever its magnitude. Each bucket is a {@link LongAdder}, so recording a value never
+ * contends with other threads, and never allocates.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * The number of linear sub-buckets that each power of two is split into.
+     */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of buckets needed to cover every non-negative {@code long}: the values below {@link #SUB_BUCKETS},
+     * then {@link #SUB_BUCKETS} buckets for each power of two up to 2<sup>62</sup>.
+     */
+    static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) counts[i] = new LongAdder();
+    }
+
+    /**
+     * Record a value. Negative values are recorded as zero.
+     *
+     * @param value to record.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+
+        counts[index(value)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Take a snapshot of the recorded values.
+     *
+     * <p>Values recorded concurrently with the snapshot may or may not be included in it.
+     *
+     * @return the {@link Snapshot}.
+     */
+    @Nonnull
+    public Snapshot snapshot() {
+        final var snapshot = new long[BUCKETS];
+        var count = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            count += snapshot[i];
+        }
+
+        return new Snapshot(snapshot, count, sum.sum(), max.get());
+    }
+
+    /**
+     * Discard all recorded values.
+     */
+    public void reset() {
+        for (final var bucket : counts) bucket.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Get the index of the bucket that counts the given (non-negative) value.
+     */
+    static int index(final long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+
+        final var exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final var subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Get the smallest value counted by the bucket at the given index.
+     */
+    static long lowerBound(final int index) {
+        if (index < SUB_BUCKETS) return index;
+
+        final var exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Get the largest value counted by the bucket at the given index.
+     */
+    static long upperBound(final int index) {
+        return index + 1 < BUCKETS ? lowerBound(index + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    /**
+     * A snapshot of a {@link LatencyHistogram}.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(final long[] counts, final long count, final long sum, final long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         *
+         * @return the count.
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Returns the mean of the recorded values.
+         *
+         * @return the mean, or zero if no values have been recorded.
+         */
+        public long mean() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        /**
+         * Returns the largest recorded value.
+         *
+         * @return the maximum, or zero if no values have been recorded.
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * Returns the value at the given quantile: the largest value counted by the bucket holding that quantile
+         * (but no more than {@link #max()}).
+         *
+         * @param quantile between 0 and 1.
+         * @return the value at the quantile, or zero if no values have been recorded.
+         */
+        public long quantile(final double quantile) {
+            if (count == 0) return 0;
+
+            final var rank = Math.max(1, (long) Math.ceil(quantile * count));
+            var seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBound(i), max);
+            }
+
+            return max;
+        }
+
+    }
+
+}
@@ -0,0 +1,272 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jenkins.security.ApiTokenProperty;
+import xyz.apollosoftware.jenkins.pki.struct.PKIUser;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * A short-lived cache of successfully verified API tokens, so that {@link ApiTokenProperty#matchesPassword(String)}
+ * (which hashes the presented token against every token the user has) is not repeated on every request.
+ *
+ * <p>Entries are keyed by an HMAC of the whole {@code Authorization} header, with a key that is randomly generated for
+ * each Jenkins process - so neither tokens nor plain hashes of them are held in memory. An entry is dropped when its
+ * user is saved (which is how changes to their API tokens, or their {@code ClientCertificateUserAuthorization}, are
+ * persisted) or deleted - see {@link APITokenCacheInvalidator}.
+ */
+public class APITokenCache {
+
+    /**
+     * The duration (in seconds) that verified tokens are cached for.
+     */
+    public static final int CACHE_DURATION = 60;
+
+    /**
+     * The maximum number of entries held by the cache.
+     */
+    public static final int MAX_ENTRIES = 10_000;
+
+    /**
+     * The fraction of {@link #MAX_ENTRIES} that eviction brings the cache back down to, so that eviction runs in
+     * batches rather than on every insertion.
+     */
+    private static final double EVICTION_TARGET = 0.9;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * The length (in bytes) of the random key used to compute cache keys.
+     */
+    private static final int SECRET_LENGTH = 32;
+
+    private static final APITokenCache INSTANCE = new APITokenCache(System::currentTimeMillis);
+
+    /**
+     * The source of the current time (in milliseconds).
+     */
+    private final LongSupplier clock;
+
+    /**
+     * A {@link Hasher} for each thread, as {@link Mac} instances are not thread-safe (and costly to create).
+     */
+    private final ThreadLocal<Hasher> hashers;
+
+    private final ConcurrentHashMap<Key, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    APITokenCache(@Nonnull final LongSupplier clock) {
+        this.clock = clock;
+
+        final var secretBytes = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(secretBytes);
+        final var secret = new SecretKeySpec(secretBytes, MAC_ALGORITHM);
+        this.hashers = ThreadLocal.withInitial(() -> new Hasher(secret));
+    }
+
+    /**
+     * Get the global API token cache.
+     *
+     * @return the {@link APITokenCache} singleton instance.
+     */
+    public static APITokenCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Build the cache key for the given {@code Authorization} header.
+     *
+     * @param authorizationHeader the header's value.
+     * @return the cache key, or null if the header cannot be cached (it contains characters outside ISO-8859-1).
+     */
+    @Nullable
+    public Key key(@Nonnull final String authorizationHeader) {
+        return hashers.get().hash(authorizationHeader);
+    }
+
+    /**
+     * Look up the user that a cached {@code Authorization} header was verified for.
+     *
+     * @param key to look up (may be null, if the header could not be cached).
+     * @return the cached user, or null if there is no (unexpired) entry.
+     */
+    @Nullable
+    public PKIUser lookup(@Nullable final Key key) {
+        if (key == null) return null;
+
+        final var entry = cache.get(key);
+        if (entry == null) return null;
+
+        if (entry.hasExpired(clock.getAsLong())) {
+            cache.remove(key, entry);
+            return null;
+        }
+
+        return entry.pkiUser();
+    }
+
+    /**
+     * Cache a successfully verified {@code Authorization} header.
+     *
+     * @param key to cache the result under (may be null, if the header could not be cached).
+     * @param userId the ID of the Jenkins user the header was verified for.
+     * @param pkiUser the identity resolved for the user.
+     */
+    public void put(@Nullable final Key key, @Nonnull final String userId, @Nonnull final PKIUser pkiUser) {
+        if (key == null) return;
+
+        final var now = clock.getAsLong();
+        cache.put(key, new CacheEntry(userId, pkiUser, now + (CACHE_DURATION * 1000L)));
+        if (cache.size() > MAX_ENTRIES) evict();
+    }
+
+    /**
+     * Remove the entries for the given Jenkins user (e.g., because their API tokens have changed).
+     *
+     * @param userId the ID of the Jenkins user.
+     */
+    public void invalidate(@Nonnull final String userId) {
+        cache.forEach((key, entry) -> {
+            if (entry.userId().equals(userId)) {
+                cache.remove(key, entry);
+            }
+        });
+    }
+
+    /**
+     * Remove all entries that have expired.
+     */
+    public void removeExpiredEntries() {
+        final var now = clock.getAsLong();
+        cache.forEach((key, entry) -> {
+            if (entry.hasExpired(now)) {
+                cache.remove(key, entry);
+            }
+        });
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return the number of cached headers.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Bring the cache down to {@link #EVICTION_TARGET} of {@link #MAX_ENTRIES}, first by dropping expired entries,
+     * then by dropping arbitrary entries.
+     *
+     * <p>Only one thread evicts at a time; other threads do not wait for it.
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) return;
+
+        try {
+            removeExpiredEntries();
+
+            final var target = (int) (MAX_ENTRIES * EVICTION_TARGET);
+            final var iterator = cache.keySet().iterator();
+            while (cache.size() > target && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * The cache key: the first 128 bits of the HMAC of the {@code Authorization} header.
+     *
+     * @param high the first 64 bits.
+     * @param low the second 64 bits.
+     */
+    public record Key(long high, long low) {
+    }
+
+    private record CacheEntry(String userId, PKIUser pkiUser, long expiresAt) {
+
+        /**
+         * Returns true if the entry has expired.
+         *
+         * @param now the current time, in milliseconds.
+         * @return true if the entry's expiry time has passed.
+         */
+        public boolean hasExpired(long now) {
+            return now > expiresAt;
+        }
+
+    }
+
+    /**
+     * Computes cache keys, reusing its buffers between headers.
+     */
+    private static final class Hasher {
+
+        private final Mac mac;
+
+        private final byte[] digest;
+
+        private byte[] buffer = new byte[256];
+
+        private Hasher(final SecretKeySpec secret) {
+            try {
+                mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(secret);
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("%s is not available".formatted(MAC_ALGORITHM), ex);
+            }
+
+            digest = new byte[mac.getMacLength()];
+        }
+
+        @Nullable
+        private Key hash(final String value) {
+            final var length = value.length();
+            if (buffer.length < length) buffer = new byte[Math.max(length, buffer.length * 2)];
+
+            // Header values are ISO-8859-1, so each character is a single byte. Anything else would be truncated (and
+            // could collide with another header), so it is not cached.
+            for (int i = 0; i < length; i++) {
+                final var c = value.charAt(i);
+                if (c > 0xFF) return null;
+                buffer[i] = (byte) c;
+            }
+
+            try {
+                mac.update(buffer, 0, length);
+                mac.doFinal(digest, 0);
+            } catch (ShortBufferException ex) {
+                throw new IllegalStateException(ex);
+            }
+
+            return new Key(readLong(digest, 0), readLong(digest, Long.BYTES));
+        }
+
+        private static long readLong(final byte[] bytes, final int offset) {
+            var value = 0L;
+            for (int i = 0; i < Long.BYTES; i++) value = (value << 8) | (bytes[offset + i] & 0xFF);
+            return value;
+        }
+
+    }
+
+}
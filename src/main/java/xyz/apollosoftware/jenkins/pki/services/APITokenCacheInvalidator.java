@@ -0,0 +1,26 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+
+/**
+ * Drops a user's cached API tokens from the {@link APITokenCache} whenever the user is saved or deleted - which covers
+ * tokens being added or revoked, and changes to their {@code ClientCertificateUserAuthorization}.
+ */
+@Extension
+public class APITokenCacheInvalidator extends SaveableListener {
+
+    @Override
+    public void onChange(final Saveable o, final XmlFile file) {
+        if (o instanceof User user) APITokenCache.get().invalidate(user.getId());
+    }
+
+    @Override
+    public void onDeleted(final Saveable o, final XmlFile file) {
+        if (o instanceof User user) APITokenCache.get().invalidate(user.getId());
+    }
+
+}
@@ -0,0 +1,253 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.security.core.Authentication;
+import xyz.apollosoftware.jenkins.pki.struct.PKIUser;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * A cache of resolved {@link Authentication} tokens, keyed by the fingerprint of the client's leaf certificate.
+ *
+ * <p>Entries are scoped to a realm configuration version, so reconfiguring the security realm implicitly invalidates
+ * every entry created with the previous configuration.
+ */
+public class AuthenticationCache {
+
+    public static final int CACHE_DURATION_DEFAULT = 30; // 30 seconds
+    public static final int CACHE_DURATION_MAX = 86400; // 1 day
+
+    /**
+     * The maximum number of entries held by the cache.
+     */
+    public static final int MAX_ENTRIES = 10_000;
+
+    /**
+     * The fraction of {@link #MAX_ENTRIES} that eviction brings the cache back down to, so that eviction runs in
+     * batches rather than on every insertion.
+     */
+    private static final double EVICTION_TARGET = 0.9;
+
+    private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
+    private static final AuthenticationCache INSTANCE = new AuthenticationCache(System::currentTimeMillis);
+
+    private static final AtomicLong CONFIG_VERSION = new AtomicLong();
+
+    private final ConcurrentHashMap<Key, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * The source of the current time (in milliseconds).
+     */
+    private final LongSupplier clock;
+
+    AuthenticationCache(@Nonnull final LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Get the global authentication cache.
+     *
+     * @return the {@link AuthenticationCache} singleton instance.
+     */
+    public static AuthenticationCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Allocate a new realm configuration version.
+     *
+     * <p>This should be called whenever a filter is created for a (potentially) new realm configuration.
+     *
+     * @return the new configuration version.
+     */
+    public static long nextConfigVersion() {
+        return CONFIG_VERSION.incrementAndGet();
+    }
+
+    /**
+     * Clamp the configured cache duration into the supported range.
+     *
+     * @param cacheDuration in seconds, or null to use the default.
+     * @return the cache duration (in seconds) to use.
+     */
+    public static int normalizeDuration(@Nullable final Integer cacheDuration) {
+        if (cacheDuration == null || cacheDuration < 0) return CACHE_DURATION_DEFAULT;
+        return Math.min(cacheDuration, CACHE_DURATION_MAX);
+    }
+
+    /**
+     * Compute the fingerprint of the given certificate.
+     *
+     * @param certificate to fingerprint.
+     * @return the hex-encoded SHA-256 fingerprint, or null if the certificate could not be encoded.
+     */
+    @Nullable
+    public static String fingerprint(@Nonnull final X509Certificate certificate) {
+        try {
+            final var digest = MessageDigest.getInstance(FINGERPRINT_ALGORITHM).digest(certificate.getEncoded());
+            return HexFormat.of().formatHex(digest);
+        } catch (CertificateEncodingException | NoSuchAlgorithmException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Look up a cached authentication result.
+     *
+     * @param key to look up.
+     * @return the cached result, or null if there is no (unexpired) entry.
+     */
+    @Nullable
+    public CachedAuthentication lookup(@Nonnull final Key key) {
+        final var entry = cache.get(key);
+        if (entry == null) return null;
+
+        if (entry.hasExpired(clock.getAsLong())) {
+            cache.remove(key, entry);
+            return null;
+        }
+
+        return entry.value;
+    }
+
+    /**
+     * Cache an authentication result.
+     *
+     * <p>The entry expires after {@code cacheDuration} seconds, or when the certificate expires - whichever is
+     * sooner.
+     *
+     * @param key to cache the result under.
+     * @param certificate the result was resolved from.
+     * @param value to cache.
+     * @param cacheDuration in seconds.
+     */
+    public void put(
+        @Nonnull final Key key,
+        @Nonnull final X509Certificate certificate,
+        @Nonnull final CachedAuthentication value,
+        final int cacheDuration
+    ) {
+        final var now = clock.getAsLong();
+        final var expiresAt = Math.min(now + (cacheDuration * 1000L), certificate.getNotAfter().getTime());
+        if (expiresAt <= now) return;
+
+        cache.put(key, new CacheEntry(value, expiresAt));
+        if (cache.size() > MAX_ENTRIES) evict(key.configVersion(), now);
+    }
+
+    /**
+     * Remove all entries that have expired.
+     */
+    public void removeExpiredEntries() {
+        final var now = clock.getAsLong();
+        cache.forEach((key, entry) -> {
+            if (entry.hasExpired(now)) {
+                cache.remove(key, entry);
+            }
+        });
+    }
+
+    /**
+     * Remove the entries for the given identities (e.g., because their LDAP entries have changed).
+     *
+     * @param identities the {@link LDAPCache} keys of the identities to remove.
+     */
+    public void invalidate(@Nonnull final Set<LDAPCache.Key> identities) {
+        if (identities.isEmpty()) return;
+
+        cache.forEach((key, entry) -> {
+            if (identities.contains(LDAPCache.Key.of(entry.value().pkiUser()))) {
+                cache.remove(key, entry);
+            }
+        });
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return the number of cached authentication results.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Bring the cache down to {@link #EVICTION_TARGET} of {@link #MAX_ENTRIES}, first by dropping expired entries (and
+     * entries for old realm configurations), then by dropping arbitrary entries.
+     *
+     * <p>Only one thread evicts at a time; other threads do not wait for it.
+     */
+    private void evict(final long configVersion, final long now) {
+        if (!evictionLock.tryLock()) return;
+
+        try {
+            cache.forEach((key, entry) -> {
+                if (key.configVersion() != configVersion || entry.hasExpired(now)) {
+                    cache.remove(key, entry);
+                }
+            });
+
+            final var target = (int) (MAX_ENTRIES * EVICTION_TARGET);
+            final var iterator = cache.keySet().iterator();
+            while (cache.size() > target && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * The cache key.
+     *
+     * @param fingerprint the hex-encoded SHA-256 fingerprint of the leaf certificate.
+     * @param configVersion of the realm configuration.
+     */
+    public record Key(@Nonnull String fingerprint, long configVersion) {
+    }
+
+    /**
+     * A cached authentication result.
+     *
+     * @param authentication the resolved {@link Authentication} token.
+     * @param pkiUser the identity the token was resolved for.
+     */
+    public record CachedAuthentication(@Nonnull Authentication authentication, @Nonnull PKIUser pkiUser) {
+    }
+
+    private record CacheEntry(CachedAuthentication value, long expiresAt) {
+
+        /**
+         * Returns true if the entry has expired.
+         *
+         * @param now the current time, in milliseconds.
+         * @return true if the entry's expiry time has passed.
+         */
+        public boolean hasExpired(long now) {
+            return now > expiresAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,135 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.User;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jenkins.util.Timer;
+import xyz.apollosoftware.jenkins.pki.struct.ClientCertificateUserAuthorization;
+import xyz.apollosoftware.jenkins.pki.struct.PKIUser;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves the last known state of users (as persisted in their {@link ClientCertificateUserAuthorization}), so that
+ * they can still be authenticated while LDAP is unavailable.
+ *
+ * <p>Users are located by the DN of their certificate. The DNs of every user are loaded from their properties in the
+ * background, once the realm's filter has been created (with the fallback enabled) and Jenkins has loaded its users -
+ * so that request threads never iterate all users, and nothing is loaded unless the realm is in use. The DNs of users
+ * that authenticate are recorded as they do.
+ */
+public class AuthorizationFallback {
+
+    private static final AuthorizationFallback INSTANCE = new AuthorizationFallback();
+
+    /**
+     * Whether Jenkins has loaded its users, so they can be loaded.
+     */
+    private static volatile boolean ready;
+
+    /**
+     * The ID of the Jenkins user for each certificate DN.
+     */
+    private final ConcurrentHashMap<String, String> userIds = new ConcurrentHashMap<>();
+
+    /**
+     * Whether loading has been requested (i.e., the realm's filter has been created).
+     */
+    private volatile boolean requested;
+
+    /**
+     * Whether loading has started - users are only loaded once, as DNs are recorded as users authenticate.
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * Get the global authorization fallback.
+     *
+     * @return the {@link AuthorizationFallback} singleton instance.
+     */
+    public static AuthorizationFallback get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start loading the certificate DN of every user, if it has been requested, once Jenkins has loaded its users.
+     */
+    @Initializer(after = InitMilestone.JOB_CONFIG_ADAPTED)
+    public static void startPending() {
+        ready = true;
+        if (INSTANCE.requested) INSTANCE.start();
+    }
+
+    /**
+     * Load the certificate DN of every user in the background (unless they have already been loaded) - as soon as
+     * Jenkins has loaded its users.
+     */
+    public void schedule() {
+        requested = true;
+        if (ready) start();
+    }
+
+    private void start() {
+        if (started.compareAndSet(false, true)) Timer.get().submit(this::load);
+    }
+
+    /**
+     * Record that the user with the given certificate DN was authenticated as the given Jenkins user.
+     *
+     * @param pkiDN the DN of the user's certificate.
+     * @param userId the ID of the Jenkins user.
+     */
+    public void record(@Nonnull final String pkiDN, @Nonnull final String userId) {
+        if (!userId.equals(userIds.get(pkiDN))) userIds.put(pkiDN, userId);
+    }
+
+    /**
+     * Look up the last known state of the given user.
+     *
+     * @param pkiUser to look up.
+     * @return the user's last known state, or null if the user has not authenticated with a certificate before.
+     */
+    @Nullable
+    public LastKnownUser lookup(@Nonnull final PKIUser pkiUser) {
+        final var userId = userIds.get(pkiUser.dn());
+        if (userId == null) return null;
+
+        final var user = User.get(userId, false, Collections.emptyMap());
+        if (user == null) return null;
+
+        final var authorization = user.getProperty(ClientCertificateUserAuthorization.class);
+        if (authorization == null || !authorization.isPresent()) return null;
+        if (!Objects.equals(authorization.getPKIDistinguishedName(), pkiUser.dn())) return null;
+
+        return new LastKnownUser(user, authorization.getGroups());
+    }
+
+    /**
+     * Load the certificate DN of every user that has authenticated with a client certificate. DNs that have already
+     * been recorded are kept, as they are more recent.
+     */
+    void load() {
+        for (final var user : User.getAll()) {
+            final var authorization = user.getProperty(ClientCertificateUserAuthorization.class);
+            if (authorization == null || !authorization.isPresent()) continue;
+
+            userIds.putIfAbsent(authorization.getPKIDistinguishedName(), user.getId());
+        }
+    }
+
+    /**
+     * The last known state of a user.
+     *
+     * @param user the Jenkins user.
+     * @param groups the user's groups, as of their last successful authentication.
+     */
+    public record LastKnownUser(@Nonnull User user, @Nonnull Set<String> groups) {
+    }
+
+}
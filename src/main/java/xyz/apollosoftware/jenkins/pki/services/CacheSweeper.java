@@ -0,0 +1,34 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically removes expired entries from the plugin's caches, so that expiry is not handled on the request path.
+ *
+ * <p>Entries are also checked for expiry when they are read, so this only bounds how long expired entries occupy
+ * memory.
+ */
+@Extension
+public class CacheSweeper extends PeriodicWork {
+
+    /**
+     * The interval (in milliseconds) between sweeps.
+     */
+    public static final long RECURRENCE_PERIOD = TimeUnit.SECONDS.toMillis(30);
+
+    @Override
+    public long getRecurrencePeriod() {
+        return RECURRENCE_PERIOD;
+    }
+
+    @Override
+    protected void doRun() {
+        LDAPCache.get().removeExpiredEntries();
+        AuthenticationCache.get().removeExpiredEntries();
+        APITokenCache.get().removeExpiredEntries();
+    }
+
+}
@@ -0,0 +1,145 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import hudson.security.SecurityRealm;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dictionary of group names and group sets, so that the many users who share the same groups also share the same
+ * (immutable) instances of them - rather than each cached LDAP entry, user property and authentication token holding
+ * its own copy.
+ *
+ * <p>Group names are interned, identical group sets are canonicalized into a single immutable set, and the authorities
+ * granted for each canonical set are built once and reused for every token.
+ *
+ * <p>The dictionary is bounded: once it holds {@link #MAX_SETS} sets (or {@link #MAX_NAMES} names), further sets are
+ * still returned as immutable copies, but are no longer shared.
+ */
+public class GroupDictionary {
+
+    /**
+     * The maximum number of group names held by the dictionary.
+     */
+    public static final int MAX_NAMES = 100_000;
+
+    /**
+     * The maximum number of group sets (and authority collections) held by the dictionary.
+     */
+    public static final int MAX_SETS = 50_000;
+
+    private static final GroupDictionary INSTANCE = new GroupDictionary();
+
+    private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Set<String>, Set<String>> sets = new ConcurrentHashMap<>();
+
+    /**
+     * The authority granted for each group name.
+     */
+    private final ConcurrentHashMap<String, GrantedAuthority> authorities = new ConcurrentHashMap<>();
+
+    /**
+     * The authorities granted for each canonical group set.
+     */
+    private final ConcurrentHashMap<Set<String>, List<GrantedAuthority>> setAuthorities = new ConcurrentHashMap<>();
+
+    /**
+     * Get the global group dictionary.
+     *
+     * @return the {@link GroupDictionary} singleton instance.
+     */
+    public static GroupDictionary get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the shared instance of the given group name.
+     *
+     * @param name of the group.
+     * @return the interned group name.
+     */
+    @Nonnull
+    public String intern(@Nonnull final String name) {
+        final var interned = names.get(name);
+        if (interned != null) return interned;
+        if (names.size() >= MAX_NAMES) return name;
+
+        final var existing = names.putIfAbsent(name, name);
+        return existing != null ? existing : name;
+    }
+
+    /**
+     * Get the canonical (shared, immutable) instance of the given group set.
+     *
+     * @param groups to canonicalize (null is treated as the empty set).
+     * @return the canonical group set.
+     */
+    @Nonnull
+    public Set<String> canonicalize(@Nullable final Set<String> groups) {
+        if (groups == null || groups.isEmpty()) return Set.of();
+
+        final var canonical = sets.get(groups);
+        if (canonical != null) return canonical;
+
+        final var interned = new ArrayList<String>(groups.size());
+        for (final var group : groups) interned.add(intern(group));
+        final var copy = Set.copyOf(interned);
+        if (sets.size() >= MAX_SETS) return copy;
+
+        final var existing = sets.putIfAbsent(copy, copy);
+        return existing != null ? existing : copy;
+    }
+
+    /**
+     * Get the authorities granted to a user with the given groups: an authority for each group, and
+     * {@link SecurityRealm#AUTHENTICATED_AUTHORITY2}.
+     *
+     * @param groups of the user.
+     * @return the (shared, immutable) authorities.
+     */
+    @Nonnull
+    public List<GrantedAuthority> authorities(@Nonnull final Set<String> groups) {
+        final var cached = setAuthorities.get(groups);
+        if (cached != null) return cached;
+
+        final var canonical = canonicalize(groups);
+        final var granted = new ArrayList<GrantedAuthority>(canonical.size() + 1);
+        for (final var group : canonical) granted.add(authority(group));
+        granted.add(SecurityRealm.AUTHENTICATED_AUTHORITY2);
+
+        final var copy = List.copyOf(granted);
+        if (setAuthorities.size() >= MAX_SETS) return copy;
+
+        final var existing = setAuthorities.putIfAbsent(canonical, copy);
+        return existing != null ? existing : copy;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        names.clear();
+        sets.clear();
+        authorities.clear();
+        setAuthorities.clear();
+    }
+
+    private GrantedAuthority authority(final String group) {
+        final var cached = authorities.get(group);
+        if (cached != null) return cached;
+
+        final GrantedAuthority authority = new SimpleGrantedAuthority(group);
+        if (authorities.size() >= MAX_NAMES) return authority;
+
+        final var existing = authorities.putIfAbsent(group, authority);
+        return existing != null ? existing : authority;
+    }
+
+}
@@ -0,0 +1,193 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import jakarta.annotation.Nonnull;
+
+import javax.naming.ldap.LdapName;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * A shared, memoized graph of LDAP groups to the groups they are (directly) a member of, used to expand a user's
+ * direct group memberships into their transitive (nested) group memberships.
+ *
+ * <p>Each group's parents are fetched once and reused for every user (until they expire), so expanding a user's
+ * groups is mostly local graph traversal. Concurrent lookups of the same group share a single fetch.
+ */
+public class GroupGraph {
+
+    /**
+     * The maximum number of groups held by the graph. If it is exceeded (even after expired groups are removed), the
+     * graph is cleared.
+     */
+    public static final int MAX_GROUPS = 100_000;
+
+    private final ConcurrentHashMap<LdapName, Node> parents = new ConcurrentHashMap<>();
+
+    /**
+     * The source of the current time (in milliseconds).
+     */
+    private final LongSupplier clock;
+
+    public GroupGraph(@Nonnull final LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Expand the given (direct) groups into the set of all groups they are transitively a member of.
+     *
+     * <p>Groups are traversed breadth-first. Each group is visited at most once (so cycles terminate), and groups more
+     * than {@code maxDepth} levels above the direct groups are not included.
+     *
+     * @param groups the direct groups to expand.
+     * @param maxDepth the maximum number of levels of nesting to expand.
+     * @param cacheDuration in seconds, that fetched parents are reused for (or zero to not reuse them).
+     * @param fetchParents function that returns the groups that the given group is a direct member of.
+     * @return the direct groups, and every group they are transitively a member of.
+     */
+    @Nonnull
+    public Set<Group> expand(
+        @Nonnull final Set<Group> groups,
+        final int maxDepth,
+        final int cacheDuration,
+        @Nonnull final Function<Group, Set<Group>> fetchParents
+    ) {
+        final var result = new LinkedHashSet<>(groups);
+        final var visited = new HashSet<LdapName>();
+        final var queue = new ArrayDeque<Level>();
+
+        for (final var group : groups) {
+            if (visited.add(group.dn())) queue.add(new Level(group, 0));
+        }
+
+        while (!queue.isEmpty()) {
+            final var level = queue.poll();
+            if (level.depth() >= maxDepth) continue;
+
+            for (final var parent : parentsOf(level.group(), cacheDuration, fetchParents)) {
+                if (!visited.add(parent.dn())) continue;
+
+                result.add(parent);
+                queue.add(new Level(parent, level.depth() + 1));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove all groups from the graph, so that their parents are fetched again (e.g., because groups have changed).
+     */
+    public void clear() {
+        parents.clear();
+    }
+
+    /**
+     * The number of groups in the graph (including in-flight lookups).
+     *
+     * @return the number of groups.
+     */
+    public int size() {
+        return parents.size();
+    }
+
+    /**
+     * Get the parents of the given group, fetching them if they are not known (or have expired).
+     */
+    private Set<Group> parentsOf(
+        final Group group,
+        final int cacheDuration,
+        final Function<Group, Set<Group>> fetchParents
+    ) {
+        if (cacheDuration <= 0) return fetchParents.apply(group);
+
+        while (true) {
+            final var now = clock.getAsLong();
+            final var node = parents.get(group.dn());
+            if (node != null) {
+                if (!node.future.isDone() || now <= node.expiresAt) return node.await();
+                parents.remove(group.dn(), node);
+            }
+
+            final var created = new Node(now + (cacheDuration * 1000L));
+            if (parents.putIfAbsent(group.dn(), created) == null) {
+                return load(group, created, fetchParents);
+            }
+        }
+    }
+
+    private Set<Group> load(final Group group, final Node node, final Function<Group, Set<Group>> fetchParents) {
+        final Set<Group> result;
+        try {
+            result = Set.copyOf(fetchParents.apply(group));
+        } catch (RuntimeException ex) {
+            parents.remove(group.dn(), node);
+            node.future.completeExceptionally(ex);
+            throw ex;
+        }
+
+        node.future.complete(result);
+        if (parents.size() > MAX_GROUPS) trim();
+        return result;
+    }
+
+    /**
+     * Bring the graph back under {@link #MAX_GROUPS}, by removing expired groups (or, failing that, all groups).
+     */
+    private void trim() {
+        final var now = clock.getAsLong();
+        parents.forEach((dn, node) -> {
+            if (node.future.isDone() && now > node.expiresAt) {
+                parents.remove(dn, node);
+            }
+        });
+
+        if (parents.size() > MAX_GROUPS) parents.clear();
+    }
+
+    /**
+     * An LDAP group.
+     *
+     * @param dn the group's DN.
+     * @param name the group's name.
+     */
+    public record Group(@Nonnull LdapName dn, @Nonnull String name) {
+    }
+
+    private record Level(Group group, int depth) {
+    }
+
+    private static final class Node {
+
+        /**
+         * The (possibly in-flight) parents of the group.
+         */
+        private final CompletableFuture<Set<Group>> future = new CompletableFuture<>();
+
+        /**
+         * The time (in milliseconds) at which the parents expire.
+         */
+        private final long expiresAt;
+
+        private Node(final long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        private Set<Group> await() {
+            try {
+                return future.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException cause) throw cause;
+                throw ex;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,287 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jenkins.util.Timer;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPSettings;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An in-memory reverse index of every group under the group search base, from member DN to the groups it is a member
+ * of - so that a user's groups can be resolved without querying LDAP.
+ *
+ * <p>The index is loaded in the background, then refreshed every {@link LDAPSettings#groupIndexRefreshInterval()}
+ * seconds. Where the directory provides {@code modifyTimestamp}, refreshes only read the groups modified since the
+ * last refresh; a full reload (which also drops deleted groups) is done every {@link #FULL_RELOAD_INTERVAL_MILLIS}.
+ *
+ * <p>Each refresh (or {@link #update}) builds a new snapshot of the index, which replaces the previous snapshot
+ * atomically - so readers never block, and always see a consistent index.
+ */
+public class GroupMembershipIndex implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(GroupMembershipIndex.class.getName());
+
+    /**
+     * The interval (in milliseconds) at which the index is fully reloaded, rather than incrementally refreshed.
+     */
+    public static final long FULL_RELOAD_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final LDAPDirectory directory;
+    private final LDAPSettings settings;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    @Nullable
+    private volatile ScheduledFuture<?> refreshTask;
+
+    GroupMembershipIndex(@Nonnull final LDAPDirectory directory, @Nonnull final LDAPSettings settings) {
+        this.directory = directory;
+        this.settings = settings;
+    }
+
+    /**
+     * Load the index in the background, and schedule it to be refreshed periodically.
+     */
+    void start() {
+        refreshTask = Timer.get().scheduleWithFixedDelay(
+            this::refresh,
+            0,
+            settings.groupIndexRefreshInterval(),
+            TimeUnit.SECONDS
+        );
+    }
+
+    /**
+     * Stop refreshing the index.
+     */
+    @Override
+    public void close() {
+        final var task = refreshTask;
+        if (task != null) task.cancel(false);
+    }
+
+    /**
+     * Returns true once the index has been loaded.
+     *
+     * @return true if groups can be resolved from the index.
+     */
+    public boolean isLoaded() {
+        return snapshot.get() != null;
+    }
+
+    /**
+     * Resolve the names of the groups that the given member is a member of.
+     *
+     * @param memberDN the DN of the member (e.g., a user).
+     * @param nested whether to include the groups that the member's groups are (transitively) members of.
+     * @param maxDepth the maximum number of levels of nesting to resolve.
+     * @return the names of the member's groups, or null if the index has not been loaded yet.
+     */
+    @Nullable
+    public Set<String> groupsOf(@Nonnull final String memberDN, final boolean nested, final int maxDepth) {
+        final var current = snapshot.get();
+        if (current == null) return null;
+
+        final var member = LDAPDirectory.normalizeDN(memberDN);
+        if (member == null) return Collections.emptySet();
+
+        return current.groupsOf(member, nested ? maxDepth : 0);
+    }
+
+    /**
+     * Apply the given (modified) groups to the index, if it has been loaded.
+     *
+     * @param modified groups, as read from the directory.
+     */
+    public synchronized void update(@Nonnull final Iterable<LDAPDirectory.GroupEntry> modified) {
+        final var current = snapshot.get();
+        if (current == null) return;
+
+        final var builder = new Snapshot.Builder(current);
+        modified.forEach(builder::add);
+        snapshot.set(builder.build(current.loadedAt));
+    }
+
+    /**
+     * Refresh the index - incrementally if possible, otherwise by fully reloading it.
+     *
+     * <p>Refreshes (and updates) are serialized, so that they cannot overwrite each other's snapshots.
+     */
+    synchronized void refresh() {
+        try {
+            final var current = snapshot.get();
+            final var now = System.currentTimeMillis();
+
+            final boolean full = current == null ||
+                    current.highWatermark == null ||
+                    now - current.loadedAt >= FULL_RELOAD_INTERVAL_MILLIS;
+
+            final var builder = new Snapshot.Builder(full ? null : current);
+            directory.forEachGroup(settings, full ? null : current.highWatermark, builder::add);
+            final var refreshed = builder.build(full ? now : current.loadedAt);
+            snapshot.set(refreshed);
+
+            LOGGER.fine("%s LDAP group membership index: %d groups".formatted(
+                full ? "Loaded" : "Refreshed",
+                refreshed.groups.size()
+            ));
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Failed to refresh LDAP group membership index", ex);
+        }
+    }
+
+    /**
+     * An immutable snapshot of the index.
+     *
+     * <p>All DNs are normalized (see {@link LDAPDirectory#normalizeDN(Object)}), and each group's DN is held once and
+     * shared between the group and every membership that refers to it.
+     */
+    static final class Snapshot {
+
+        /**
+         * Every group, by DN.
+         */
+        private final Map<String, IndexedGroup> groups;
+
+        /**
+         * The DNs of the groups that each member (by DN) is directly a member of.
+         */
+        private final Map<String, String[]> memberships;
+
+        /**
+         * The latest {@code modifyTimestamp} of any group in the index, or null if the directory does not provide
+         * it.
+         */
+        @Nullable
+        private final String highWatermark;
+
+        /**
+         * The time (in milliseconds) at which the index was last fully loaded.
+         */
+        private final long loadedAt;
+
+        private Snapshot(
+            final Map<String, IndexedGroup> groups,
+            final Map<String, String[]> memberships,
+            @Nullable final String highWatermark,
+            final long loadedAt
+        ) {
+            this.groups = groups;
+            this.memberships = memberships;
+            this.highWatermark = highWatermark;
+            this.loadedAt = loadedAt;
+        }
+
+        /**
+         * Resolve the names of the groups that the given (normalized) member DN is a member of, up to
+         * {@code maxDepth} levels of nesting above its direct groups.
+         */
+        Set<String> groupsOf(final String member, final int maxDepth) {
+            final var direct = memberships.get(member);
+            if (direct == null) return Collections.emptySet();
+
+            final var names = new HashSet<String>();
+            final var visited = new HashSet<String>();
+            final var queue = new ArrayDeque<Map.Entry<String, Integer>>();
+
+            for (final var group : direct) {
+                if (visited.add(group)) queue.add(Map.entry(group, 0));
+            }
+
+            while (!queue.isEmpty()) {
+                final var level = queue.poll();
+                final var group = groups.get(level.getKey());
+                if (group != null) names.add(group.name());
+
+                if (level.getValue() >= maxDepth) continue;
+
+                final var parents = memberships.get(level.getKey());
+                if (parents == null) continue;
+
+                for (final var parent : parents) {
+                    if (visited.add(parent)) queue.add(Map.entry(parent, level.getValue() + 1));
+                }
+            }
+
+            return names;
+        }
+
+        /**
+         * Builds a {@link Snapshot}, either from scratch or by applying modified groups to an existing snapshot.
+         */
+        static final class Builder {
+
+            private final Map<String, IndexedGroup> groups;
+            private final Map<String, String> names = new HashMap<>();
+
+            @Nullable
+            private String highWatermark;
+
+            Builder(@Nullable final Snapshot base) {
+                this.groups = base != null ? new HashMap<>(base.groups) : new HashMap<>();
+                this.highWatermark = base != null ? base.highWatermark : null;
+            }
+
+            /**
+             * Add (or replace) the given group.
+             */
+            void add(@Nonnull final LDAPDirectory.GroupEntry entry) {
+                final var dn = LDAPDirectory.normalizeDN(entry.dn());
+                if (dn == null) return;
+
+                final var members = new ArrayList<String>(entry.members().size());
+                for (final var member : entry.members()) {
+                    final var normalized = LDAPDirectory.normalizeDN(member);
+                    if (normalized != null) members.add(normalized);
+                }
+
+                groups.put(dn, new IndexedGroup(names.computeIfAbsent(entry.name(), name -> name), members));
+
+                final var modifyTimestamp = entry.modifyTimestamp();
+                if (modifyTimestamp != null && (highWatermark == null ||
+                        LDAPDirectory.compareGeneralizedTime(modifyTimestamp, highWatermark) > 0)) {
+                    highWatermark = modifyTimestamp;
+                }
+            }
+
+            Snapshot build(final long loadedAt) {
+                final var memberships = new HashMap<String, List<String>>();
+                groups.forEach((dn, group) -> {
+                    for (final var member : group.members()) {
+                        memberships.computeIfAbsent(member, key -> new ArrayList<>(1)).add(dn);
+                    }
+                });
+
+                final var compacted = new HashMap<String, String[]>(memberships.size());
+                memberships.forEach((member, memberOf) -> compacted.put(member, memberOf.toArray(String[]::new)));
+
+                return new Snapshot(groups, compacted, highWatermark, loadedAt);
+            }
+
+        }
+
+    }
+
+    /**
+     * A group in the index.
+     *
+     * @param name the group's name.
+     * @param members the (normalized) DNs of the group's members.
+     */
+    private record IndexedGroup(@Nonnull String name, @Nonnull List<String> members) {
+    }
+
+}
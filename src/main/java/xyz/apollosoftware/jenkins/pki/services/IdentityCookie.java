@@ -0,0 +1,259 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * A short-lived, signed cookie carrying the identity (username and groups) that a client certificate was resolved to,
+ * so that subsequent requests presenting the same certificate can be authenticated without parsing the certificate's
+ * subject, searching LDAP or consulting any cache.
+ *
+ * <p>The cookie is bound to the fingerprint of the certificate it was issued for, and signed with an HMAC key that is
+ * randomly generated for each filter - so cookies are never accepted for another certificate, and are implicitly
+ * invalidated when the security realm is reconfigured (or Jenkins is restarted).
+ *
+ * <p>As the cookie is stateless, changes to a user's LDAP entry are not reflected until it expires.
+ */
+public class IdentityCookie {
+
+    public static final int DURATION_DEFAULT = 0; // disabled
+    public static final int DURATION_MAX = 3600; // 1 hour
+
+    /**
+     * The name of the cookie.
+     */
+    public static final String COOKIE_NAME = "jenkins-pki-identity";
+
+    /**
+     * The maximum length of the cookie's value - identities that would exceed this (e.g., because the user has a great
+     * many groups) are not issued a cookie.
+     */
+    public static final int MAX_LENGTH = 3072;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * The length (in bytes) of the random signing key.
+     */
+    private static final int SECRET_LENGTH = 32;
+
+    /**
+     * The version of the cookie's payload format.
+     */
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final char SIGNATURE_SEPARATOR = '.';
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * The duration (in seconds) that cookies are valid for.
+     */
+    private final int duration;
+
+    /**
+     * The source of the current time (in milliseconds).
+     */
+    private final LongSupplier clock;
+
+    /**
+     * A {@link Mac} for each thread, as {@link Mac} instances are not thread-safe (and costly to create).
+     */
+    private final ThreadLocal<Mac> macs;
+
+    public IdentityCookie(final int duration) {
+        this(duration, System::currentTimeMillis, randomSecret());
+    }
+
+    IdentityCookie(final int duration, @Nonnull final LongSupplier clock, @Nonnull final byte[] secret) {
+        this.duration = duration;
+        this.clock = clock;
+
+        final var key = new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                final var mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException("%s is not available".formatted(MAC_ALGORITHM), ex);
+            }
+        });
+    }
+
+    /**
+     * Clamp the configured cookie duration into the supported range.
+     *
+     * @param duration in seconds, or null to use the default.
+     * @return the cookie duration (in seconds) to use, or zero if cookies are disabled.
+     */
+    public static int normalizeDuration(@Nullable final Integer duration) {
+        if (duration == null || duration < 0) return DURATION_DEFAULT;
+        return Math.min(duration, DURATION_MAX);
+    }
+
+    /**
+     * Verify the identity cookie presented with the given request.
+     *
+     * @param request to read the cookie from.
+     * @param fingerprint of the client certificate presented with the request.
+     * @return the identity carried by the cookie, or null if there is no valid (and unexpired) cookie for the
+     * certificate.
+     */
+    @Nullable
+    public Identity verify(@Nonnull final HttpServletRequest request, @Nonnull final String fingerprint) {
+        final var cookies = request.getCookies();
+        if (cookies == null) return null;
+
+        for (final var cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) return decode(cookie.getValue(), fingerprint);
+        }
+
+        return null;
+    }
+
+    /**
+     * Issue an identity cookie for the given identity, bound to the given client certificate.
+     *
+     * <p>The cookie expires after the configured duration, or when the certificate expires - whichever is sooner.
+     *
+     * @param request the identity was resolved for.
+     * @param response to add the cookie to.
+     * @param fingerprint of the client certificate presented with the request.
+     * @param certificateExpiry the time (in milliseconds) that the client certificate expires.
+     * @param identity to issue the cookie for.
+     */
+    public void issue(
+        @Nonnull final HttpServletRequest request,
+        @Nonnull final HttpServletResponse response,
+        @Nonnull final String fingerprint,
+        final long certificateExpiry,
+        @Nonnull final Identity identity
+    ) {
+        final var now = clock.getAsLong();
+        final var expiresAt = Math.min(now + (duration * 1000L), certificateExpiry);
+        if (expiresAt <= now) return;
+
+        final var value = encode(identity, fingerprint, expiresAt);
+        if (value == null) return;
+
+        final var cookie = new Cookie(COOKIE_NAME, value);
+        cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+        cookie.setMaxAge((int) ((expiresAt - now) / 1000L));
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        response.addCookie(cookie);
+    }
+
+    /**
+     * Encode (and sign) the cookie value for the given identity.
+     *
+     * @param identity to encode.
+     * @param fingerprint of the client certificate to bind the cookie to.
+     * @param expiresAt the time (in milliseconds) that the cookie expires.
+     * @return the cookie value, or null if it would exceed {@link #MAX_LENGTH}.
+     */
+    @Nullable
+    String encode(@Nonnull final Identity identity, @Nonnull final String fingerprint, final long expiresAt) {
+        final var payload = new ByteArrayOutputStream();
+        try (final var output = new DataOutputStream(payload)) {
+            output.writeByte(FORMAT_VERSION);
+            output.writeLong(expiresAt);
+            output.writeUTF(fingerprint);
+            output.writeUTF(identity.username());
+            output.writeInt(identity.groups().size());
+            for (final var group : identity.groups()) output.writeUTF(group);
+        } catch (IOException ex) {
+            // Thrown if a name is too long to encode.
+            return null;
+        }
+
+        final var bytes = payload.toByteArray();
+        final var value = ENCODER.encodeToString(bytes) + SIGNATURE_SEPARATOR + ENCODER.encodeToString(sign(bytes));
+        return value.length() <= MAX_LENGTH ? value : null;
+    }
+
+    /**
+     * Decode (and verify) the given cookie value.
+     *
+     * @param value of the cookie.
+     * @param fingerprint of the client certificate presented with the cookie.
+     * @return the identity carried by the cookie, or null if the cookie is malformed, has an invalid signature, was
+     * issued for another certificate or has expired.
+     */
+    @Nullable
+    Identity decode(@Nullable final String value, @Nonnull final String fingerprint) {
+        if (value == null || value.length() > MAX_LENGTH) return null;
+
+        final var separator = value.indexOf(SIGNATURE_SEPARATOR);
+        if (separator < 0) return null;
+
+        final byte[] payload;
+        final byte[] signature;
+        try {
+            payload = DECODER.decode(value.substring(0, separator));
+            signature = DECODER.decode(value.substring(separator + 1));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+
+        // The signature is verified before anything else is read from the payload.
+        if (!MessageDigest.isEqual(sign(payload), signature)) return null;
+
+        try (final var input = new DataInputStream(new ByteArrayInputStream(payload))) {
+            if (input.readByte() != FORMAT_VERSION) return null;
+            if (input.readLong() < clock.getAsLong()) return null;
+            if (!input.readUTF().equals(fingerprint)) return null;
+
+            final var username = input.readUTF();
+            final var count = input.readInt();
+            if (count < 0 || count > payload.length) return null;
+
+            final var groups = new HashSet<String>(count);
+            for (int i = 0; i < count; i++) groups.add(input.readUTF());
+
+            return new Identity(username, GroupDictionary.get().canonicalize(groups));
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private byte[] sign(final byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+
+    private static byte[] randomSecret() {
+        final var secret = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    /**
+     * The identity carried by an identity cookie.
+     *
+     * @param username of the Jenkins user.
+     * @param groups of the user.
+     */
+    public record Identity(@Nonnull String username, @Nonnull Set<String> groups) {
+    }
+
+}
@@ -1,19 +1,111 @@
 package xyz.apollosoftware.jenkins.pki.services;
 
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import xyz.apollosoftware.jenkins.pki.metrics.AuthenticationMetrics;
+import xyz.apollosoftware.jenkins.pki.metrics.AuthenticationMetrics.Event;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPCacheSettings;
 import xyz.apollosoftware.jenkins.pki.struct.LDAPUser;
 import xyz.apollosoftware.jenkins.pki.struct.PKIUser;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class LDAPCache {
 
-    private static final LDAPCache INSTANCE = new LDAPCache();
+    private static final Logger LOGGER = Logger.getLogger(LDAPCache.class.getName());
 
-    private final ConcurrentHashMap<Integer, CacheEntry> cache = new ConcurrentHashMap<>();
+    /**
+     * The maximum number of threads used to refresh entries in the background.
+     */
+    private static final int REFRESH_THREADS = 4;
+
+    /**
+     * The maximum number of background refreshes waiting for a thread. Further refreshes are dropped (and retried
+     * on a later access).
+     */
+    private static final int REFRESH_QUEUE_CAPACITY = 1000;
+
+    /**
+     * The delay (in milliseconds) before an entry is refreshed again after its refresh failed. The delay doubles with
+     * each consecutive failure, up to {@link #REFRESH_RETRY_MAX_MILLIS}.
+     */
+    private static final long REFRESH_RETRY_MIN_MILLIS = 1000;
+
+    /**
+     * The maximum delay (in milliseconds) before an entry is refreshed again after its refresh failed.
+     */
+    private static final long REFRESH_RETRY_MAX_MILLIS = 60_000;
+
+    private static final LDAPCache INSTANCE = new LDAPCache(System::currentTimeMillis, createRefreshExecutor());
+
+    /**
+     * The fraction of the cache's bounds that eviction brings the cache back down to, so that eviction runs in
+     * batches rather than on every insertion.
+     */
+    private static final double EVICTION_TARGET = 0.9;
+
+    /**
+     * The estimated fixed cost (in bytes) of a cache entry - the map node, key, entry, future and user records.
+     */
+    private static final long ENTRY_OVERHEAD = 256;
+
+    /**
+     * The estimated fixed cost (in bytes) of a string, excluding its characters.
+     */
+    private static final long STRING_OVERHEAD = 40;
+
+    private final ConcurrentHashMap<Key, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Misses (users that could not be found in LDAP), cached separately so that they cannot displace users from the
+     * cache.
+     */
+    private final ConcurrentHashMap<Key, NegativeEntry> negativeCache = new ConcurrentHashMap<>();
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private volatile LDAPCacheSettings settings = LDAPCacheSettings.defaults();
+
+    /**
+     * The source of the current time (in milliseconds).
+     */
+    private final LongSupplier clock;
+
+    /**
+     * The executor that entries are refreshed (ahead of their expiry) on.
+     */
+    private final Executor refreshExecutor;
+
+    LDAPCache(@Nonnull final LongSupplier clock, @Nonnull final Executor refreshExecutor) {
+        this.clock = clock;
+        this.refreshExecutor = refreshExecutor;
+    }
 
     /**
      * Get the global LDAP user cache.
@@ -24,62 +116,557 @@ public class LDAPCache {
         return INSTANCE;
     }
 
+    /**
+     * Apply the given settings to the cache.
+     *
+     * <p>If the cache now exceeds its (new) bounds, entries are evicted immediately.
+     *
+     * @param settings to apply.
+     */
+    public void configure(@Nonnull final LDAPCacheSettings settings) {
+        this.settings = settings;
+        evictIfNecessary();
+    }
+
     /**
      * Get or update the {@link LDAPUser} (LDAP directory entry) for the given {@link PKIUser}.
      *
+     * <p>Cache hits do not take any lock. On a cache miss, the calling thread runs {@code searchForLDAPUser} and
+     * any other threads looking up the same user concurrently wait for (and share) its result, rather than running
+     * their own search. Lookups for other users are never blocked.
+     *
+     * <p>Once an entry has been cached for {@link LDAPCacheSettings#refreshAhead()} percent of its duration (or has
+     * expired, but is within the {@link LDAPCacheSettings#staleGrace()} window), the cached user is returned and the
+     * entry is refreshed in the background.
+     *
+     * <p>If {@code searchForLDAPUser} fails because the user could not be found (with a
+     * {@link UsernameNotFoundException}), the miss is cached for {@link LDAPCacheSettings#negativeDuration()} and
+     * subsequent lookups for the same user fail without searching LDAP again. Other failures (such as timeouts and
+     * connection errors) are transient, so they are never cached.
+     *
      * @param pkiUser to look up.
      * @param searchForLDAPUser function that returns an LDAPUser to cache.
      * @param cacheDuration after which the {@link LDAPUser} cache entry should be disregarded.
      * @return the {@link LDAPUser} from the cache, or newly fetched using the searchForLDAPUser function.
      */
-    public synchronized LDAPUser getOrUpdate(
+    public LDAPUser getOrUpdate(
         final PKIUser pkiUser,
         @Nonnull final Supplier<LDAPUser> searchForLDAPUser,
         int cacheDuration
     ) {
-        final var key = pkiUser.hashCode();
+        final var key = Key.of(pkiUser);
 
-        if (cache.containsKey(key)) {
+        while (true) {
+            final var now = clock.getAsLong();
             final var entry = cache.get(key);
-            if (!entry.hasExpired(cacheDuration)) {
-                return entry.user;
-            } else {
-                cache.remove(key);
+            if (entry != null) {
+                if (!entry.future.isDone()) {
+                    AuthenticationMetrics.get().increment(Event.LDAP_CACHE_HIT);
+                    return entry.await();
+                }
+
+                if (!entry.isStale(cacheDuration, now)) {
+                    AuthenticationMetrics.get().increment(Event.LDAP_CACHE_HIT);
+                    entry.lastAccess = now;
+                    if (entry.shouldRefresh(cacheDuration, now)) {
+                        refresh(key, entry, searchForLDAPUser, cacheDuration);
+                    }
+
+                    return entry.await();
+                }
+
+                remove(key, entry);
+            }
+
+            final var failure = negativeCache.get(key);
+            if (failure != null) {
+                if (now <= failure.expiresAt()) throw new UsernameNotFoundException(failure.message());
+                negativeCache.remove(key, failure);
             }
+
+            final var created = new CacheEntry(now);
+            if (cache.putIfAbsent(key, created) == null) {
+                AuthenticationMetrics.get().increment(Event.LDAP_CACHE_MISS);
+                return load(key, created, searchForLDAPUser, cacheDuration);
+            }
+
+            // Another thread started loading the user first - retry, to wait for its result.
         }
+    }
 
-        final var user = searchForLDAPUser.get();
-        cache.put(key, new CacheEntry(user, System.currentTimeMillis()));
-        return user;
+    /**
+     * Cache the given {@link LDAPUser} for the given {@link PKIUser}, unless the user is already cached (or being
+     * looked up).
+     *
+     * <p>This is used to populate the cache ahead of the user's first request, so an existing entry is always
+     * considered at least as fresh as the given user.
+     *
+     * @param pkiUser to cache the user for.
+     * @param ldapUser to cache.
+     * @param cacheDuration after which the {@link LDAPUser} cache entry should be disregarded.
+     * @return true if the user was cached.
+     */
+    public boolean put(@Nonnull final PKIUser pkiUser, @Nonnull final LDAPUser ldapUser, int cacheDuration) {
+        final var key = Key.of(pkiUser);
+        if (cache.containsKey(key)) return false;
+
+        final var entry = new CacheEntry(clock.getAsLong());
+        prepare(key, entry, ldapUser, cacheDuration);
+        entry.future.complete(ldapUser);
+
+        if (cache.putIfAbsent(key, entry) != null) return false;
+        weight.addAndGet(entry.weight);
+        negativeCache.remove(key);
+
+        evictIfNecessary();
+        return true;
+    }
+
+    /**
+     * Remove every (loaded) entry whose {@link LDAPUser} matches the given predicate, so that it is looked up again
+     * on its next access.
+     *
+     * @param predicate that matches the users to remove.
+     * @return the keys of the removed entries.
+     */
+    @Nonnull
+    public Set<Key> invalidate(@Nonnull final Predicate<LDAPUser> predicate) {
+        final var removed = new HashSet<Key>();
+        cache.forEach((key, entry) -> {
+            if (!entry.future.isDone() || entry.future.isCompletedExceptionally()) return;
+
+            if (predicate.test(entry.future.join()) && remove(key, entry)) {
+                removed.add(key);
+            }
+        });
+
+        return removed;
     }
 
     /**
-     * Remove all entries that have been cached for longer than the {@code cacheDuration}.
+     * The DNs of the (loaded) users in the cache.
      *
+     * @return the cached users' DNs.
+     */
+    @Nonnull
+    public Set<String> userDNs() {
+        final var dns = new HashSet<String>();
+        cache.forEach((key, entry) -> {
+            if (entry.future.isDone() && !entry.future.isCompletedExceptionally()) dns.add(entry.future.join().dn());
+        });
+
+        return dns;
+    }
+
+    /**
+     * Returns true if the given {@link PKIUser} is cached (or being looked up).
+     *
+     * @param pkiUser to check.
+     * @return true if there is a cache entry for the user.
+     */
+    public boolean contains(@Nonnull final PKIUser pkiUser) {
+        return cache.containsKey(Key.of(pkiUser));
+    }
+
+    /**
+     * Returns true if {@link #getOrUpdate} would answer for the given {@link PKIUser} without searching LDAP, or
+     * waiting for another thread's search - because the user (or a failure to look them up) is cached, and can still
+     * be served.
+     *
+     * @param pkiUser to check.
      * @param cacheDuration after which the {@link LDAPUser} cache entry should be disregarded.
+     * @return true if the user can be served from the cache.
      */
-    public synchronized void removeExpiredEntries(int cacheDuration) {
-        Set<Integer> expired = new HashSet<>();
+    public boolean isCached(@Nonnull final PKIUser pkiUser, int cacheDuration) {
+        final var key = Key.of(pkiUser);
+        final var now = clock.getAsLong();
+
+        final var entry = cache.get(key);
+        if (entry != null && entry.future.isDone()) return !entry.isStale(cacheDuration, now);
 
+        final var failure = negativeCache.get(key);
+        return entry == null && failure != null && now <= failure.expiresAt();
+    }
+
+    /**
+     * Remove all entries that have expired (including their grace window).
+     *
+     * <p>Expired entries are never returned by {@link #getOrUpdate}, so this is only needed to release the memory
+     * they use - and is run periodically by the {@link CacheSweeper}.
+     */
+    public void removeExpiredEntries() {
+        final var now = clock.getAsLong();
         cache.forEach((key, value) -> {
-            if (value.hasExpired(cacheDuration)) {
-                expired.add(key);
+            if (value.isStale(now)) {
+                remove(key, value);
             }
         });
 
-        expired.forEach(cache::remove);
+        removeExpiredFailures(now);
+    }
+
+    /**
+     * The number of entries in the cache (including in-flight lookups).
+     *
+     * @return the number of cache entries.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * The number of failed lookups in the cache.
+     *
+     * @return the number of negative cache entries.
+     */
+    public int failureCount() {
+        return negativeCache.size();
+    }
+
+    /**
+     * The estimated memory (in bytes) used by the users in the cache.
+     *
+     * @return the estimated weight of the cache.
+     */
+    public long weight() {
+        return weight.get();
     }
 
-    private record CacheEntry(LDAPUser user, long cachedAt) {
+    /**
+     * Load the {@link LDAPUser} into the given (in-flight) entry.
+     *
+     * <p>If the search fails, the entry is removed and the failure is shared with any threads waiting on the entry. If
+     * the user could not be found, the miss is also cached, so the next lookup within the negative cache duration fails
+     * without searching again.
+     */
+    private LDAPUser load(
+        final Key key,
+        final CacheEntry entry,
+        final Supplier<LDAPUser> searchForLDAPUser,
+        final int cacheDuration
+    ) {
+        final LDAPUser user;
+        try {
+            user = searchForLDAPUser.get();
+        } catch (RuntimeException ex) {
+            cacheFailure(key, ex);
+            cache.remove(key, entry);
+            entry.future.completeExceptionally(ex);
+            throw ex;
+        }
+
+        // In-flight entries are never removed by other threads, so the entry can be accounted before it completes.
+        prepare(key, entry, user, cacheDuration);
+        weight.addAndGet(entry.weight);
+        entry.future.complete(user);
+
+        evictIfNecessary();
+        return user;
+    }
+
+    /**
+     * Refresh the given entry in the background, replacing it once the search completes.
+     *
+     * <p>Only one refresh runs per entry at a time. If the user could not be found, the entry is removed and the miss
+     * is cached (as it is by {@link #load}). If the refresh fails for any other reason, the existing entry is kept,
+     * and the refresh is retried on a later access - no sooner than {@link #REFRESH_RETRY_MIN_MILLIS} later, doubling
+     * with each consecutive failure (up to {@link #REFRESH_RETRY_MAX_MILLIS}), so that a failing directory is not
+     * searched again on every access.
+     */
+    private void refresh(
+        final Key key,
+        final CacheEntry entry,
+        final Supplier<LDAPUser> searchForLDAPUser,
+        final int cacheDuration
+    ) {
+        if (!entry.refreshing.compareAndSet(false, true)) return;
+
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    final var user = searchForLDAPUser.get();
+                    final var refreshed = new CacheEntry(entry.lastAccess);
+                    prepare(key, refreshed, user, cacheDuration);
+                    refreshed.future.complete(user);
+
+                    if (cache.replace(key, entry, refreshed)) {
+                        weight.addAndGet(refreshed.weight - entry.weight);
+                        evictIfNecessary();
+                    }
+                } catch (UsernameNotFoundException ex) {
+                    cacheFailure(key, ex);
+                    remove(key, entry);
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.FINE, "Failed to refresh cached LDAP user: %s".formatted(key), ex);
+
+                    final var failures = ++entry.refreshFailures;
+                    final var delay = Math.min(REFRESH_RETRY_MAX_MILLIS, REFRESH_RETRY_MIN_MILLIS << Math.min(failures - 1, 16));
+                    entry.refreshRetryAt = clock.getAsLong() + delay;
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    /**
+     * Cache the failure to look up the given user, if it is a miss (the user could not be found), negative caching is
+     * enabled and there is room.
+     *
+     * <p>Any other failure (a rejected search, a timeout, a connection error, ...) says nothing about the user, so it
+     * is not cached.
+     */
+    private void cacheFailure(final Key key, final RuntimeException failure) {
+        final var policy = settings;
+        if (policy.negativeDuration() <= 0) return;
+        if (!(failure instanceof UsernameNotFoundException)) return;
+
+        final var now = clock.getAsLong();
+        if (negativeCache.size() >= policy.negativeMaxEntries()) {
+            removeExpiredFailures(now);
+            if (negativeCache.size() >= policy.negativeMaxEntries()) return;
+        }
+
+        negativeCache.put(key, new NegativeEntry(failure.getMessage(), now + (policy.negativeDuration() * 1000L)));
+    }
+
+    private void removeExpiredFailures(final long now) {
+        negativeCache.forEach((key, value) -> {
+            if (now > value.expiresAt()) {
+                negativeCache.remove(key, value);
+            }
+        });
+    }
+
+    /**
+     * Record the loaded user's weight and timings on the given entry (before its future is completed).
+     */
+    private void prepare(final Key key, final CacheEntry entry, final LDAPUser user, final int cacheDuration) {
+        final var policy = settings;
+        final var duration = jitter(cacheDuration * 1000L, policy.jitter());
+
+        entry.weight = weigh(key, user);
+        entry.cachedAt = clock.getAsLong();
+        entry.expiresAt = entry.cachedAt + duration;
+        entry.refreshAt = policy.refreshAhead() > 0
+                ? entry.cachedAt + (duration * policy.refreshAhead() / 100)
+                : Long.MAX_VALUE;
+        entry.staleUntil = entry.expiresAt + (policy.staleGrace() * 1000L);
+    }
+
+    /**
+     * Shorten the given duration by a random amount of up to {@code jitter} percent, so that entries cached at the
+     * same time do not all expire at the same time.
+     */
+    private static long jitter(final long duration, final int jitter) {
+        if (jitter <= 0 || duration <= 0) return duration;
+        return duration - ThreadLocalRandom.current().nextLong(duration * jitter / 100 + 1);
+    }
+
+    /**
+     * Remove the given entry, releasing its weight.
+     */
+    private boolean remove(final Key key, final CacheEntry entry) {
+        if (!cache.remove(key, entry)) return false;
+
+        weight.addAndGet(-entry.weight);
+        return true;
+    }
+
+    /**
+     * Evict the least recently used entries if the cache exceeds its bounds.
+     *
+     * <p>Eviction runs in a batch, bringing the cache down to {@link #EVICTION_TARGET} of its bounds. Only one thread
+     * evicts at a time; other threads do not wait for it.
+     */
+    private void evictIfNecessary() {
+        final var bounds = settings;
+        if (!exceeds(bounds.maxEntries(), bounds.maxWeight())) return;
+        if (!evictionLock.tryLock()) return;
+
+        try {
+            final var targetEntries = (int) (bounds.maxEntries() * EVICTION_TARGET);
+            final var targetWeight = (long) (bounds.maxWeight() * EVICTION_TARGET);
+
+            final var candidates = new ArrayList<Map.Entry<Key, CacheEntry>>(cache.size());
+            cache.forEach((key, value) -> {
+                if (value.future.isDone()) candidates.add(Map.entry(key, value));
+            });
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().lastAccess));
+
+            var evicted = 0L;
+            for (final var candidate : candidates) {
+                if (!exceeds(targetEntries, targetWeight)) break;
+                if (remove(candidate.getKey(), candidate.getValue())) evicted++;
+            }
+
+            AuthenticationMetrics.get().increment(Event.LDAP_CACHE_EVICTION, evicted);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean exceeds(final int maxEntries, final long maxWeight) {
+        return cache.size() > maxEntries || weight.get() > maxWeight;
+    }
+
+    /**
+     * Estimate the memory (in bytes) used by a cache entry.
+     */
+    private static long weigh(final Key key, final LDAPUser user) {
+        long weight = ENTRY_OVERHEAD
+                + weigh(key.dn()) + weigh(key.username()) + weigh(key.email())
+                + weigh(user.dn()) + weigh(user.username()) + weigh(user.name()) + weigh(user.email());
+
+        for (final var group : user.groups()) {
+            weight += weigh(group);
+        }
+
+        return weight;
+    }
+
+    private static long weigh(@Nullable final String value) {
+        return value == null ? 0 : STRING_OVERHEAD + value.length() * 2L;
+    }
+
+    private static ThreadPoolExecutor createRefreshExecutor() {
+        final var executor = new ThreadPoolExecutor(
+            REFRESH_THREADS,
+            REFRESH_THREADS,
+            60L,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(REFRESH_QUEUE_CAPACITY),
+            new NamingThreadFactory(new DaemonThreadFactory(), LDAPCache.class.getSimpleName() + ".refresh")
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * The identity an {@link LDAPUser} is cached for.
+     *
+     * <p>This consists of exactly the {@link PKIUser} fields that the LDAP user search is parameterized with, so
+     * distinct identities never share an entry.
+     *
+     * @param dn the user's PKI DN.
+     * @param username the user's PKI username.
+     * @param email the user's PKI email address.
+     */
+    public record Key(@Nonnull String dn, @Nullable String username, @Nullable String email) {
+
+        public static Key of(@Nonnull final PKIUser pkiUser) {
+            return new Key(pkiUser.dn(), pkiUser.username(), pkiUser.email());
+        }
+
+    }
+
+    /**
+     * A cached miss (a user that could not be found).
+     *
+     * <p>Only the message is kept, so that each lookup that hits the entry is thrown its own exception - rather than
+     * sharing one instance (and its stack trace) across threads.
+     *
+     * @param message of the exception thrown by the lookup.
+     * @param expiresAt the time at which the entry expires, in milliseconds.
+     */
+    private record NegativeEntry(String message, long expiresAt) {
+    }
+
+    private static final class CacheEntry {
+
+        /**
+         * The (possibly in-flight) LDAP user.
+         */
+        private final CompletableFuture<LDAPUser> future = new CompletableFuture<>();
+
+        /**
+         * Whether the entry is being refreshed in the background.
+         */
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        /*
+         * The time at which the user was loaded, and the times at which the entry should be refreshed, expires and
+         * can no longer be served (even while it is refreshed). These are only meaningful once the future has
+         * completed.
+         */
+        private volatile long cachedAt;
+        private volatile long refreshAt;
+        private volatile long expiresAt;
+        private volatile long staleUntil;
+
+        /**
+         * The number of consecutive failed refreshes, and the time before which the entry is not refreshed again
+         * (after a failure). These are only updated by the thread refreshing the entry.
+         */
+        private volatile int refreshFailures;
+        private volatile long refreshRetryAt;
+
+        /**
+         * The time at which the entry was last read.
+         */
+        private volatile long lastAccess;
+
+        /**
+         * The estimated memory (in bytes) used by the entry. Only meaningful once the {@link #future} has completed.
+         */
+        private volatile long weight;
+
+        private CacheEntry(final long now) {
+            this.lastAccess = now;
+        }
+
+        /**
+         * Wait for the entry to be loaded.
+         *
+         * @return the loaded {@link LDAPUser}.
+         */
+        public LDAPUser await() {
+            try {
+                return future.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException cause) throw cause;
+                throw ex;
+            }
+        }
+
+        /**
+         * Returns true if the entry can no longer be served, because it has expired and is past its grace window.
+         *
+         * <p>An entry that is still being loaded is never stale.
+         *
+         * @param now the current time, in milliseconds.
+         * @return true if the entry can no longer be served.
+         */
+        public boolean isStale(long now) {
+            return future.isDone() && now > staleUntil;
+        }
+
+        /**
+         * Returns true if the entry can no longer be served, relative to its own cache duration or the given
+         * cacheDuration (in case the cache duration has been reduced since the entry was loaded).
+         *
+         * @param cacheDuration in seconds.
+         * @param now the current time, in milliseconds.
+         * @return true if the entry can no longer be served.
+         */
+        public boolean isStale(int cacheDuration, long now) {
+            final var grace = staleUntil - expiresAt;
+            return isStale(now) || (future.isDone() && now > cachedAt + (cacheDuration * 1000L) + grace);
+        }
 
         /**
-         * Returns true if the entry has expired, relative to the given cacheDuration.
+         * Returns true if the entry should be refreshed in the background, because it is due to be refreshed ahead
+         * of its expiry or has expired (but is still within its grace window) - and is not waiting to retry a
+         * failed refresh.
          *
          * @param cacheDuration in seconds.
-         * @return true if the entry has been cached for longer than the given cacheDuration.
+         * @param now the current time, in milliseconds.
+         * @return true if the entry should be refreshed.
          */
-        public boolean hasExpired(int cacheDuration) {
-            return System.currentTimeMillis() > cachedAt + (cacheDuration * 1000L);
+        public boolean shouldRefresh(int cacheDuration, long now) {
+            if (now < refreshRetryAt) return false;
+            return now >= refreshAt || now > expiresAt || now > cachedAt + (cacheDuration * 1000L);
         }
 
     }
@@ -0,0 +1,224 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jenkins.util.Timer;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPSettings;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPUser;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls the directory for users and groups that have changed, and removes the affected users from the
+ * {@link LDAPCache} (and {@link AuthenticationCache}) - so that changes take effect without waiting for cache entries
+ * to expire.
+ *
+ * <p>Changes are found with {@code modifyTimestamp} searches under the user and group search bases, every
+ * {@link LDAPSettings#changePollInterval()} seconds. A user is invalidated if their own entry changed, if they are a
+ * member of a changed group, or if they were cached as a member of a changed group. Changed groups are only detected if
+ * the group search filter can be used to read the members of every group (see
+ * {@link LDAPDirectory#groupMemberAttributes(String)}).
+ *
+ * <p>Deletions do not leave an entry to find by its {@code modifyTimestamp}, so each poll also reads the entry of every
+ * cached user, and invalidates the users whose entries no longer exist. Deleted groups are not detected: their members
+ * keep the group until their cache entries expire.
+ *
+ * <p>Each search base has its own watermark: the latest {@code modifyTimestamp} seen (as reported by the directory).
+ * Timestamps are compared by the instant they represent, as directories differ in whether they report fractional
+ * seconds or an offset. They often only have a resolution of one second, so entries modified at the watermark are
+ * searched for again on the next poll, and are only processed again if their content has changed.
+ */
+public class LDAPChangeListener implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(LDAPChangeListener.class.getName());
+
+    /**
+     * How far (in seconds) before the listener started that changes are first searched for, to allow for the
+     * directory's clock differing from the controller's.
+     */
+    private static final long INITIAL_WINDOW_SECONDS = TimeUnit.MINUTES.toSeconds(5);
+
+    private static final DateTimeFormatter GENERALIZED_TIME =
+        DateTimeFormatter.ofPattern("yyyyMMddHHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final LDAPDirectory directory;
+    private final LDAPSettings settings;
+    private final LDAPCache cache;
+
+    private final Watermark users;
+    private final Watermark groups;
+
+    /**
+     * Whether changed groups can be read (with their members) from the directory.
+     */
+    private final boolean groupsReadable;
+
+    @Nullable
+    private volatile ScheduledFuture<?> pollTask;
+
+    LDAPChangeListener(
+        @Nonnull final LDAPDirectory directory,
+        @Nonnull final LDAPSettings settings,
+        @Nonnull final LDAPCache cache
+    ) {
+        this.directory = directory;
+        this.settings = settings;
+        this.cache = cache;
+
+        final var initial = GENERALIZED_TIME.format(Instant.now().minusSeconds(INITIAL_WINDOW_SECONDS));
+        this.users = new Watermark(initial);
+        this.groups = new Watermark(initial);
+        this.groupsReadable = LDAPDirectory.groupMemberAttributes(settings.groupSearchFilter()) != null;
+    }
+
+    /**
+     * Schedule the directory to be polled for changes periodically.
+     */
+    void start() {
+        pollTask = Timer.get().scheduleWithFixedDelay(
+            this::poll,
+            settings.changePollInterval(),
+            settings.changePollInterval(),
+            TimeUnit.SECONDS
+        );
+    }
+
+    /**
+     * Stop polling the directory for changes.
+     */
+    @Override
+    public void close() {
+        final var task = pollTask;
+        if (task != null) task.cancel(false);
+    }
+
+    /**
+     * Search the directory for users and groups modified since the last poll (and cached users that have been
+     * deleted), and invalidate the affected users.
+     *
+     * <p>Polls are serialized, so that they cannot move the watermarks concurrently.
+     */
+    synchronized void poll() {
+        try {
+            final var changedDNs = new HashSet<String>();
+            final var changedGroups = new HashSet<String>();
+            final var modifiedGroups = new ArrayList<LDAPDirectory.GroupEntry>();
+
+            directory.forEachModifiedEntry(settings, settings.userSearchBase(), users.value(), entry -> {
+                if (!users.advance(entry.dn(), entry.modifyTimestamp(), entry.fingerprint())) return;
+
+                final var dn = LDAPDirectory.normalizeDN(entry.dn());
+                if (dn != null) changedDNs.add(dn);
+            });
+
+            if (groupsReadable) {
+                directory.forEachGroup(settings, groups.value(), entry -> {
+                    if (!groups.advance(entry.dn(), entry.modifyTimestamp(), entry.hashCode())) return;
+
+                    modifiedGroups.add(entry);
+                    changedGroups.add(entry.name());
+                    for (final var member : entry.members()) {
+                        final var dn = LDAPDirectory.normalizeDN(member);
+                        if (dn != null) changedDNs.add(dn);
+
+                        // Nested groups' members inherit the group's memberships.
+                        final var nested = LDAPUser.groupNameOf(member);
+                        if (nested != null) changedGroups.add(nested);
+                    }
+                });
+            }
+
+            final var deleted = directory.findMissingEntries(settings, cache.userDNs());
+            for (final var entry : deleted) {
+                final var dn = LDAPDirectory.normalizeDN(entry);
+                if (dn != null) changedDNs.add(dn);
+            }
+
+            if (!modifiedGroups.isEmpty()) directory.onGroupsChanged(modifiedGroups);
+            if (changedDNs.isEmpty() && changedGroups.isEmpty()) return;
+
+            final var invalidated = cache.invalidate(user -> isAffected(user, changedDNs, changedGroups));
+            if (!invalidated.isEmpty()) AuthenticationCache.get().invalidate(invalidated);
+
+            LOGGER.fine("LDAP changes: %d entries (%d deleted), %d groups modified - %d cached users invalidated".formatted(
+                changedDNs.size(),
+                deleted.size(),
+                modifiedGroups.size(),
+                invalidated.size()
+            ));
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Failed to poll LDAP for changes", ex);
+        }
+    }
+
+    private static boolean isAffected(final LDAPUser user, final Set<String> changedDNs, final Set<String> changedGroups) {
+        final var dn = LDAPDirectory.normalizeDN(user.dn());
+        if (dn != null && changedDNs.contains(dn)) return true;
+
+        return !Collections.disjoint(user.groups(), changedGroups);
+    }
+
+    /**
+     * The latest {@code modifyTimestamp} seen under a search base, with the entries seen at that timestamp. Not
+     * thread-safe.
+     */
+    static final class Watermark {
+
+        private String value;
+
+        /**
+         * The fingerprints of the entries (by DN) that have been processed at the current watermark.
+         */
+        private final Map<String, Integer> seen = new HashMap<>();
+
+        Watermark(@Nonnull final String initial) {
+            this.value = initial;
+        }
+
+        @Nonnull
+        String value() {
+            return value;
+        }
+
+        /**
+         * Record that the given entry was seen, advancing the watermark if it is newer.
+         *
+         * @param dn the entry's DN.
+         * @param modifyTimestamp the entry's {@code modifyTimestamp}, if the directory returned it.
+         * @param fingerprint of the entry's content.
+         * @return true if the entry has changed since it was last processed.
+         */
+        boolean advance(@Nonnull final String dn, @Nullable final String modifyTimestamp, final int fingerprint) {
+            if (modifyTimestamp == null) return true;
+
+            final int comparison = LDAPDirectory.compareGeneralizedTime(modifyTimestamp, value);
+            if (comparison > 0) {
+                value = modifyTimestamp;
+                seen.clear();
+                seen.put(dn, fingerprint);
+                return true;
+            }
+
+            if (comparison == 0) {
+                final var previous = seen.put(dn, fingerprint);
+                return previous == null || previous != fingerprint;
+            }
+
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,151 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import jakarta.annotation.Nonnull;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPResilienceSettings;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * A circuit breaker and bulkhead for LDAP searches, so that request threads do not queue up behind a slow or
+ * unavailable directory.
+ *
+ * <p>The bulkhead caps the number of searches made at once: searches beyond the cap queue, and a search that cannot
+ * start within {@link LDAPResilienceSettings#BULKHEAD_WAIT_MILLIS} (the LDAP read timeout) is rejected. After
+ * {@link LDAPResilienceSettings#failureThreshold()} consecutive searches fail because the directory could not be
+ * reached (or timed out), the circuit opens and every search is rejected immediately. Once
+ * {@link LDAPResilienceSettings#openDuration()} has passed, a single trial search is let through: if it succeeds the
+ * circuit closes, otherwise it stays open for another period.
+ *
+ * <p>Rejected searches throw {@link LDAPUnavailableException}.
+ */
+public class LDAPCircuitBreaker {
+
+    private static final Logger LOGGER = Logger.getLogger(LDAPCircuitBreaker.class.getName());
+
+    private final LDAPResilienceSettings settings;
+
+    /**
+     * The source of the current time (in milliseconds).
+     */
+    private final LongSupplier clock;
+
+    private final Semaphore bulkhead;
+
+    /**
+     * The maximum time (in milliseconds) that a search waits for the bulkhead.
+     */
+    private final long bulkheadWaitMillis;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * Whether a trial search is in progress (while the circuit is open).
+     */
+    private final AtomicBoolean trialInProgress = new AtomicBoolean();
+
+    /**
+     * The time (in milliseconds) until which the circuit is open, or zero if it is closed.
+     */
+    private volatile long openUntil;
+
+    public LDAPCircuitBreaker(@Nonnull final LDAPResilienceSettings settings, @Nonnull final LongSupplier clock) {
+        this(settings, clock, LDAPResilienceSettings.BULKHEAD_WAIT_MILLIS);
+    }
+
+    LDAPCircuitBreaker(
+        @Nonnull final LDAPResilienceSettings settings,
+        @Nonnull final LongSupplier clock,
+        final long bulkheadWaitMillis
+    ) {
+        this.settings = settings;
+        this.clock = clock;
+        this.bulkhead = new Semaphore(settings.maxConcurrentSearches(), true);
+        this.bulkheadWaitMillis = bulkheadWaitMillis;
+    }
+
+    /**
+     * Returns true if searches are currently being rejected (or only a trial search is being let through).
+     *
+     * @return true if the circuit is open.
+     */
+    public boolean isOpen() {
+        return openUntil != 0;
+    }
+
+    /**
+     * Make the given search, unless it is rejected by the circuit breaker or bulkhead.
+     *
+     * @param search to make.
+     * @param <T> the type of the search's result.
+     * @return the search's result.
+     * @throws LDAPUnavailableException if the search was rejected.
+     */
+    public <T> T execute(@Nonnull final Supplier<T> search) {
+        final var trial = openUntil != 0;
+        if (trial && (clock.getAsLong() < openUntil || !trialInProgress.compareAndSet(false, true))) {
+            throw new LDAPUnavailableException("LDAP circuit breaker is open");
+        }
+
+        try {
+            if (!acquire()) throw new LDAPUnavailableException("Too many concurrent LDAP searches");
+
+            try {
+                final var result = search.get();
+                onSuccess();
+                return result;
+            } catch (RuntimeException ex) {
+                if (LDAPReplicaSet.isUnavailable(ex)) {
+                    onFailure(trial);
+                } else {
+                    onSuccess();
+                }
+
+                throw ex;
+            } finally {
+                bulkhead.release();
+            }
+        } finally {
+            if (trial) trialInProgress.set(false);
+        }
+    }
+
+    private boolean acquire() {
+        try {
+            return bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void onSuccess() {
+        if (consecutiveFailures.get() != 0) consecutiveFailures.set(0);
+
+        if (openUntil != 0) {
+            openUntil = 0;
+            LOGGER.info("LDAP circuit breaker closed - the directory is available again");
+        }
+    }
+
+    private void onFailure(final boolean trial) {
+        final var failures = consecutiveFailures.incrementAndGet();
+        if (!trial && failures < settings.failureThreshold()) return;
+
+        final var wasOpen = openUntil != 0;
+        openUntil = clock.getAsLong() + (settings.openDuration() * 1000L);
+
+        if (!wasOpen) {
+            LOGGER.warning("LDAP circuit breaker opened after %d consecutive failures - rejecting searches for %d seconds".formatted(
+                failures,
+                settings.openDuration()
+            ));
+        }
+    }
+
+}
@@ -0,0 +1,725 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.ldap.NameNotFoundException;
+import org.springframework.ldap.control.PagedResultsDirContextProcessor;
+import org.springframework.ldap.core.NameClassPairCallbackHandler;
+import org.springframework.ldap.core.support.DefaultDirObjectFactory;
+import org.springframework.ldap.core.support.SingleContextSource;
+import org.springframework.ldap.support.LdapEncoder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import xyz.apollosoftware.jenkins.pki.metrics.AuthenticationMetrics;
+import xyz.apollosoftware.jenkins.pki.metrics.AuthenticationMetrics.Stage;
+import xyz.apollosoftware.jenkins.pki.struct.GroupResolutionStrategy;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPMapping;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPSettings;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPUser;
+import xyz.apollosoftware.jenkins.pki.struct.PKIUser;
+
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.LdapName;
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import static org.springframework.ldap.query.LdapQueryBuilder.query;
+import static xyz.apollosoftware.jenkins.pki.struct.LDAPSettings.*;
+
+/**
+ * A long-lived connection to an LDAP directory, backed by a pool of LDAP connections to each of its servers.
+ *
+ * <p>Requests are balanced between the directory's servers (replicas) by their observed latency, and fail over to
+ * another server if a server cannot be reached - see {@link LDAPReplicaSet}.
+ *
+ * <p>A directory is created once per {@link LDAPSettings} (i.e., when the filter is created) and must be closed when
+ * it is no longer used, to close its pooled connections.
+ */
+public class LDAPDirectory implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(LDAPDirectory.class.getName());
+
+    /**
+     * The attribute that contains a group's name.
+     */
+    private static final String GROUP_NAME_ATTRIBUTE = "CN";
+
+    /**
+     * Matches an equality assertion of the member's DN on an attribute in the group search filter, e.g.
+     * {@code (member={0})}.
+     */
+    private static final Pattern MEMBER_ASSERTION = Pattern.compile("\\(([A-Za-z0-9][A-Za-z0-9.;-]*)=\\{0}\\)");
+
+    /**
+     * The placeholder for the member's DN in the group search filter.
+     */
+    private static final String MEMBER_PLACEHOLDER = "{0}";
+
+    /**
+     * The (operational) attribute that contains the time at which an entry was last modified.
+     */
+    private static final String MODIFY_TIMESTAMP_ATTRIBUTE = "modifyTimestamp";
+
+    /**
+     * The LDAP generalized time syntax (RFC 4517): hours with optional minutes and seconds, an optional fraction of
+     * the last of those, and either {@code Z} or an offset from UTC.
+     */
+    private static final Pattern GENERALIZED_TIME =
+        Pattern.compile("(\\d{4})(\\d{2})(\\d{2})(\\d{2})(\\d{2})?(\\d{2})?(?:[.,](\\d+))?(Z|[+-]\\d{2}(?:\\d{2})?)");
+
+    /**
+     * The attribute list that requests no attributes (RFC 4511, section 4.5.1.8).
+     */
+    private static final String NO_ATTRIBUTES = "1.1";
+
+    private final LDAPReplicaSet replicas;
+
+    /**
+     * The memoized group graph, used to expand nested group memberships.
+     */
+    private final GroupGraph groupGraph = new GroupGraph(System::currentTimeMillis);
+
+    /**
+     * The group membership index, or null if groups are not resolved from an index.
+     */
+    @Nullable
+    private final GroupMembershipIndex groupIndex;
+
+    /**
+     * The listener that invalidates cached users when their directory entries change, or null if it is not enabled.
+     */
+    @Nullable
+    private final LDAPChangeListener changeListener;
+
+    public LDAPDirectory(@Nonnull final LDAPSettings settings) {
+        this.replicas = new LDAPReplicaSet(settings, System::currentTimeMillis);
+        replicas.start();
+
+        final var indexable = groupMemberAttributes(settings.groupSearchFilter()) != null;
+        if (settings.groupResolution() == GroupResolutionStrategy.INDEX && !indexable) {
+            LOGGER.warning(("The group search filter cannot be used to read the members of every group, so groups " +
+                "will be searched for instead of indexed: %s").formatted(settings.groupSearchFilter()));
+        }
+
+        this.groupIndex = settings.groupResolution() == GroupResolutionStrategy.INDEX && indexable
+            ? new GroupMembershipIndex(this, settings)
+            : null;
+        if (groupIndex != null) groupIndex.start();
+
+        this.changeListener = settings.changePollInterval() > 0
+            ? new LDAPChangeListener(this, settings, LDAPCache.get())
+            : null;
+        if (changeListener != null) changeListener.start();
+    }
+
+    /**
+     * Get the servers (replicas) of the directory.
+     *
+     * @return the directory's {@link LDAPReplicaSet}.
+     */
+    @Nonnull
+    public LDAPReplicaSet replicas() {
+        return replicas;
+    }
+
+    /**
+     * Search the directory for the given user's entry and groups.
+     *
+     * <p>With the {@link GroupResolutionStrategy#MEMBER_OF} strategy, the user's groups are read from their entry,
+     * and with the {@link GroupResolutionStrategy#INDEX} strategy they are read from the {@link GroupMembershipIndex}
+     * (once it has loaded) - so only one query is made.
+     *
+     * <p>The user's groups are canonicalized with the {@link GroupDictionary}, so that cached entries share them.
+     *
+     * @param mapping of LDAP attributes to user fields.
+     * @param pkiUser to search for.
+     * @return the user's LDAP entry (with their groups).
+     * @throws UsernameNotFoundException if the user could not be found.
+     */
+    @Nonnull
+    public LDAPUser searchUser(@Nonnull final LDAPMapping mapping, @Nonnull final PKIUser pkiUser) {
+        return withPluginClassLoader(() -> {
+            final var settings = mapping.settings();
+            final var metrics = AuthenticationMetrics.get();
+
+            final var userSearchStart = System.nanoTime();
+            final var user = findUser(mapping, pkiUser);
+            metrics.record(Stage.LDAP_USER_SEARCH, userSearchStart);
+            if (settings.groupResolution() == GroupResolutionStrategy.MEMBER_OF) {
+                return user.withGroups(GroupDictionary.get().canonicalize(user.groups()));
+            }
+
+            final var groupSearchStart = System.nanoTime();
+            try {
+                if (groupIndex != null) {
+                    final var groups = groupIndex.groupsOf(user.dn(), settings.nestedGroups(), settings.nestedGroupDepth());
+                    if (groups != null) return user.withGroups(GroupDictionary.get().canonicalize(groups));
+                }
+
+                return user.withGroups(GroupDictionary.get().canonicalize(searchGroups(settings, user.dn())));
+            } finally {
+                metrics.record(Stage.LDAP_GROUP_SEARCH, groupSearchStart);
+            }
+        });
+    }
+
+    /**
+     * Search the directory for the given user's entry (including their groups, with the
+     * {@link GroupResolutionStrategy#MEMBER_OF} strategy only).
+     *
+     * @param mapping of LDAP attributes to user fields.
+     * @param pkiUser to search for.
+     * @return the user's LDAP entry.
+     * @throws UsernameNotFoundException if the user could not be found.
+     */
+    @Nonnull
+    public LDAPUser findUser(@Nonnull final LDAPMapping mapping, @Nonnull final PKIUser pkiUser) {
+        return withPluginClassLoader(() -> {
+            final var settings = mapping.settings();
+            final var user = replicas.execute(replica -> replica.client().search()
+                    .query(query()
+                            .countLimit(LDAP_SINGLE_ENTRY_LIMIT)
+                            .timeLimit(LDAP_TIME_LIMIT_MILLIS)
+                            .attributes(userAttributes(mapping))
+                            .base(settings.userSearchBase())
+                            .filter(settings.userSearchFilter(), pkiUser.dn(), pkiUser.username(), pkiUser.email()))
+                    .toList(LDAPUser.mapper(mapping))
+                    .stream().findFirst().orElseThrow(() -> new UsernameNotFoundException("User could not be found in LDAP")));
+
+            if (settings.groupResolution() != GroupResolutionStrategy.MEMBER_OF) return user;
+
+            // The mapper reads the DNs of the user's groups, which are resolved to (possibly nested) group names.
+            final var groups = new HashSet<GroupGraph.Group>();
+            for (final var groupDN : user.groups()) {
+                final var dn = parseDN(groupDN);
+                final var name = LDAPUser.groupNameOf(groupDN);
+                if (dn != null && name != null) groups.add(new GroupGraph.Group(dn, name));
+            }
+
+            return user.withGroups(resolveGroupNames(settings, groups));
+        });
+    }
+
+    /**
+     * Search the directory for the names of the groups that the given user is a member of.
+     *
+     * <p>Groups are searched using the LDAP Simple Paged Results control (with {@link LDAPSettings#pageSize()}
+     * entries per page), and each page is added to the result as it is received - so there is no limit on the number
+     * of groups a user can be a member of.
+     *
+     * <p>If {@link LDAPSettings#nestedGroups()} is enabled, the groups that the user's groups are (transitively)
+     * members of are included.
+     *
+     * @param settings to search with.
+     * @param userDN the DN of the user's LDAP entry.
+     * @return the names of the user's groups.
+     */
+    @Nonnull
+    public Set<String> searchGroups(@Nonnull final LDAPSettings settings, @Nonnull final String userDN) {
+        return resolveGroupNames(settings, searchDirectGroups(settings, userDN));
+    }
+
+    /**
+     * Derive the attributes that contain a group's members from the given group search filter - i.e., the attributes
+     * that the member's DN ({@code {0}}) is compared to, as in {@code (|(member={0})(uniqueMember={0}))}.
+     *
+     * <p>Every group's members can only be read if the filter can be turned into a search for groups with any
+     * member: so each {@code {0}} must be the whole value of an equality assertion, and none may be negated.
+     *
+     * @param groupSearchFilter to derive the member attributes from.
+     * @return the member attributes, or null if the filter cannot be used to read the members of every group.
+     */
+    @Nullable
+    public static List<String> groupMemberAttributes(@Nonnull final String groupSearchFilter) {
+        final var filter = groupSearchFilter.startsWith("(") ? groupSearchFilter : "(" + groupSearchFilter + ")";
+        final var matcher = MEMBER_ASSERTION.matcher(filter);
+        final var attributes = new ArrayList<String>();
+
+        // Whether each enclosing filter (innermost first) is a negation.
+        final var negated = new ArrayDeque<Boolean>();
+        int negations = 0;
+        int assertions = 0;
+
+        for (int i = 0; i < filter.length(); i++) {
+            final var c = filter.charAt(i);
+            if (c == '(') {
+                if (matcher.region(i, filter.length()).lookingAt()) {
+                    if (negations > 0) return null;
+
+                    final var attribute = matcher.group(1);
+                    if (attributes.stream().noneMatch(attribute::equalsIgnoreCase)) attributes.add(attribute);
+                    assertions++;
+                    i = matcher.end() - 1;
+                    continue;
+                }
+
+                final var negation = i + 1 < filter.length() && filter.charAt(i + 1) == '!';
+                negated.push(negation);
+                if (negation) negations++;
+            } else if (c == ')') {
+                if (negated.isEmpty()) return null;
+                if (negated.pop()) negations--;
+            }
+        }
+
+        // Any other use of the member's DN (e.g., in a substring or extensible match) cannot match any member.
+        final var occurrences = filter.split(Pattern.quote(MEMBER_PLACEHOLDER), -1).length - 1;
+        if (assertions == 0 || assertions != occurrences) return null;
+
+        return attributes;
+    }
+
+    /**
+     * Load the members of every group under the group search base, using the LDAP Simple Paged Results control.
+     *
+     * <p>Groups are located with the {@link LDAPSettings#groupSearchFilter()}, matching any member.
+     *
+     * @param settings to search with.
+     * @return the names of the groups that each member (by DN) belongs to.
+     */
+    @Nonnull
+    public Map<LdapName, Set<String>> loadGroupMemberships(@Nonnull final LDAPSettings settings) {
+        final var memberships = new HashMap<LdapName, Set<String>>();
+
+        forEachGroup(settings, null, group -> {
+            for (final var memberDN : group.members()) {
+                final var member = parseDN(memberDN);
+                if (member != null) memberships.computeIfAbsent(member, key -> new HashSet<>()).add(group.name());
+            }
+        });
+
+        return memberships;
+    }
+
+    /**
+     * Read every group under the group search base (with its members), using the LDAP Simple Paged Results control.
+     *
+     * <p>Groups are located with the {@link LDAPSettings#groupSearchFilter()}, matching any member - and, if
+     * {@code modifiedSince} is given, only groups modified at or after that time are read. Members are read from the
+     * attributes that the filter compares the member's DN to (see {@link #groupMemberAttributes(String)}).
+     *
+     * @param settings to search with.
+     * @param modifiedSince the {@code modifyTimestamp} (in the directory's generalized time format) to read groups
+     *                      modified since, or null to read all groups.
+     * @param consumer that each group is passed to, as it is received.
+     * @throws IllegalStateException if the group search filter cannot be used to read the members of every group.
+     */
+    public void forEachGroup(
+        @Nonnull final LDAPSettings settings,
+        @Nullable final String modifiedSince,
+        @Nonnull final Consumer<GroupEntry> consumer
+    ) {
+        final var memberAttributes = groupMemberAttributes(settings.groupSearchFilter());
+        if (memberAttributes == null) {
+            throw new IllegalStateException("The group search filter cannot be used to read the members of every group: %s"
+                .formatted(settings.groupSearchFilter()));
+        }
+
+        var filter = settings.groupSearchFilter().replace(MEMBER_PLACEHOLDER, "*");
+        if (!filter.startsWith("(")) filter = "(" + filter + ")";
+        if (modifiedSince != null) {
+            filter = "(&%s(%s>=%s))".formatted(filter, MODIFY_TIMESTAMP_ATTRIBUTE, LdapEncoder.filterEncode(modifiedSince));
+        }
+
+        searchPaged(
+            settings.groupSearchBase(),
+            filter,
+            searchControls(groupAttributes(memberAttributes)),
+            settings.pageSize(),
+            nameClassPair -> {
+                final var result = (SearchResult) nameClassPair;
+                final var attributes = result.getAttributes();
+                final var name = firstValue(attributes.get(GROUP_NAME_ATTRIBUTE));
+                if (name == null) return;
+
+                final var members = new ArrayList<String>();
+                for (final var memberAttribute : memberAttributes) {
+                    final var values = attributes.get(memberAttribute);
+                    if (values == null) continue;
+
+                    final var iterator = values.getAll();
+                    while (iterator.hasMore()) {
+                        final var member = iterator.next();
+                        if (member != null) members.add(member.toString());
+                    }
+                }
+
+                consumer.accept(new GroupEntry(
+                    result.getNameInNamespace(),
+                    name,
+                    members,
+                    firstValue(attributes.get(MODIFY_TIMESTAMP_ATTRIBUTE))
+                ));
+            }
+        );
+    }
+
+    /**
+     * Read every entry under the given base that has been modified at or after the given time, using the LDAP Simple
+     * Paged Results control.
+     *
+     * @param settings to search with.
+     * @param base to search under.
+     * @param modifiedSince the {@code modifyTimestamp} (in generalized time format) to read entries modified since.
+     * @param consumer that each entry is passed to, as it is received.
+     */
+    public void forEachModifiedEntry(
+        @Nonnull final LDAPSettings settings,
+        @Nonnull final String base,
+        @Nonnull final String modifiedSince,
+        @Nonnull final Consumer<ModifiedEntry> consumer
+    ) {
+        searchPaged(
+            base,
+            "(%s>=%s)".formatted(MODIFY_TIMESTAMP_ATTRIBUTE, LdapEncoder.filterEncode(modifiedSince)),
+            searchControls("*", MODIFY_TIMESTAMP_ATTRIBUTE),
+            settings.pageSize(),
+            nameClassPair -> {
+                final var result = (SearchResult) nameClassPair;
+                final var attributes = result.getAttributes();
+                consumer.accept(new ModifiedEntry(
+                    result.getNameInNamespace(),
+                    firstValue(attributes.get(MODIFY_TIMESTAMP_ATTRIBUTE)),
+                    attributes.hashCode()
+                ));
+            }
+        );
+    }
+
+    /**
+     * Find which of the given entries no longer exist in the directory, by reading each entry (without any of its
+     * attributes) over a single connection.
+     *
+     * <p>Entries outside the directory's base DN cannot be read, so are assumed to exist.
+     *
+     * @param settings to search with.
+     * @param dns of the entries to look for.
+     * @return the DNs (as given) of the entries that do not exist.
+     */
+    @Nonnull
+    public Set<String> findMissingEntries(@Nonnull final LDAPSettings settings, @Nonnull final Collection<String> dns) {
+        final var base = parseDN(settings.baseDN());
+        if (base == null || dns.isEmpty()) return Set.of();
+
+        final var controls = searchControls(NO_ATTRIBUTES);
+        controls.setSearchScope(SearchControls.OBJECT_SCOPE);
+        controls.setCountLimit(1);
+
+        return withPluginClassLoader(() -> replicas.execute(replica -> SingleContextSource.doWithSingleContext(
+            replica.contextSource(),
+            operations -> {
+                final var missing = new HashSet<String>();
+                for (final var dn : dns) {
+                    final var name = parseDN(dn);
+                    if (name == null || !name.startsWith(base)) continue;
+
+                    try {
+                        operations.search(
+                            name.getSuffix(base.size()).toString(),
+                            "(objectClass=*)",
+                            controls,
+                            nameClassPair -> {}
+                        );
+                    } catch (NameNotFoundException ex) {
+                        missing.add(dn);
+                    }
+                }
+
+                return missing;
+            }
+        )));
+    }
+
+    /**
+     * Discard any group memberships derived from the given groups, as they have been modified.
+     *
+     * @param modified groups, as read from the directory.
+     */
+    void onGroupsChanged(@Nonnull final List<GroupEntry> modified) {
+        groupGraph.clear();
+        if (groupIndex != null) groupIndex.update(modified);
+    }
+
+    /**
+     * Parse the given DN, for comparison with other DNs.
+     *
+     * @param dn to parse.
+     * @return the parsed DN, or null if it is not a valid DN.
+     */
+    @Nullable
+    public static LdapName parseDN(@Nullable final Object dn) {
+        if (dn == null) return null;
+
+        try {
+            return new LdapName(dn.toString());
+        } catch (NamingException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Normalize the given DN, so that equivalent DNs (differing only in case, spacing or escaping) are equal strings.
+     *
+     * @param dn to normalize.
+     * @return the normalized DN, or null if it is not a valid DN.
+     */
+    @Nullable
+    public static String normalizeDN(@Nullable final Object dn) {
+        final var name = parseDN(dn);
+        if (name == null) return null;
+
+        final var normalized = new StringBuilder();
+        for (int i = name.size() - 1; i >= 0; i--) {
+            if (!normalized.isEmpty()) normalized.append(',');
+            normalized.append(name.getRdn(i).toString().toLowerCase(Locale.ROOT));
+        }
+
+        return normalized.toString();
+    }
+
+    /**
+     * Parse the given LDAP generalized time (such as a {@code modifyTimestamp}), which directories may report with or
+     * without fractional seconds, and in UTC or with an offset.
+     *
+     * @param value to parse.
+     * @return the instant, or null if it is not a valid generalized time.
+     */
+    @Nullable
+    public static Instant parseGeneralizedTime(@Nullable final String value) {
+        if (value == null) return null;
+
+        final var matcher = GENERALIZED_TIME.matcher(value);
+        if (!matcher.matches()) return null;
+
+        try {
+            var time = LocalDateTime.of(
+                Integer.parseInt(matcher.group(1)),
+                Integer.parseInt(matcher.group(2)),
+                Integer.parseInt(matcher.group(3)),
+                Integer.parseInt(matcher.group(4)),
+                matcher.group(5) != null ? Integer.parseInt(matcher.group(5)) : 0,
+                matcher.group(6) != null ? Integer.parseInt(matcher.group(6)) : 0
+            );
+
+            if (matcher.group(7) != null) {
+                // The fraction applies to the last unit given (hours, minutes or seconds).
+                final long unitNanos = matcher.group(5) == null ? TimeUnit.HOURS.toNanos(1)
+                    : matcher.group(6) == null ? TimeUnit.MINUTES.toNanos(1)
+                    : TimeUnit.SECONDS.toNanos(1);
+                final var fraction = new BigDecimal("0." + matcher.group(7));
+                time = time.plusNanos(fraction.multiply(BigDecimal.valueOf(unitNanos)).longValue());
+            }
+
+            return time.toInstant(ZoneOffset.of(matcher.group(8)));
+        } catch (DateTimeException | ArithmeticException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Compare two generalized times by the instants they represent, falling back to comparing them as strings if
+     * either cannot be parsed.
+     *
+     * @param a the first time.
+     * @param b the second time.
+     * @return a negative integer, zero, or a positive integer as {@code a} is before, at, or after {@code b}.
+     */
+    static int compareGeneralizedTime(@Nonnull final String a, @Nonnull final String b) {
+        final var first = parseGeneralizedTime(a);
+        final var second = parseGeneralizedTime(b);
+        if (first == null || second == null) return a.compareTo(b);
+
+        return first.compareTo(second);
+    }
+
+    /**
+     * Stop refreshing the group membership index and polling for changes (if enabled) and close all pooled
+     * connections to the directory.
+     */
+    @Override
+    public void close() {
+        if (changeListener != null) changeListener.close();
+        if (groupIndex != null) groupIndex.close();
+        replicas.close();
+    }
+
+    /**
+     * Run the given search with the plugin's class loader as the context class loader, so that JNDI can locate the
+     * plugin's {@link DefaultDirObjectFactory}.
+     */
+    private <T> T withPluginClassLoader(final Supplier<T> search) {
+        final var thread = Thread.currentThread();
+        final var originalClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(LDAPDirectory.class.getClassLoader());
+
+        try {
+            return search.get();
+        } finally {
+            thread.setContextClassLoader(originalClassLoader);
+        }
+    }
+
+    /**
+     * The attributes to return for a user's entry.
+     *
+     * <p>These are requested explicitly, as membership attributes are often operational attributes (which are not
+     * returned unless they are requested).
+     */
+    private static String[] userAttributes(final LDAPMapping mapping) {
+        final var attributes = new ArrayList<String>(4);
+        for (final var field : new String[]{mapping.usernameField(), mapping.nameField(), mapping.emailField()}) {
+            if (field != null && !field.isBlank()) attributes.add(field);
+        }
+
+        if (mapping.settings().groupResolution() == GroupResolutionStrategy.MEMBER_OF) {
+            attributes.add(mapping.settings().groupMembershipAttribute());
+        }
+
+        return attributes.toArray(String[]::new);
+    }
+
+    /**
+     * Search the group search base for the groups that the given member (a user or group) is directly a member of.
+     */
+    private Set<GroupGraph.Group> searchDirectGroups(final LDAPSettings settings, final String memberDN) {
+        final var groups = new HashSet<GroupGraph.Group>();
+
+        searchPaged(
+            settings.groupSearchBase(),
+            query().filter(settings.groupSearchFilter(), memberDN).filter().encode(),
+            searchControls(GROUP_NAME_ATTRIBUTE),
+            settings.pageSize(),
+            nameClassPair -> {
+                final var result = (SearchResult) nameClassPair;
+                final var name = firstValue(result.getAttributes().get(GROUP_NAME_ATTRIBUTE));
+                final var dn = parseDN(result.getNameInNamespace());
+                if (name != null && dn != null) groups.add(new GroupGraph.Group(dn, name));
+            }
+        );
+
+        return groups;
+    }
+
+    /**
+     * Resolve the names of the given groups - expanding them to include the groups they are (transitively) members
+     * of, if {@link LDAPSettings#nestedGroups()} is enabled.
+     *
+     * <p>The parents of each group are found with the group search filter, and memoized in the {@link GroupGraph}
+     * for the LDAP cache duration.
+     */
+    private Set<String> resolveGroupNames(final LDAPSettings settings, final Set<GroupGraph.Group> groups) {
+        final var resolved = settings.nestedGroups()
+            ? groupGraph.expand(
+                groups,
+                settings.nestedGroupDepth(),
+                settings.cacheDuration(),
+                group -> searchDirectGroups(settings, group.dn().toString())
+            )
+            : groups;
+
+        final var names = new HashSet<String>(resolved.size());
+        for (final var group : resolved) {
+            names.add(group.name());
+        }
+
+        return names;
+    }
+
+    /**
+     * Run the given search using the LDAP Simple Paged Results control, passing each result to the handler as it is
+     * received.
+     *
+     * <p>All pages are requested over the same connection, as the paged results cookie is only valid for the
+     * connection that it was issued on. If the server fails part way through, the search is restarted on another
+     * server - so results may be passed to the handler more than once.
+     */
+    private void searchPaged(
+        final String base,
+        final String filter,
+        final SearchControls controls,
+        final int pageSize,
+        final NameClassPairCallbackHandler handler
+    ) {
+        withPluginClassLoader(() -> replicas.execute(replica -> SingleContextSource.doWithSingleContext(
+            replica.contextSource(),
+            operations -> {
+                final var processor = new PagedResultsDirContextProcessor(pageSize);
+                do {
+                    operations.search(base, filter, controls, handler, processor);
+                } while (processor.hasMore());
+
+                return null;
+            }
+        )));
+    }
+
+    private static SearchControls searchControls(final String... attributes) {
+        final var controls = new SearchControls();
+        controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+        controls.setTimeLimit(LDAP_TIME_LIMIT_MILLIS);
+        controls.setReturningAttributes(attributes);
+        return controls;
+    }
+
+    private static String[] groupAttributes(final List<String> memberAttributes) {
+        final var attributes = new ArrayList<String>(memberAttributes.size() + 2);
+        attributes.add(GROUP_NAME_ATTRIBUTE);
+        attributes.add(MODIFY_TIMESTAMP_ATTRIBUTE);
+        attributes.addAll(memberAttributes);
+        return attributes.toArray(String[]::new);
+    }
+
+    @Nullable
+    private static String firstValue(@Nullable final Attribute attribute) throws NamingException {
+        if (attribute == null) return null;
+
+        final var value = attribute.get();
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * A group, as read from the directory.
+     *
+     * @param dn the group's DN.
+     * @param name the group's name.
+     * @param members the DNs of the group's members.
+     * @param modifyTimestamp the time at which the group was last modified (if the directory provides it).
+     */
+    public record GroupEntry(
+        @Nonnull String dn,
+        @Nonnull String name,
+        @Nonnull List<String> members,
+        @Nullable String modifyTimestamp
+    ) {
+    }
+
+    /**
+     * An entry that has been modified.
+     *
+     * @param dn the entry's DN.
+     * @param modifyTimestamp the time at which the entry was last modified.
+     * @param fingerprint a hash of the entry's attributes, to distinguish modifications made within the same second.
+     */
+    public record ModifiedEntry(@Nonnull String dn, @Nullable String modifyTimestamp, int fingerprint) {
+    }
+
+}
@@ -0,0 +1,282 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import jakarta.annotation.Nonnull;
+import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.core.LdapClient;
+import org.springframework.ldap.core.support.DefaultDirObjectFactory;
+import org.springframework.ldap.core.support.LdapContextSource;
+import org.springframework.ldap.pool2.factory.PoolConfig;
+import org.springframework.ldap.pool2.factory.PoolingContextSource;
+import org.springframework.ldap.pool2.validation.DefaultDirContextValidator;
+import org.springframework.ldap.support.LdapUtils;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPPoolSettings;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPSettings;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One server (replica) of an LDAP directory, with its own pool of connections and its observed health.
+ *
+ * <p>Each replica tracks an exponentially weighted moving average (EWMA) of its response times, and the number of
+ * requests that are outstanding on it, which are used by {@link LDAPReplicaSet} to select a replica. A replica that
+ * fails (or times out) is marked unavailable, until it has been successfully re-probed.
+ */
+public class LDAPReplica implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(LDAPReplica.class.getName());
+
+    /**
+     * The weight of each new response time in the moving average, as a fraction ({@code 1 / EWMA_WEIGHT}).
+     */
+    private static final int EWMA_WEIGHT = 5;
+
+    /**
+     * The initial interval (in milliseconds) after which an unavailable replica is re-probed. The interval doubles
+     * after each consecutive failure, up to {@link #MAX_RETRY_INTERVAL_MILLIS}.
+     */
+    public static final long RETRY_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    /**
+     * The maximum interval (in milliseconds) after which an unavailable replica is re-probed.
+     */
+    public static final long MAX_RETRY_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final String url;
+
+    /**
+     * The context source that opens (unpooled) connections to the replica, which are used to probe it.
+     */
+    private final LdapContextSource targetContextSource;
+
+    private final PoolingContextSource contextSource;
+    private final LdapClient client;
+
+    /**
+     * The moving average of the replica's response times (in nanoseconds), or zero if it has not responded yet.
+     */
+    private final AtomicLong latencyNanos = new AtomicLong();
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private volatile boolean available = true;
+
+    /**
+     * The time (in milliseconds) at which the replica should next be probed, if it is unavailable.
+     */
+    private volatile long retryAt;
+
+    LDAPReplica(@Nonnull final String url, @Nonnull final LDAPSettings settings) {
+        this.url = url;
+
+        targetContextSource = new LdapContextSource();
+        targetContextSource.setUrl(url);
+        targetContextSource.setBase(settings.baseDN());
+
+        final var manager = settings.manager();
+        if (manager == null) {
+            targetContextSource.setAnonymousReadOnly(true);
+        } else {
+            targetContextSource.setAuthenticationSource(manager);
+        }
+
+        // Connections are pooled by the PoolingContextSource, rather than by JNDI.
+        targetContextSource.setPooled(false);
+        targetContextSource.setDirObjectFactory(DefaultDirObjectFactory.class);
+        targetContextSource.setBaseEnvironmentProperties(Map.of(
+            "com.sun.jndi.ldap.connect.timeout", String.valueOf(LDAPSettings.LDAP_CONNECT_TIMEOUT_MILLIS),
+            "com.sun.jndi.ldap.read.timeout", String.valueOf(LDAPSettings.LDAP_READ_TIMEOUT_MILLIS)
+        ));
+        targetContextSource.afterPropertiesSet();
+
+        this.contextSource = new PoolingContextSource(createPoolConfig(settings.pool()));
+        this.contextSource.setContextSource(targetContextSource);
+        this.contextSource.setDirContextValidator(new DefaultDirContextValidator());
+
+        this.client = LdapClient.builder().contextSource(contextSource).build();
+    }
+
+    /**
+     * The URL of the replica.
+     *
+     * @return the replica's URL.
+     */
+    @Nonnull
+    public String url() {
+        return url;
+    }
+
+    /**
+     * Get the (pooled) context source for the replica.
+     *
+     * @return the replica's {@link ContextSource}.
+     */
+    @Nonnull
+    public ContextSource contextSource() {
+        return contextSource;
+    }
+
+    /**
+     * Get the client for the replica.
+     *
+     * @return the replica's {@link LdapClient}.
+     */
+    @Nonnull
+    public LdapClient client() {
+        return client;
+    }
+
+    /**
+     * Returns true unless the replica has failed (and has not been successfully re-probed since).
+     *
+     * @return true if requests may be sent to the replica.
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * The moving average of the replica's response times.
+     *
+     * @return the average response time, in milliseconds.
+     */
+    public double latencyMillis() {
+        return latencyNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * The number of requests currently being made to the replica.
+     *
+     * @return the number of outstanding requests.
+     */
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * The cost of sending another request to the replica: its average response time, scaled by the number of
+     * requests that are already outstanding on it. Replicas that have not responded yet cost the least, so that they
+     * are measured.
+     */
+    long cost() {
+        return (latencyNanos.get() + 1) * (outstanding.get() + 1);
+    }
+
+    /**
+     * Returns true if the replica is unavailable and is due to be re-probed.
+     */
+    boolean isRetryDue(final long now) {
+        return !available && now >= retryAt;
+    }
+
+    /**
+     * The time (in milliseconds) at which the replica is due to be re-probed.
+     */
+    long retryAt() {
+        return retryAt;
+    }
+
+    void onStart() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * Record that a request to the replica completed (successfully, or with an error from the directory itself).
+     *
+     * @param elapsedNanos the replica's response time.
+     */
+    void onSuccess(final long elapsedNanos) {
+        outstanding.decrementAndGet();
+        latencyNanos.accumulateAndGet(Math.max(elapsedNanos, 1), (average, sample) ->
+            average == 0 ? sample : average + ((sample - average) / EWMA_WEIGHT)
+        );
+
+        if (!available) markAvailable();
+    }
+
+    /**
+     * Record that a request to the replica failed because it could not be reached (or timed out), so it is marked
+     * unavailable.
+     *
+     * @param now the current time (in milliseconds).
+     */
+    void onFailure(final long now) {
+        outstanding.decrementAndGet();
+        markUnavailable(now);
+    }
+
+    /**
+     * Probe the replica by opening (and closing) a new connection to it, marking it available if that succeeds.
+     *
+     * @param now the current time (in milliseconds).
+     * @return true if the replica is available.
+     */
+    boolean probe(final long now) {
+        final var startedAt = System.nanoTime();
+        try {
+            LdapUtils.closeContext(targetContextSource.getReadOnlyContext());
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.FINE, "LDAP server is still unavailable: %s".formatted(url), ex);
+            markUnavailable(now);
+            return false;
+        }
+
+        // The probe's response time replaces the (stale) average.
+        latencyNanos.set(Math.max(System.nanoTime() - startedAt, 1));
+        markAvailable();
+        return true;
+    }
+
+    private void markAvailable() {
+        failures.set(0);
+
+        if (!available) {
+            available = true;
+            LOGGER.info("LDAP server is available again: %s".formatted(url));
+        }
+    }
+
+    private void markUnavailable(final long now) {
+        final var failed = failures.incrementAndGet();
+        final var backoff = RETRY_INTERVAL_MILLIS << Math.min(failed - 1, 16);
+        retryAt = now + Math.min(backoff, MAX_RETRY_INTERVAL_MILLIS);
+
+        if (available) {
+            available = false;
+            LOGGER.warning("LDAP server is unavailable: %s".formatted(url));
+        }
+    }
+
+    /**
+     * Close all pooled connections to the replica.
+     */
+    @Override
+    public void close() {
+        try {
+            contextSource.destroy();
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Failed to close LDAP connection pool: %s".formatted(url), ex);
+        }
+    }
+
+    private static PoolConfig createPoolConfig(final LDAPPoolSettings settings) {
+        final var config = new PoolConfig();
+        config.setMinIdlePerKey(settings.minIdle());
+        config.setMaxIdlePerKey(settings.maxIdle());
+        config.setMaxTotalPerKey(settings.maxTotal());
+        config.setMaxTotal(settings.maxTotal());
+        config.setMaxWaitMillis(LDAPPoolSettings.MAX_WAIT_MILLIS);
+        config.setTestOnBorrow(settings.testOnBorrow());
+        config.setTestWhileIdle(true);
+        config.setTimeBetweenEvictionRunsMillis(settings.evictionInterval() * 1000L);
+        config.setMinEvictableIdleTimeMillis(LDAPPoolSettings.MIN_EVICTABLE_IDLE_TIME * 1000L);
+        return config;
+    }
+
+}
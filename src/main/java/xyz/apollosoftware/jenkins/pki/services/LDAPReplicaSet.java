@@ -0,0 +1,215 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jenkins.util.Timer;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPSettings;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * The servers (replicas) of an LDAP directory, which requests are balanced between by their observed latency.
+ *
+ * <p>Each request is sent to the available replica with the lowest cost - its average response time, scaled by the
+ * number of requests already outstanding on it - so that a slow replica receives less traffic. If a replica cannot be
+ * reached (or times out), it is marked unavailable and the request is retried on the next replica. Unavailable
+ * replicas are re-probed in the background (with exponential backoff), and receive requests again once they respond.
+ *
+ * <p>If no replica is available, each request is sent to the replica that is next due to be re-probed.
+ */
+public class LDAPReplicaSet implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(LDAPReplicaSet.class.getName());
+
+    /**
+     * The interval (in seconds) at which unavailable replicas are checked, to see whether they are due to be
+     * re-probed.
+     */
+    private static final long PROBE_INTERVAL_SECONDS = 1;
+
+    /**
+     * The start of the message of the exception thrown by JNDI when a read times out.
+     */
+    private static final String READ_TIMEOUT_MESSAGE = "LDAP response read timed out";
+
+    private final List<LDAPReplica> replicas;
+
+    /**
+     * The source of the current time (in milliseconds).
+     */
+    private final LongSupplier clock;
+
+    @Nullable
+    private volatile ScheduledFuture<?> probeTask;
+
+    LDAPReplicaSet(@Nonnull final LDAPSettings settings, @Nonnull final LongSupplier clock) {
+        final var urls = settings.urls();
+        final var created = new ArrayList<LDAPReplica>(urls.size());
+        for (final var url : urls) {
+            created.add(new LDAPReplica(url, settings));
+        }
+
+        this.replicas = Collections.unmodifiableList(created);
+        this.clock = clock;
+    }
+
+    /**
+     * Start re-probing unavailable replicas in the background (if there is more than one replica - otherwise, the
+     * only replica is retried by requests).
+     */
+    void start() {
+        if (replicas.size() < 2) return;
+
+        probeTask = Timer.get().scheduleWithFixedDelay(
+            this::probeUnavailable,
+            PROBE_INTERVAL_SECONDS,
+            PROBE_INTERVAL_SECONDS,
+            TimeUnit.SECONDS
+        );
+    }
+
+    /**
+     * The replicas, in the order they were configured.
+     *
+     * @return the replicas.
+     */
+    @Nonnull
+    public List<LDAPReplica> replicas() {
+        return replicas;
+    }
+
+    /**
+     * Run the given operation on the best replica, failing over to the next best replica if the replica cannot be
+     * reached.
+     *
+     * <p>The operation may be retried on another replica after it has partially completed, so it must be safe to
+     * repeat.
+     *
+     * @param operation to run.
+     * @param <T> the type of the operation's result.
+     * @return the operation's result.
+     * @throws RuntimeException thrown by the operation, if it failed on every replica it was attempted on.
+     */
+    public <T> T execute(@Nonnull final Function<LDAPReplica, T> operation) {
+        final var attempted = new ArrayList<LDAPReplica>(replicas.size());
+        RuntimeException failure = null;
+
+        LDAPReplica replica;
+        while ((replica = select(attempted)) != null) {
+            attempted.add(replica);
+            replica.onStart();
+            final var startedAt = System.nanoTime();
+
+            try {
+                final var result = operation.apply(replica);
+                replica.onSuccess(System.nanoTime() - startedAt);
+                return result;
+            } catch (RuntimeException ex) {
+                if (!isUnavailable(ex)) {
+                    replica.onSuccess(System.nanoTime() - startedAt);
+                    throw ex;
+                }
+
+                replica.onFailure(clock.getAsLong());
+                LOGGER.fine("LDAP request to %s failed: %s".formatted(replica.url(), ex));
+
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+
+        if (failure == null) throw new IllegalStateException("No LDAP servers are configured");
+        throw failure;
+    }
+
+    /**
+     * Select the replica to send a request to, from those that have not already been attempted.
+     *
+     * @return the available replica with the lowest cost, or (if no replica was available from the start) the
+     * replica that is next due to be re-probed, or null if there are no more replicas to attempt.
+     */
+    @Nullable
+    LDAPReplica select(@Nonnull final List<LDAPReplica> attempted) {
+        LDAPReplica best = null;
+        long bestCost = Long.MAX_VALUE;
+
+        for (final var replica : replicas) {
+            if (!replica.isAvailable() || attempted.contains(replica)) continue;
+
+            final var cost = replica.cost();
+            if (cost < bestCost) {
+                best = replica;
+                bestCost = cost;
+            }
+        }
+
+        if (best != null || !attempted.isEmpty()) return best;
+
+        // Every replica is unavailable, so try the one that is next due to be re-probed (rather than failing fast).
+        for (final var replica : replicas) {
+            if (best == null || replica.retryAt() < best.retryAt()) best = replica;
+        }
+
+        return best;
+    }
+
+    /**
+     * Re-probe every unavailable replica that is due to be re-probed.
+     */
+    void probeUnavailable() {
+        for (final var replica : replicas) {
+            final var now = clock.getAsLong();
+            if (replica.isRetryDue(now)) replica.probe(now);
+        }
+    }
+
+    /**
+     * Stop re-probing replicas, and close all pooled connections to them.
+     */
+    @Override
+    public void close() {
+        final var task = probeTask;
+        if (task != null) task.cancel(false);
+
+        replicas.forEach(LDAPReplica::close);
+    }
+
+    /**
+     * Returns true if the given exception shows that the replica could not be reached, or did not respond in time
+     * (rather than that the request itself failed).
+     */
+    static boolean isUnavailable(@Nonnull final Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof org.springframework.ldap.CommunicationException ||
+                cause instanceof org.springframework.ldap.ServiceUnavailableException ||
+                cause instanceof org.springframework.ldap.TimeLimitExceededException ||
+                cause instanceof javax.naming.CommunicationException ||
+                cause instanceof javax.naming.ServiceUnavailableException ||
+                cause instanceof javax.naming.TimeLimitExceededException ||
+                cause instanceof SocketTimeoutException) {
+                return true;
+            }
+
+            // JNDI reports read timeouts as a plain NamingException.
+            if (cause instanceof javax.naming.NamingException &&
+                cause.getMessage() != null &&
+                cause.getMessage().startsWith(READ_TIMEOUT_MESSAGE)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+}
@@ -0,0 +1,13 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+/**
+ * Thrown when an LDAP search is rejected without being made, because the {@link LDAPCircuitBreaker} is open or too
+ * many searches are already in progress.
+ */
+public class LDAPUnavailableException extends RuntimeException {
+
+    public LDAPUnavailableException(final String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,270 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.User;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import xyz.apollosoftware.jenkins.pki.struct.ClientCertificateUserAuthorization;
+import xyz.apollosoftware.jenkins.pki.struct.GroupResolutionStrategy;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPMapping;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPUser;
+import xyz.apollosoftware.jenkins.pki.struct.PKIUser;
+
+import javax.naming.ldap.LdapName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Populates the {@link LDAPCache} in the background with every user that has previously authenticated with a client
+ * certificate, so that their first request after a restart (or realm reconfiguration) does not wait for LDAP.
+ *
+ * <p>With the {@link GroupResolutionStrategy#SEARCH} strategy, group memberships are loaded for the whole directory
+ * up front (in pages), if the group search filter can be used to read the members of every group (see
+ * {@link LDAPDirectory#groupMemberAttributes(String)}). Otherwise, groups are resolved as they are on authentication. Each known user is then looked up
+ * individually - at no more than {@link xyz.apollosoftware.jenkins.pki.struct.LDAPCacheSettings#warmUpRate()}
+ * searches per second. Users cannot be matched to directory entries without a search, because the user search filter
+ * is parameterized with the user's certificate identity.
+ *
+ * <p>Only one warm-up runs at a time; scheduling a new warm-up cancels the previous one.
+ */
+public class LDAPWarmUp implements Runnable {
+
+    private static final Logger LOGGER = Logger.getLogger(LDAPWarmUp.class.getName());
+
+    /**
+     * The interval (in milliseconds) at which progress is logged.
+     */
+    private static final long PROGRESS_INTERVAL_MILLIS = 10_000;
+
+    /**
+     * The number of consecutive failed searches after which the warm-up is abandoned (e.g., because the directory is
+     * unavailable).
+     */
+    private static final int MAX_CONSECUTIVE_FAILURES = 10;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+        new NamingThreadFactory(new DaemonThreadFactory(), LDAPWarmUp.class.getSimpleName())
+    );
+
+    /**
+     * The most recently scheduled warm-up.
+     */
+    private static final AtomicReference<LDAPWarmUp> CURRENT = new AtomicReference<>();
+
+    /**
+     * Whether Jenkins has loaded its users, so warm-ups can start.
+     */
+    private static volatile boolean ready;
+
+    private final LDAPDirectory directory;
+    private final LDAPMapping mapping;
+
+    private volatile boolean cancelled;
+
+    @Nullable
+    private Future<?> future;
+
+    private LDAPWarmUp(@Nonnull final LDAPDirectory directory, @Nonnull final LDAPMapping mapping) {
+        this.directory = directory;
+        this.mapping = mapping;
+    }
+
+    /**
+     * Schedule a warm-up of the {@link LDAPCache} from the given directory, cancelling any previous warm-up.
+     *
+     * <p>If Jenkins is still starting, the warm-up starts once users have been loaded.
+     *
+     * @param directory to search.
+     * @param mapping of LDAP attributes to user fields.
+     * @return the scheduled warm-up.
+     */
+    @Nonnull
+    public static LDAPWarmUp schedule(@Nonnull final LDAPDirectory directory, @Nonnull final LDAPMapping mapping) {
+        final var warmUp = new LDAPWarmUp(directory, mapping);
+
+        final var previous = CURRENT.getAndSet(warmUp);
+        if (previous != null) previous.cancel();
+
+        if (ready) warmUp.start();
+        return warmUp;
+    }
+
+    /**
+     * Start the pending warm-up (if any), once Jenkins has loaded its users.
+     */
+    @Initializer(after = InitMilestone.JOB_CONFIG_ADAPTED)
+    public static void startPending() {
+        ready = true;
+
+        final var pending = CURRENT.get();
+        if (pending != null) pending.start();
+    }
+
+    /**
+     * Stop the warm-up. Users already added to the cache are kept.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        if (future != null) future.cancel(true);
+    }
+
+    private synchronized void start() {
+        if (cancelled || future != null) return;
+        future = EXECUTOR.submit(this);
+    }
+
+    @Override
+    public void run() {
+        final var identities = knownIdentities();
+        if (identities.isEmpty() || cancelled) return;
+
+        final var settings = mapping.settings();
+        final var cacheSettings = settings.cache();
+        final var cache = LDAPCache.get();
+        final var rateLimiter = new RateLimiter(cacheSettings.warmUpRate());
+
+        LOGGER.info("Warming up LDAP cache for %d users".formatted(identities.size()));
+        final var startedAt = System.currentTimeMillis();
+        var lastProgressAt = startedAt;
+
+        int cached = 0;
+        int skipped = 0;
+        int failed = 0;
+        int consecutiveFailures = 0;
+
+        try {
+            // Nested memberships are not included in the bulk memberships, so they are resolved per user instead.
+            Map<LdapName, Set<String>> memberships = null;
+            if (settings.groupResolution() == GroupResolutionStrategy.SEARCH &&
+                    !settings.nestedGroups() &&
+                    LDAPDirectory.groupMemberAttributes(settings.groupSearchFilter()) != null) {
+                try {
+                    rateLimiter.acquire();
+                    memberships = directory.loadGroupMemberships(settings);
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Failed to load LDAP group memberships for warm-up - searching groups per user instead", ex);
+                }
+            }
+
+            for (final var pkiUser : identities) {
+                if (cancelled) break;
+
+                if (cache.size() >= cacheSettings.maxEntries()) {
+                    LOGGER.info("LDAP cache is full - stopping warm-up");
+                    break;
+                }
+
+                if (cache.contains(pkiUser)) {
+                    skipped++;
+                    continue;
+                }
+
+                try {
+                    rateLimiter.acquire();
+
+                    final LDAPUser ldapUser;
+                    if (memberships != null) {
+                        final var user = directory.findUser(mapping, pkiUser);
+                        final var dn = LDAPDirectory.parseDN(user.dn());
+                        ldapUser = user.withGroups(GroupDictionary.get().canonicalize(dn != null ? memberships.get(dn) : null));
+                    } else {
+                        ldapUser = directory.searchUser(mapping, pkiUser);
+                    }
+
+                    if (cache.put(pkiUser, ldapUser, settings.cacheDuration())) {
+                        cached++;
+                    } else {
+                        skipped++;
+                    }
+                    consecutiveFailures = 0;
+                } catch (UsernameNotFoundException ex) {
+                    skipped++;
+                    consecutiveFailures = 0;
+                } catch (RuntimeException ex) {
+                    failed++;
+                    LOGGER.log(Level.FINE, "Failed to warm up LDAP cache for user: %s".formatted(pkiUser.dn()), ex);
+
+                    if (++consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+                        LOGGER.log(Level.WARNING, "Abandoning LDAP cache warm-up after %d consecutive failures".formatted(consecutiveFailures), ex);
+                        break;
+                    }
+                }
+
+                final var now = System.currentTimeMillis();
+                if (now - lastProgressAt >= PROGRESS_INTERVAL_MILLIS) {
+                    lastProgressAt = now;
+                    LOGGER.info("Warming up LDAP cache: %d/%d users processed".formatted(cached + skipped + failed, identities.size()));
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        LOGGER.info("%s LDAP cache warm-up in %d ms: %d users cached, %d skipped, %d failed".formatted(
+            cancelled ? "Cancelled" : "Finished",
+            System.currentTimeMillis() - startedAt,
+            cached,
+            skipped,
+            failed
+        ));
+    }
+
+    /**
+     * The certificate identities of every Jenkins user that has authenticated with a client certificate.
+     */
+    private static List<PKIUser> knownIdentities() {
+        final var identities = new ArrayList<PKIUser>();
+
+        for (final var user : User.getAll()) {
+            final var authorization = user.getProperty(ClientCertificateUserAuthorization.class);
+            if (authorization == null || !authorization.isPresent()) continue;
+
+            // Users stored by older versions of the plugin do not have their certificate identity, so they cannot be
+            // looked up exactly as they would be on authentication.
+            if (authorization.getPKIUsername() == null) continue;
+
+            identities.add(new PKIUser.Builder()
+                .dn(authorization.getPKIDistinguishedName())
+                .username(authorization.getPKIUsername())
+                .email(authorization.getPKIEmail())
+                .build());
+        }
+
+        return identities;
+    }
+
+    /**
+     * Spaces calls to {@link #acquire()} evenly, at no more than the given rate. Not thread-safe.
+     */
+    private static final class RateLimiter {
+
+        private final long intervalNanos;
+        private long nextPermitAt;
+
+        private RateLimiter(final int permitsPerSecond) {
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+            this.nextPermitAt = System.nanoTime();
+        }
+
+        private void acquire() throws InterruptedException {
+            final var now = System.nanoTime();
+            if (nextPermitAt > now) TimeUnit.NANOSECONDS.sleep(nextPermitAt - now);
+            nextPermitAt = Math.max(now, nextPermitAt) + intervalNanos;
+        }
+
+    }
+
+}
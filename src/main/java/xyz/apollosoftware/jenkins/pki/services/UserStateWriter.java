@@ -0,0 +1,180 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import hudson.BulkChange;
+import hudson.init.Terminator;
+import hudson.model.User;
+import hudson.tasks.Mailer;
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import jenkins.util.Timer;
+import xyz.apollosoftware.jenkins.pki.metrics.AuthenticationMetrics;
+import xyz.apollosoftware.jenkins.pki.metrics.AuthenticationMetrics.Stage;
+import xyz.apollosoftware.jenkins.pki.struct.ClientCertificateUserAuthorization;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A coalescing, write-behind writer for the state that authentication applies to Jenkins users.
+ *
+ * <p>Changes are only queued when they differ from what is already stored for the user. Queued changes are applied
+ * (and saved) on a background thread, at most once per {@link #WRITE_INTERVAL_SECONDS} - so no disk I/O happens on
+ * the request thread.
+ */
+public class UserStateWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(UserStateWriter.class.getName());
+
+    /**
+     * The interval (in seconds) at which queued changes are written.
+     */
+    public static final int WRITE_INTERVAL_SECONDS = 5;
+
+    private static final UserStateWriter INSTANCE = new UserStateWriter();
+
+    private final ConcurrentHashMap<String, UserState> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Get the global user state writer.
+     *
+     * @return the {@link UserStateWriter} singleton instance.
+     */
+    public static UserStateWriter get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queue the given state to be applied to the user, if it differs from the user's current (or already queued)
+     * state.
+     *
+     * @param user to apply the state to.
+     * @param state to apply.
+     */
+    public void update(@Nonnull final User user, @Nonnull final UserState state) {
+        final var id = user.getId();
+        final var queued = pending.get(id);
+        if (state.equals(queued)) return;
+
+        if (state.isAppliedTo(user)) {
+            // The user's state has reverted to what is stored, so any queued change is now stale.
+            if (queued != null) pending.remove(id, queued);
+            return;
+        }
+
+        pending.put(id, state);
+        if (scheduled.compareAndSet(false, true)) {
+            Timer.get().schedule(this::flush, WRITE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Apply (and save) all queued changes.
+     */
+    public void flush() {
+        scheduled.set(false);
+
+        for (final var id : pending.keySet()) {
+            final var state = pending.remove(id);
+            if (state == null) continue;
+
+            final var user = User.getById(id, false);
+            if (user == null) continue;
+
+            final var start = System.nanoTime();
+            try {
+                state.applyTo(user);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to save state for user: %s".formatted(id), ex);
+            } finally {
+                AuthenticationMetrics.get().record(Stage.USER_SAVE, start);
+            }
+        }
+    }
+
+    /**
+     * Write any queued changes before Jenkins shuts down.
+     */
+    @Terminator
+    public static void flushOnShutdown() {
+        get().flush();
+    }
+
+    /**
+     * The state that authentication applies to a Jenkins user.
+     *
+     * @param fullName the user's display name.
+     * @param email the user's email address, or null to leave it unchanged.
+     * @param pkiDistinguishedName the user's PKI DN.
+     * @param groups the user's groups.
+     * @param pkiUsername the username extracted from the user's certificate.
+     * @param pkiEmail the email address extracted from the user's certificate.
+     */
+    public record UserState(
+        @Nullable String fullName,
+        @Nullable String email,
+        @Nonnull String pkiDistinguishedName,
+        @Nonnull Set<String> groups,
+        @Nullable String pkiUsername,
+        @Nullable String pkiEmail
+    ) {
+
+        /**
+         * Returns true if the user's stored state already matches this state.
+         *
+         * @param user to compare against.
+         * @return true if applying this state would not change the user.
+         */
+        public boolean isAppliedTo(@Nonnull final User user) {
+            if (fullName != null && !fullName.equals(user.getFullName())) return false;
+
+            if (email != null) {
+                final var emailProperty = user.getProperty(Mailer.UserProperty.class);
+                if (emailProperty == null || !email.equals(emailProperty.getEmailAddress())) return false;
+            }
+
+            final var authorization = user.getProperty(ClientCertificateUserAuthorization.class);
+            return authorization != null &&
+                    Objects.equals(pkiDistinguishedName, authorization.getPKIDistinguishedName()) &&
+                    Objects.equals(groups, authorization.getGroups()) &&
+                    Objects.equals(pkiUsername, authorization.getPKIUsername()) &&
+                    Objects.equals(pkiEmail, authorization.getPKIEmail());
+        }
+
+        /**
+         * Apply this state to the user, saving the user once.
+         *
+         * @param user to apply the state to.
+         * @throws IOException if the user could not be saved.
+         */
+        public void applyTo(@Nonnull final User user) throws IOException {
+            try (BulkChange bulkChange = new BulkChange(user)) {
+                if (fullName != null) user.setFullName(fullName);
+
+                if (email != null) {
+                    final var emailProperty = user.getProperty(Mailer.UserProperty.class);
+                    if (emailProperty == null || !email.equals(emailProperty.getEmailAddress())) {
+                        user.addProperty(new Mailer.UserProperty(email));
+                    }
+                }
+
+                user.addProperty(new ClientCertificateUserAuthorization(
+                    pkiDistinguishedName,
+                    groups,
+                    pkiUsername,
+                    pkiEmail
+                ));
+                bulkChange.commit();
+            }
+        }
+
+    }
+
+}
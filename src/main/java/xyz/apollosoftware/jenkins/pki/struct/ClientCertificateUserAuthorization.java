@@ -7,7 +7,9 @@ import hudson.model.UserProperty;
 import hudson.model.UserPropertyDescriptor;
 import hudson.model.userproperty.UserPropertyCategory;
 import xyz.apollosoftware.jenkins.pki.Messages;
+import xyz.apollosoftware.jenkins.pki.services.GroupDictionary;
 
+import java.util.HashSet;
 import java.util.Set;
 
 public class ClientCertificateUserAuthorization extends UserProperty {
@@ -18,16 +20,66 @@ public class ClientCertificateUserAuthorization extends UserProperty {
     private final String pkiDistinguishedName;
 
     /**
-     * The user's groups.
+     * The user's groups - canonicalized with the {@link GroupDictionary}, so that users with the same groups share
+     * them.
      */
     private final Set<String> groups;
 
+    /**
+     * The username extracted from the user's certificate (before any LDAP mapping).
+     */
+    private final String pkiUsername;
+
+    /**
+     * The email address extracted from the user's certificate (before any LDAP mapping).
+     */
+    private final String pkiEmail;
+
     public ClientCertificateUserAuthorization(
         final String pkiDistinguishedName,
         final Set<String> groups
+    ) {
+        this(pkiDistinguishedName, groups, null, null);
+    }
+
+    public ClientCertificateUserAuthorization(
+        final String pkiDistinguishedName,
+        final Set<String> groups,
+        final String pkiUsername,
+        final String pkiEmail
     ) {
         this.pkiDistinguishedName = pkiDistinguishedName;
+        this.groups = groups != null ? GroupDictionary.get().canonicalize(groups) : null;
+        this.pkiUsername = pkiUsername;
+        this.pkiEmail = pkiEmail;
+    }
+
+    /**
+     * Canonicalize the groups read from disk.
+     *
+     * @return the property, with canonical groups.
+     */
+    protected Object readResolve() {
+        return new ClientCertificateUserAuthorization(pkiDistinguishedName, groups, pkiUsername, pkiEmail);
+    }
+
+    /**
+     * Write the groups to disk as a plain {@link HashSet}, rather than the canonical (JDK-internal) immutable set.
+     *
+     * @return the property to write.
+     */
+    protected Object writeReplace() {
+        return new ClientCertificateUserAuthorization(this, groups != null ? new HashSet<>(groups) : null);
+    }
+
+    /**
+     * Copy the given property, with the given groups as-is (without canonicalizing them).
+     */
+    private ClientCertificateUserAuthorization(final ClientCertificateUserAuthorization source, final Set<String> groups) {
+        this.pkiDistinguishedName = source.pkiDistinguishedName;
         this.groups = groups;
+        this.pkiUsername = source.pkiUsername;
+        this.pkiEmail = source.pkiEmail;
     }
 
     public boolean isPresent() {
@@ -44,6 +96,26 @@ public class ClientCertificateUserAuthorization extends UserProperty {
         return groups;
     }
 
+    /**
+     * The username extracted from the user's certificate, or null if it was stored by an older version of the
+     * plugin.
+     *
+     * @return the user's PKI username.
+     */
+    public String getPKIUsername() {
+        return pkiUsername;
+    }
+
+    /**
+     * The email address extracted from the user's certificate, or null if there was none (or it was stored by an
+     * older version of the plugin).
+     *
+     * @return the user's PKI email address.
+     */
+    public String getPKIEmail() {
+        return pkiEmail;
+    }
+
     @Extension
     public static class ClientCertificateUserAuthorizationDescriptor extends UserPropertyDescriptor {
 
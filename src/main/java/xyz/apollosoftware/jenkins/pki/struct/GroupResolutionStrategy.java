@@ -0,0 +1,36 @@
+package xyz.apollosoftware.jenkins.pki.struct;
+
+import xyz.apollosoftware.jenkins.pki.Messages;
+
+/**
+ * How a user's groups are resolved from LDAP.
+ */
+public enum GroupResolutionStrategy {
+
+    /**
+     * Search the group search base for groups that list the user as a member (a second query, after the user's
+     * entry has been found).
+     */
+    SEARCH,
+
+    /**
+     * Read the user's groups from a membership attribute (e.g., {@code memberOf}) on the user's own entry, in the
+     * same query as the rest of the user's attributes.
+     */
+    MEMBER_OF,
+
+    /**
+     * Read the user's groups from a periodically refreshed, in-memory index of every group under the group search
+     * base (falling back to {@link #SEARCH} until the index has loaded).
+     */
+    INDEX;
+
+    public String getDisplayName() {
+        return switch (this) {
+            case SEARCH -> Messages.groupResolutionStrategy_search_displayName();
+            case MEMBER_OF -> Messages.groupResolutionStrategy_memberOf_displayName();
+            case INDEX -> Messages.groupResolutionStrategy_index_displayName();
+        };
+    }
+
+}
@@ -0,0 +1,178 @@
+package xyz.apollosoftware.jenkins.pki.struct;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * Settings for the (global) LDAP user cache.
+ *
+ * @param maxEntries the maximum number of users held by the cache.
+ * @param maxMemory the maximum (estimated) memory used by cached users, in mebibytes.
+ * @param refreshAhead the percentage of the cache duration after which an entry is refreshed in the background on
+ *                     its next access, or zero to disable refreshing ahead of expiry.
+ * @param staleGrace the duration (in seconds) after expiry that an entry can still be served while it is refreshed.
+ * @param jitter the maximum percentage by which each entry's cache duration is (randomly) shortened.
+ * @param negativeDuration the duration (in seconds) that misses (users that could not be found) are cached for, or
+ *                         zero to disable caching misses.
+ * @param negativeMaxEntries the maximum number of failed lookups held by the cache.
+ * @param warmUp whether the cache is populated with known users in the background, when the realm is configured.
+ * @param warmUpRate the maximum number of LDAP searches per second made while warming up the cache.
+ */
+public record LDAPCacheSettings(
+    int maxEntries,
+    int maxMemory,
+    int refreshAhead,
+    int staleGrace,
+    int jitter,
+    int negativeDuration,
+    int negativeMaxEntries,
+    boolean warmUp,
+    int warmUpRate
+) {
+
+    public static final int MAX_ENTRIES_DEFAULT = 10_000;
+    public static final int MAX_MEMORY_DEFAULT = 64; // 64 MiB
+    public static final int REFRESH_AHEAD_DEFAULT = 80; // 80%
+    public static final int STALE_GRACE_DEFAULT = 0; // 0 seconds
+    public static final int JITTER_DEFAULT = 10; // 10%
+    public static final int NEGATIVE_DURATION_DEFAULT = 10; // 10 seconds
+    public static final int NEGATIVE_MAX_ENTRIES_DEFAULT = 1000;
+    public static final boolean WARM_UP_DEFAULT = false;
+    public static final int WARM_UP_RATE_DEFAULT = 10; // 10 searches per second
+
+    public static final int STALE_GRACE_MAX = 3600; // 1 hour
+    public static final int JITTER_MAX = 50; // 50%
+    public static final int NEGATIVE_DURATION_MAX = 3600; // 1 hour
+    public static final int WARM_UP_RATE_MAX = 1000; // 1000 searches per second
+
+    public LDAPCacheSettings {
+        if (maxEntries <= 0) maxEntries = MAX_ENTRIES_DEFAULT;
+        if (maxMemory <= 0) maxMemory = MAX_MEMORY_DEFAULT;
+
+        if (refreshAhead < 0 || refreshAhead >= 100) refreshAhead = 0;
+
+        if (staleGrace < 0) {
+            staleGrace = STALE_GRACE_DEFAULT;
+        } else if (staleGrace > STALE_GRACE_MAX) {
+            staleGrace = STALE_GRACE_MAX;
+        }
+
+        if (jitter < 0) {
+            jitter = JITTER_DEFAULT;
+        } else if (jitter > JITTER_MAX) {
+            jitter = JITTER_MAX;
+        }
+
+        if (negativeDuration < 0) {
+            negativeDuration = NEGATIVE_DURATION_DEFAULT;
+        } else if (negativeDuration > NEGATIVE_DURATION_MAX) {
+            negativeDuration = NEGATIVE_DURATION_MAX;
+        }
+
+        if (negativeMaxEntries <= 0) negativeMaxEntries = NEGATIVE_MAX_ENTRIES_DEFAULT;
+
+        if (warmUpRate <= 0) {
+            warmUpRate = WARM_UP_RATE_DEFAULT;
+        } else if (warmUpRate > WARM_UP_RATE_MAX) {
+            warmUpRate = WARM_UP_RATE_MAX;
+        }
+    }
+
+    /**
+     * The maximum (estimated) memory used by cached users, in bytes.
+     *
+     * @return {@link #maxMemory()} in bytes.
+     */
+    public long maxWeight() {
+        return maxMemory * 1024L * 1024L;
+    }
+
+    @Nonnull
+    public static LDAPCacheSettings defaults() {
+        return new Builder().build();
+    }
+
+    public static final class Builder {
+        private int maxEntries;
+        private int maxMemory;
+        private int refreshAhead;
+        private int staleGrace;
+        private int jitter;
+        private int negativeDuration;
+        private int negativeMaxEntries;
+        private boolean warmUp;
+        private int warmUpRate;
+
+        public Builder() {
+            maxEntries = MAX_ENTRIES_DEFAULT;
+            maxMemory = MAX_MEMORY_DEFAULT;
+            refreshAhead = REFRESH_AHEAD_DEFAULT;
+            staleGrace = STALE_GRACE_DEFAULT;
+            jitter = JITTER_DEFAULT;
+            negativeDuration = NEGATIVE_DURATION_DEFAULT;
+            negativeMaxEntries = NEGATIVE_MAX_ENTRIES_DEFAULT;
+            warmUp = WARM_UP_DEFAULT;
+            warmUpRate = WARM_UP_RATE_DEFAULT;
+        }
+
+        public Builder maxEntries(Integer maxEntries) {
+            this.maxEntries = maxEntries != null ? maxEntries : MAX_ENTRIES_DEFAULT;
+            return this;
+        }
+
+        public Builder maxMemory(Integer maxMemory) {
+            this.maxMemory = maxMemory != null ? maxMemory : MAX_MEMORY_DEFAULT;
+            return this;
+        }
+
+        public Builder refreshAhead(Integer refreshAhead) {
+            this.refreshAhead = refreshAhead != null ? refreshAhead : REFRESH_AHEAD_DEFAULT;
+            return this;
+        }
+
+        public Builder staleGrace(Integer staleGrace) {
+            this.staleGrace = staleGrace != null ? staleGrace : STALE_GRACE_DEFAULT;
+            return this;
+        }
+
+        public Builder jitter(Integer jitter) {
+            this.jitter = jitter != null ? jitter : JITTER_DEFAULT;
+            return this;
+        }
+
+        public Builder negativeDuration(Integer negativeDuration) {
+            this.negativeDuration = negativeDuration != null ? negativeDuration : NEGATIVE_DURATION_DEFAULT;
+            return this;
+        }
+
+        public Builder negativeMaxEntries(Integer negativeMaxEntries) {
+            this.negativeMaxEntries = negativeMaxEntries != null ? negativeMaxEntries : NEGATIVE_MAX_ENTRIES_DEFAULT;
+            return this;
+        }
+
+        public Builder warmUp(Boolean warmUp) {
+            this.warmUp = warmUp != null ? warmUp : WARM_UP_DEFAULT;
+            return this;
+        }
+
+        public Builder warmUpRate(Integer warmUpRate) {
+            this.warmUpRate = warmUpRate != null ? warmUpRate : WARM_UP_RATE_DEFAULT;
+            return this;
+        }
+
+        @Nonnull
+        public LDAPCacheSettings build() {
+            return new LDAPCacheSettings(
+                maxEntries,
+                maxMemory,
+                refreshAhead,
+                staleGrace,
+                jitter,
+                negativeDuration,
+                negativeMaxEntries,
+                warmUp,
+                warmUpRate
+            );
+        }
+    }
+
+}
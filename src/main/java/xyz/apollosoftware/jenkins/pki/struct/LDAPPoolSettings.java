@@ -0,0 +1,98 @@
+package xyz.apollosoftware.jenkins.pki.struct;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * Settings for the pool of LDAP connections.
+ *
+ * @param minIdle the minimum number of idle connections kept open.
+ * @param maxIdle the maximum number of idle connections kept open.
+ * @param maxTotal the maximum number of open connections (idle or in use).
+ * @param testOnBorrow whether connections are validated before they are used.
+ * @param evictionInterval the interval (in seconds) between runs of the idle connection evictor.
+ */
+public record LDAPPoolSettings(
+    int minIdle,
+    int maxIdle,
+    int maxTotal,
+    boolean testOnBorrow,
+    int evictionInterval
+) {
+
+    public static final int MIN_IDLE_DEFAULT = 0;
+    public static final int MAX_IDLE_DEFAULT = 8;
+    public static final int MAX_TOTAL_DEFAULT = 32;
+    public static final boolean TEST_ON_BORROW_DEFAULT = true;
+    public static final int EVICTION_INTERVAL_DEFAULT = 60; // 1 minute
+
+    /**
+     * Connections that have been idle for longer than this (in seconds) are closed by the evictor.
+     */
+    public static final int MIN_EVICTABLE_IDLE_TIME = 300; // 5 minutes
+
+    /**
+     * The maximum time (in milliseconds) to wait for a connection when the pool is exhausted.
+     */
+    public static final int MAX_WAIT_MILLIS = LDAPSettings.LDAP_TIME_LIMIT_MILLIS;
+
+    public LDAPPoolSettings {
+        if (maxTotal <= 0) maxTotal = MAX_TOTAL_DEFAULT;
+        if (maxIdle < 0) maxIdle = MAX_IDLE_DEFAULT;
+        if (maxIdle > maxTotal) maxIdle = maxTotal;
+        if (minIdle < 0) minIdle = MIN_IDLE_DEFAULT;
+        if (minIdle > maxIdle) minIdle = maxIdle;
+        if (evictionInterval <= 0) evictionInterval = EVICTION_INTERVAL_DEFAULT;
+    }
+
+    @Nonnull
+    public static LDAPPoolSettings defaults() {
+        return new Builder().build();
+    }
+
+    public static final class Builder {
+        private int minIdle;
+        private int maxIdle;
+        private int maxTotal;
+        private boolean testOnBorrow;
+        private int evictionInterval;
+
+        public Builder() {
+            minIdle = MIN_IDLE_DEFAULT;
+            maxIdle = MAX_IDLE_DEFAULT;
+            maxTotal = MAX_TOTAL_DEFAULT;
+            testOnBorrow = TEST_ON_BORROW_DEFAULT;
+            evictionInterval = EVICTION_INTERVAL_DEFAULT;
+        }
+
+        public Builder minIdle(Integer minIdle) {
+            this.minIdle = minIdle != null ? minIdle : MIN_IDLE_DEFAULT;
+            return this;
+        }
+
+        public Builder maxIdle(Integer maxIdle) {
+            this.maxIdle = maxIdle != null ? maxIdle : MAX_IDLE_DEFAULT;
+            return this;
+        }
+
+        public Builder maxTotal(Integer maxTotal) {
+            this.maxTotal = maxTotal != null ? maxTotal : MAX_TOTAL_DEFAULT;
+            return this;
+        }
+
+        public Builder testOnBorrow(Boolean testOnBorrow) {
+            this.testOnBorrow = testOnBorrow != null ? testOnBorrow : TEST_ON_BORROW_DEFAULT;
+            return this;
+        }
+
+        public Builder evictionInterval(Integer evictionInterval) {
+            this.evictionInterval = evictionInterval != null ? evictionInterval : EVICTION_INTERVAL_DEFAULT;
+            return this;
+        }
+
+        @Nonnull
+        public LDAPPoolSettings build() {
+            return new LDAPPoolSettings(minIdle, maxIdle, maxTotal, testOnBorrow, evictionInterval);
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package xyz.apollosoftware.jenkins.pki.struct;
+
+import jakarta.annotation.Nonnull;
+
+/**
+ * Settings for protecting authentication from a slow or unavailable LDAP directory.
+ *
+ * @param failureThreshold the number of consecutive failed searches after which the circuit breaker opens.
+ * @param openDuration the time (in seconds) that the circuit breaker stays open for, before a trial search is made.
+ * @param maxConcurrentSearches the maximum number of LDAP searches made at once (the bulkhead).
+ * @param fallback whether to authenticate users with their last known groups while LDAP is unavailable.
+ * @param asyncEnrichment whether requests that need an LDAP search are suspended (with servlet async support) while
+ *                        the search runs on a dedicated executor, rather than holding a request thread.
+ */
+public record LDAPResilienceSettings(
+    int failureThreshold,
+    int openDuration,
+    int maxConcurrentSearches,
+    boolean fallback,
+    boolean asyncEnrichment
+) {
+
+    public static final int FAILURE_THRESHOLD_DEFAULT = 5;
+    public static final int OPEN_DURATION_DEFAULT = 30; // 30 seconds
+    public static final int OPEN_DURATION_MAX = 3600; // 1 hour
+    public static final int MAX_CONCURRENT_SEARCHES_DEFAULT = LDAPPoolSettings.MAX_TOTAL_DEFAULT;
+    public static final boolean FALLBACK_DEFAULT = true;
+    public static final boolean ASYNC_ENRICHMENT_DEFAULT = false;
+
+    /**
+     * The maximum time (in milliseconds) that a search waits for the bulkhead, before it is rejected: as long as a
+     * search may wait for the directory to respond, so that bursts of searches queue while the directory is healthy,
+     * and are only rejected when the searches ahead of them are hanging.
+     */
+    public static final int BULKHEAD_WAIT_MILLIS = LDAPSettings.LDAP_READ_TIMEOUT_MILLIS;
+
+    public LDAPResilienceSettings {
+        if (failureThreshold <= 0) failureThreshold = FAILURE_THRESHOLD_DEFAULT;
+        if (openDuration <= 0) {
+            openDuration = OPEN_DURATION_DEFAULT;
+        } else if (openDuration > OPEN_DURATION_MAX) {
+            openDuration = OPEN_DURATION_MAX;
+        }
+        if (maxConcurrentSearches <= 0) maxConcurrentSearches = MAX_CONCURRENT_SEARCHES_DEFAULT;
+    }
+
+    @Nonnull
+    public static LDAPResilienceSettings defaults() {
+        return new Builder().build();
+    }
+
+    public static final class Builder {
+        private int failureThreshold;
+        private int openDuration;
+        private int maxConcurrentSearches;
+        private boolean fallback;
+        private boolean asyncEnrichment;
+
+        public Builder() {
+            failureThreshold = FAILURE_THRESHOLD_DEFAULT;
+            openDuration = OPEN_DURATION_DEFAULT;
+            maxConcurrentSearches = MAX_CONCURRENT_SEARCHES_DEFAULT;
+            fallback = FALLBACK_DEFAULT;
+            asyncEnrichment = ASYNC_ENRICHMENT_DEFAULT;
+        }
+
+        public Builder failureThreshold(Integer failureThreshold) {
+            this.failureThreshold = failureThreshold != null ? failureThreshold : FAILURE_THRESHOLD_DEFAULT;
+            return this;
+        }
+
+        public Builder openDuration(Integer openDuration) {
+            this.openDuration = openDuration != null ? openDuration : OPEN_DURATION_DEFAULT;
+            return this;
+        }
+
+        public Builder maxConcurrentSearches(Integer maxConcurrentSearches) {
+            this.maxConcurrentSearches = maxConcurrentSearches != null ? maxConcurrentSearches : MAX_CONCURRENT_SEARCHES_DEFAULT;
+            return this;
+        }
+
+        public Builder fallback(Boolean fallback) {
+            this.fallback = fallback != null ? fallback : FALLBACK_DEFAULT;
+            return this;
+        }
+
+        public Builder asyncEnrichment(Boolean asyncEnrichment) {
+            this.asyncEnrichment = asyncEnrichment != null ? asyncEnrichment : ASYNC_ENRICHMENT_DEFAULT;
+            return this;
+        }
+
+        @Nonnull
+        public LDAPResilienceSettings build() {
+            return new LDAPResilienceSettings(
+                failureThreshold,
+                openDuration,
+                maxConcurrentSearches,
+                fallback,
+                asyncEnrichment
+            );
+        }
+    }
+
+}
@@ -3,6 +3,9 @@ package xyz.apollosoftware.jenkins.pki.struct;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 
+import java.util.List;
+import java.util.regex.Pattern;
+
 public record LDAPSettings(
     boolean enabled,
     int cacheDuration,
@@ -12,7 +15,17 @@ public record LDAPSettings(
     String userSearchBase,
     String userSearchFilter,
     String groupSearchBase,
-    String groupSearchFilter
+    String groupSearchFilter,
+    @Nonnull GroupResolutionStrategy groupResolution,
+    @Nonnull String groupMembershipAttribute,
+    int pageSize,
+    boolean nestedGroups,
+    int nestedGroupDepth,
+    int groupIndexRefreshInterval,
+    int changePollInterval,
+    @Nonnull LDAPPoolSettings pool,
+    @Nonnull LDAPCacheSettings cache,
+    @Nonnull LDAPResilienceSettings resilience
 ) {
 
     public static final String FALLBACK_USER_SEARCH_BASE = "OU=people";
@@ -20,12 +33,31 @@ public record LDAPSettings(
     public static final String FALLBACK_GROUP_SEARCH_BASE = "OU=groups";
     public static final String FALLBACK_GROUP_SEARCH_FILTER = "(&(|(objectclass=groupOfUniqueNames)(objectclass=group))(|(uniqueMember={0})(member={0})))";
 
+    public static final GroupResolutionStrategy GROUP_RESOLUTION_DEFAULT = GroupResolutionStrategy.SEARCH;
+    public static final String FALLBACK_GROUP_MEMBERSHIP_ATTRIBUTE = "memberOf";
+
     public static final int CACHE_DURATION_DEFAULT = 30; // 30 seconds
     public static final int CACHE_DURATION_MAX = 86400; // 1 day
 
     public static final int LDAP_SINGLE_ENTRY_LIMIT = 1;
-    public static final int LDAP_LIST_ENTRY_LIMIT = 100;
+    public static final int PAGE_SIZE_DEFAULT = 500;
+    public static final int PAGE_SIZE_MAX = 10_000;
+    public static final int NESTED_GROUP_DEPTH_DEFAULT = 5;
+    public static final int NESTED_GROUP_DEPTH_MAX = 32;
+    public static final int GROUP_INDEX_REFRESH_INTERVAL_DEFAULT = 300; // 5 minutes
+    public static final int GROUP_INDEX_REFRESH_INTERVAL_MIN = 10; // 10 seconds
+    public static final int GROUP_INDEX_REFRESH_INTERVAL_MAX = 86400; // 1 day
+    public static final int CHANGE_POLL_INTERVAL_DEFAULT = 0; // disabled
+    public static final int CHANGE_POLL_INTERVAL_MIN = 5; // 5 seconds
+    public static final int CHANGE_POLL_INTERVAL_MAX = 3600; // 1 hour
     public static final int LDAP_TIME_LIMIT_MILLIS = 5000;
+    public static final int LDAP_CONNECT_TIMEOUT_MILLIS = 3000;
+    public static final int LDAP_READ_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * The separator between the URLs of the directory's servers in {@link #url()}.
+     */
+    private static final Pattern URL_SEPARATOR = Pattern.compile("[\\s,]+");
 
     public LDAPSettings {
         if ((url.isBlank() || baseDN.isBlank()) && enabled) {
@@ -53,12 +85,69 @@ public record LDAPSettings(
         if (groupSearchFilter.isBlank() && enabled) {
             groupSearchFilter = FALLBACK_GROUP_SEARCH_FILTER;
         }
+
+        if (groupResolution == null) {
+            groupResolution = GROUP_RESOLUTION_DEFAULT;
+        }
+
+        if (groupMembershipAttribute == null || groupMembershipAttribute.isBlank()) {
+            groupMembershipAttribute = FALLBACK_GROUP_MEMBERSHIP_ATTRIBUTE;
+        }
+
+        if (pageSize <= 0) {
+            pageSize = PAGE_SIZE_DEFAULT;
+        } else if (pageSize > PAGE_SIZE_MAX) {
+            pageSize = PAGE_SIZE_MAX;
+        }
+
+        if (nestedGroupDepth <= 0) {
+            nestedGroupDepth = NESTED_GROUP_DEPTH_DEFAULT;
+        } else if (nestedGroupDepth > NESTED_GROUP_DEPTH_MAX) {
+            nestedGroupDepth = NESTED_GROUP_DEPTH_MAX;
+        }
+
+        if (groupIndexRefreshInterval <= 0) {
+            groupIndexRefreshInterval = GROUP_INDEX_REFRESH_INTERVAL_DEFAULT;
+        } else {
+            groupIndexRefreshInterval = Math.max(GROUP_INDEX_REFRESH_INTERVAL_MIN, Math.min(groupIndexRefreshInterval, GROUP_INDEX_REFRESH_INTERVAL_MAX));
+        }
+
+        if (changePollInterval <= 0) {
+            changePollInterval = CHANGE_POLL_INTERVAL_DEFAULT;
+        } else {
+            changePollInterval = Math.max(CHANGE_POLL_INTERVAL_MIN, Math.min(changePollInterval, CHANGE_POLL_INTERVAL_MAX));
+        }
+
+        if (pool == null) {
+            pool = LDAPPoolSettings.defaults();
+        }
+
+        if (cache == null) {
+            cache = LDAPCacheSettings.defaults();
+        }
+
+        if (resilience == null) {
+            resilience = LDAPResilienceSettings.defaults();
+        }
     }
 
     public boolean isCacheEnabled() {
         return this.cacheDuration != 0;
     }
 
+    /**
+     * The URLs of the directory's servers (replicas), which are separated by whitespace or commas in {@link #url()}.
+     *
+     * @return the server URLs, in the order they were configured.
+     */
+    @Nonnull
+    public List<String> urls() {
+        return URL_SEPARATOR.splitAsStream(url.strip())
+            .filter(server -> !server.isEmpty())
+            .distinct()
+            .toList();
+    }
+
     public static final class Builder {
         private boolean enabled;
         private int cacheDuration;
@@ -69,9 +158,20 @@ public record LDAPSettings(
         private String userSearchFilter;
         private String groupSearchBase;
         private String groupSearchFilter;
+        private GroupResolutionStrategy groupResolution;
+        private String groupMembershipAttribute;
+        private int pageSize;
+        private boolean nestedGroups;
+        private int nestedGroupDepth;
+        private int groupIndexRefreshInterval;
+        private int changePollInterval;
+        private LDAPPoolSettings pool;
+        private LDAPCacheSettings cache;
+        private LDAPResilienceSettings resilience;
 
         public Builder() {
             enabled = true;
+            pageSize = PAGE_SIZE_DEFAULT;
         }
 
         public Builder enabled(Boolean enabled) {
@@ -119,6 +219,56 @@ public record LDAPSettings(
             return this;
         }
 
+        public Builder groupResolution(GroupResolutionStrategy groupResolution) {
+            this.groupResolution = groupResolution;
+            return this;
+        }
+
+        public Builder groupMembershipAttribute(String groupMembershipAttribute) {
+            this.groupMembershipAttribute = groupMembershipAttribute;
+            return this;
+        }
+
+        public Builder pageSize(Integer pageSize) {
+            this.pageSize = pageSize != null ? pageSize : PAGE_SIZE_DEFAULT;
+            return this;
+        }
+
+        public Builder nestedGroups(Boolean nestedGroups) {
+            this.nestedGroups = nestedGroups != null ? nestedGroups : false;
+            return this;
+        }
+
+        public Builder nestedGroupDepth(Integer nestedGroupDepth) {
+            this.nestedGroupDepth = nestedGroupDepth != null ? nestedGroupDepth : NESTED_GROUP_DEPTH_DEFAULT;
+            return this;
+        }
+
+        public Builder groupIndexRefreshInterval(Integer groupIndexRefreshInterval) {
+            this.groupIndexRefreshInterval = groupIndexRefreshInterval != null ? groupIndexRefreshInterval : GROUP_INDEX_REFRESH_INTERVAL_DEFAULT;
+            return this;
+        }
+
+        public Builder changePollInterval(Integer changePollInterval) {
+            this.changePollInterval = changePollInterval != null ? changePollInterval : CHANGE_POLL_INTERVAL_DEFAULT;
+            return this;
+        }
+
+        public Builder pool(LDAPPoolSettings pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public Builder cache(LDAPCacheSettings cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        public Builder resilience(LDAPResilienceSettings resilience) {
+            this.resilience = resilience;
+            return this;
+        }
+
         @Nonnull
         public LDAPSettings build() {
             return new LDAPSettings(
@@ -130,7 +280,17 @@ public record LDAPSettings(
                 userSearchBase,
                 userSearchFilter,
                 groupSearchBase,
-                groupSearchFilter
+                groupSearchFilter,
+                groupResolution,
+                groupMembershipAttribute,
+                pageSize,
+                nestedGroups,
+                nestedGroupDepth,
+                groupIndexRefreshInterval,
+                changePollInterval,
+                pool,
+                cache,
+                resilience
             );
         }
     }
@@ -7,7 +7,9 @@ import org.springframework.ldap.core.DirContextAdapter;
 
 import javax.naming.NamingException;
 import javax.naming.directory.Attributes;
+import javax.naming.ldap.LdapName;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
 
@@ -48,6 +50,27 @@ public record LDAPUser(@Nonnull String dn, @Nullable String username, @Nullable
         return new LDAPUser(this.dn, this.username, this.name, this.email, groups);
     }
 
+    /**
+     * Extract a group's name from its DN - the value of the DN's leaf {@code CN}.
+     *
+     * @param dn of the group.
+     * @return the group's name, or null if the DN is invalid or does not have a leaf {@code CN}.
+     */
+    @Nullable
+    public static String groupNameOf(@Nullable final String dn) {
+        if (dn == null || dn.isBlank()) return null;
+
+        try {
+            final var name = new LdapName(dn);
+            if (name.isEmpty()) return null;
+
+            final var leaf = name.getRdn(name.size() - 1);
+            return "CN".equalsIgnoreCase(leaf.getType()) ? leaf.getValue().toString() : null;
+        } catch (NamingException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
     public static final class LDAPUserMapper implements ContextMapper<LDAPUser> {
 
         private final LDAPMapping mapping;
@@ -69,10 +92,33 @@ public record LDAPUser(@Nonnull String dn, @Nullable String username, @Nullable
                 tryGetAttribute(attributes, mapping.usernameField()),
                 tryGetAttribute(attributes, mapping.nameField()),
                 tryGetAttribute(attributes, mapping.emailField()),
-                null
+                mapping.settings().groupResolution() == GroupResolutionStrategy.MEMBER_OF
+                    ? tryGetGroups(attributes, mapping.settings().groupMembershipAttribute())
+                    : null
             );
         }
 
+        /**
+         * Read the DNs of the user's groups from the given membership attribute.
+         */
+        private Set<String> tryGetGroups(final Attributes attributes, final String name) {
+            final var attribute = attributes.get(name);
+            if (attribute == null) return null;
+
+            final var groups = new HashSet<String>();
+            try {
+                final var values = attribute.getAll();
+                while (values.hasMore()) {
+                    final var value = values.next();
+                    if (value != null) groups.add(value.toString());
+                }
+            } catch (NamingException ex) {
+                return null;
+            }
+
+            return groups;
+        }
+
         private String tryGetAttribute(final Attributes attributes, final String name) {
             if (name == null || name.isBlank()) return null;
 
@@ -3,7 +3,6 @@ package xyz.apollosoftware.jenkins.pki.struct;
 import jakarta.annotation.Nullable;
 import xyz.apollosoftware.jenkins.pki.settings.CustomAttributeSelector;
 
-import java.util.Optional;
 import java.util.Set;
 
 public record PKIMapping(
@@ -14,49 +13,31 @@ public record PKIMapping(
     @Nullable Set<CustomAttributeSelector> customAttributes
 ) {
 
+    /**
+     * Normalizes each field to its attribute type: field names are upper-cased, and the names of custom attributes are
+     * resolved to their OIDs.
+     */
     public PKIMapping {
-        usernameField = Optional.ofNullable(usernameField).map(String::toUpperCase).orElse(null);
-        nameField = Optional.ofNullable(nameField).map(String::toUpperCase).orElse(null);
-        groupField = Optional.ofNullable(groupField).map(String::toUpperCase).orElse(null);
-        emailField = Optional.ofNullable(emailField).map(String::toUpperCase).orElse(null);
+        usernameField = normalizeField(usernameField, customAttributes);
+        nameField = normalizeField(nameField, customAttributes);
+        groupField = normalizeField(groupField, customAttributes);
+        emailField = normalizeField(emailField, customAttributes);
     }
 
-    @Override
     @Nullable
-    public String usernameField() {
-        return normalizeField(usernameField);
-    }
-
-    @Override
-    @Nullable
-    public String nameField() {
-        return normalizeField(nameField);
-    }
+    private static String normalizeField(
+        @Nullable final String field,
+        @Nullable final Set<CustomAttributeSelector> customAttributes
+    ) {
+        if (field == null) return null;
 
-    @Override
-    @Nullable
-    public String groupField() {
-        return normalizeField(groupField);
-    }
-
-    @Override
-    @Nullable
-    public String emailField() {
-        return normalizeField(emailField);
-    }
-
-    private String normalizeField(final String field) {
         if (customAttributes != null) {
-            final var customField = customAttributes.stream()
-                    .filter(customAttribute -> customAttribute.getName().equalsIgnoreCase(field))
-                    .findAny();
-
-            if (customField.isPresent()) {
-                return customField.get().getOid();
+            for (final var customAttribute : customAttributes) {
+                if (customAttribute.getName().equalsIgnoreCase(field)) return customAttribute.getOid();
             }
         }
 
-        return field;
+        return field.toUpperCase();
     }
 
     public static final class Builder {
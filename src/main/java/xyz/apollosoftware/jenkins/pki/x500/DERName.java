@@ -0,0 +1,415 @@
+package xyz.apollosoftware.jenkins.pki.x500;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+
+import javax.naming.ldap.LdapName;
+import javax.security.auth.x500.X500Principal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A reader for the DER encoding of an X.500 name (see {@link X500Principal#getEncoded()}), that visits its attributes
+ * in place - without formatting the name as an RFC 2253 string and re-parsing it with {@link LdapName} first.
+ *
+ * <p>Attribute types and values are decoded exactly as {@link LdapName} would parse them from the RFC 2253 form of
+ * the name (so that {@link Principal} is unchanged):
+ * <ul>
+ *     <li>Types are named by their RFC 2253 keyword ({@code CN}, {@code UID}, ...) or, failing that, their OID.</li>
+ *     <li>Values of keyword types are decoded as strings, if they are encoded as one of the string types that the
+ *     JDK formats as a string (otherwise they are formatted as BER, like every other type).</li>
+ *     <li>BER values are only decoded (as BouncyCastle would) for the custom types that are asked for.</li>
+ *     <li>Only the first attribute of a multi-valued RDN, in type order, is visited.</li>
+ * </ul>
+ */
+final class DERName {
+
+    private static final int TAG_SEQUENCE = 0x30;
+    private static final int TAG_SET = 0x31;
+    private static final int TAG_OID = 0x06;
+    private static final int TAG_UTF8_STRING = 0x0C;
+    private static final int TAG_NUMERIC_STRING = 0x12;
+    private static final int TAG_PRINTABLE_STRING = 0x13;
+    private static final int TAG_T61_STRING = 0x14;
+    private static final int TAG_IA5_STRING = 0x16;
+    private static final int TAG_VISIBLE_STRING = 0x1A;
+    private static final int TAG_GENERAL_STRING = 0x1B;
+    private static final int TAG_BMP_STRING = 0x1E;
+
+    private static final int NO_KEYWORD = -1;
+    private static final int UNRESOLVED_KEYWORD = -2;
+
+    /**
+     * The attribute types that RFC 2253 names with a keyword, rather than an OID.
+     */
+    private static final String[] KEYWORDS = {"CN", "C", "L", "ST", "O", "OU", "STREET", "DC", "UID"};
+
+    /**
+     * The (encoded) OIDs of the {@link #KEYWORDS}.
+     */
+    private static final byte[][] KEYWORD_OIDS = {
+        encodeOid("2.5.4.3"),
+        encodeOid("2.5.4.6"),
+        encodeOid("2.5.4.7"),
+        encodeOid("2.5.4.8"),
+        encodeOid("2.5.4.10"),
+        encodeOid("2.5.4.11"),
+        encodeOid("2.5.4.9"),
+        encodeOid("0.9.2342.19200300.100.1.25"),
+        encodeOid("0.9.2342.19200300.100.1.1"),
+    };
+
+    private DERName() {
+    }
+
+    /**
+     * Visit each attribute of the given DER-encoded X.500 name, from the least to the most specific.
+     *
+     * <p>The visited {@link Attribute} is reused, so it must not be retained by the visitor.
+     *
+     * @param der the encoded name.
+     * @param visitor to call with each attribute.
+     * @return true if the name was parsed, or false if it is not a valid encoded name.
+     */
+    static boolean forEachAttribute(@Nonnull final byte[] der, @Nonnull final Consumer<Attribute> visitor) {
+        final var attribute = new Attribute(der);
+
+        try {
+            final var name = new Element(der, 0, der.length);
+            name.next(TAG_SEQUENCE);
+
+            final var rdn = new Element(der, name.contentOffset, name.contentEnd);
+            while (rdn.hasNext()) {
+                rdn.next(TAG_SET);
+
+                final var ava = new Element(der, rdn.contentOffset, rdn.contentEnd);
+                var firstOffset = ava.offset;
+                ava.next(TAG_SEQUENCE);
+                attribute.read(ava);
+
+                // A multi-valued RDN is represented by the attribute that sorts first by type (as in LdapName).
+                if (ava.hasNext()) {
+                    var firstType = attribute.type();
+
+                    while (ava.hasNext()) {
+                        final var offset = ava.offset;
+                        ava.next(TAG_SEQUENCE);
+                        attribute.read(ava);
+
+                        if (attribute.type().compareToIgnoreCase(firstType) < 0) {
+                            firstOffset = offset;
+                            firstType = attribute.type();
+                        }
+                    }
+
+                    final var first = new Element(der, firstOffset, rdn.contentEnd);
+                    first.next(TAG_SEQUENCE);
+                    attribute.read(first);
+                }
+
+                visitor.accept(attribute);
+            }
+
+            return true;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Encode the given attribute type (an RFC 2253 keyword or an OID), for matching against {@link Attribute}s with
+     * {@link Attribute#hasType(byte[])}.
+     *
+     * <p>Types that {@link LdapName} would never name as given (an OID that has a keyword, or an unknown keyword)
+     * cannot be matched, so null is returned.
+     *
+     * @param type to encode.
+     * @return the encoded OID of the type, or null.
+     */
+    @Nullable
+    static byte[] encodeType(@Nonnull final String type) {
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            if (KEYWORDS[i].equals(type)) return KEYWORD_OIDS[i];
+        }
+
+        final var oid = encodeOid(type);
+        if (oid == null) return null;
+
+        for (final var keywordOid : KEYWORD_OIDS) {
+            if (Arrays.equals(keywordOid, oid)) return null;
+        }
+
+        return oid;
+    }
+
+    /**
+     * Encode the content octets of the given dotted OID, or return null if it is not a valid OID.
+     */
+    @Nullable
+    private static byte[] encodeOid(@Nonnull final String oid) {
+        final var arcs = oid.split("\\.", -1);
+        if (arcs.length < 2) return null;
+
+        final long[] values = new long[arcs.length - 1];
+        try {
+            final var first = Long.parseLong(arcs[0]);
+            final var second = Long.parseLong(arcs[1]);
+            if (first < 0 || first > 2 || second < 0 || (first < 2 && second >= 40)) return null;
+            values[0] = (first * 40) + second;
+
+            for (int i = 2; i < arcs.length; i++) {
+                values[i - 1] = Long.parseLong(arcs[i]);
+                if (values[i - 1] < 0) return null;
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+
+        final var encoded = new byte[values.length * 10];
+        var length = 0;
+        for (final var value : values) {
+            // Base 128, most significant group first, with the high bit set on all but the last group.
+            var groups = 1;
+            while (groups < 10 && (value >>> (7 * groups)) != 0) groups++;
+
+            for (int group = groups - 1; group >= 0; group--) {
+                encoded[length++] = (byte) (((value >>> (7 * group)) & 0x7F) | (group > 0 ? 0x80 : 0));
+            }
+        }
+
+        return Arrays.copyOf(encoded, length);
+    }
+
+    /**
+     * Decode the content octets of an OID into its dotted form.
+     */
+    private static String decodeOid(final byte[] der, final int offset, final int end) {
+        final var builder = new StringBuilder((end - offset) * 3);
+        var value = 0L;
+        var first = true;
+
+        for (int i = offset; i < end; i++) {
+            value = (value << 7) | (der[i] & 0x7F);
+            if ((der[i] & 0x80) != 0) continue;
+
+            if (first) {
+                final var arc = Math.min(value / 40, 2);
+                builder.append(arc).append('.').append(value - (arc * 40));
+                first = false;
+            } else {
+                builder.append('.').append(value);
+            }
+
+            value = 0;
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * An attribute (type and value) of an X.500 name, read in place from its encoding.
+     */
+    static final class Attribute {
+
+        private final byte[] der;
+
+        private int typeOffset;
+        private int typeEnd;
+
+        /**
+         * The index of the type's keyword, {@link #NO_KEYWORD}, or {@link #UNRESOLVED_KEYWORD} if it has not been looked
+         * up yet.
+         */
+        private int keyword;
+
+        /**
+         * The type's name - decoded on demand.
+         */
+        @Nullable
+        private String type;
+
+        private int valueTag;
+        private int valueOffset;
+        private int valueContentOffset;
+        private int valueEnd;
+
+        private Attribute(final byte[] der) {
+            this.der = der;
+        }
+
+        private void read(final Element ava) {
+            final var element = new Element(der, ava.contentOffset, ava.contentEnd);
+
+            element.next(TAG_OID);
+            typeOffset = element.contentOffset;
+            typeEnd = element.contentEnd;
+            type = null;
+            keyword = UNRESOLVED_KEYWORD;
+
+            valueOffset = element.offset;
+            element.next(-1);
+            valueTag = element.tag;
+            valueContentOffset = element.contentOffset;
+            valueEnd = element.contentEnd;
+        }
+
+        /**
+         * Returns true if this attribute has the given type.
+         *
+         * @param oid the encoded type, from {@link #encodeType(String)}.
+         * @return true if the type matches.
+         */
+        boolean hasType(@Nonnull final byte[] oid) {
+            // OIDs mostly differ in their last arc, so check that before comparing the whole OID.
+            return oid.length == typeEnd - typeOffset &&
+                oid[oid.length - 1] == der[typeEnd - 1] &&
+                Arrays.equals(der, typeOffset, typeEnd, oid, 0, oid.length);
+        }
+
+        private int keyword() {
+            if (keyword == UNRESOLVED_KEYWORD) {
+                keyword = NO_KEYWORD;
+                for (int i = 0; i < KEYWORD_OIDS.length; i++) {
+                    if (hasType(KEYWORD_OIDS[i])) {
+                        keyword = i;
+                        break;
+                    }
+                }
+            }
+
+            return keyword;
+        }
+
+        /**
+         * Get the name of this attribute's type: its RFC 2253 keyword or, failing that, its OID.
+         *
+         * @return the attribute's type.
+         */
+        @Nonnull
+        String type() {
+            if (type == null) type = keyword() != NO_KEYWORD ? KEYWORDS[keyword] : decodeOid(der, typeOffset, typeEnd);
+            return type;
+        }
+
+        /**
+         * Decode this attribute's value as a string.
+         *
+         * @param customRDNTypes to decode from BER as a string.
+         * @return the attribute's value, or null if it is not a string (or a custom type that can be parsed as a
+         * string).
+         */
+        @Nullable
+        String value(@Nonnull final Set<String> customRDNTypes) {
+            if (keyword() != NO_KEYWORD) {
+                final var charset = keywordCharset(valueTag);
+                if (charset != null) return new String(der, valueContentOffset, valueEnd - valueContentOffset, charset);
+            }
+
+            if (!customRDNTypes.contains(type())) return null;
+
+            final var length = valueEnd - valueContentOffset;
+            return switch (valueTag) {
+                case TAG_UTF8_STRING -> new String(der, valueContentOffset, length, StandardCharsets.UTF_8);
+                case TAG_NUMERIC_STRING, TAG_PRINTABLE_STRING, TAG_T61_STRING, TAG_IA5_STRING, TAG_VISIBLE_STRING,
+                     TAG_GENERAL_STRING -> new String(der, valueContentOffset, length, StandardCharsets.ISO_8859_1);
+                case TAG_BMP_STRING -> length % 2 == 0
+                    ? decodeBMPString()
+                    : RelativeDN.decodeBER(type(), Arrays.copyOfRange(der, valueOffset, valueEnd));
+                default -> RelativeDN.decodeBER(type(), Arrays.copyOfRange(der, valueOffset, valueEnd));
+            };
+        }
+
+        /**
+         * Decode a BMPString the way that BouncyCastle does (keeping any unpaired surrogates).
+         */
+        private String decodeBMPString() {
+            final var chars = new char[(valueEnd - valueContentOffset) / 2];
+            for (int i = 0; i < chars.length; i++) {
+                final var offset = valueContentOffset + (i * 2);
+                chars[i] = (char) (((der[offset] & 0xFF) << 8) | (der[offset + 1] & 0xFF));
+            }
+
+            return new String(chars);
+        }
+
+        /**
+         * Get the charset that the JDK decodes values of keyword types with the given tag with, or null if it formats
+         * them as BER.
+         */
+        @Nullable
+        private static Charset keywordCharset(final int tag) {
+            return switch (tag) {
+                case TAG_UTF8_STRING -> StandardCharsets.UTF_8;
+                case TAG_PRINTABLE_STRING, TAG_IA5_STRING, TAG_GENERAL_STRING -> StandardCharsets.US_ASCII;
+                case TAG_T61_STRING -> StandardCharsets.ISO_8859_1;
+                case TAG_BMP_STRING -> StandardCharsets.UTF_16BE;
+                default -> null;
+            };
+        }
+
+    }
+
+    /**
+     * A cursor over a sequence of DER elements, within the given bounds.
+     *
+     * <p>Throws {@link IllegalArgumentException} if an element is malformed.
+     */
+    private static final class Element {
+
+        private final byte[] der;
+        private final int end;
+
+        /**
+         * The offset of the next element.
+         */
+        private int offset;
+
+        private int tag;
+        private int contentOffset;
+        private int contentEnd;
+
+        private Element(final byte[] der, final int offset, final int end) {
+            this.der = der;
+            this.offset = offset;
+            this.end = end;
+        }
+
+        private boolean hasNext() {
+            return offset < end;
+        }
+
+        /**
+         * Read the next element, which must have the given tag (or any tag, if it is negative).
+         */
+        private void next(final int expectedTag) {
+            tag = readOctet();
+            if ((tag & 0x1F) == 0x1F) throw new IllegalArgumentException("Unsupported DER tag");
+            if (expectedTag >= 0 && tag != expectedTag) throw new IllegalArgumentException("Unexpected DER tag");
+
+            var length = readOctet();
+            if (length >= 0x80) {
+                final var octets = length & 0x7F;
+                if (octets == 0 || octets > 3) throw new IllegalArgumentException("Unsupported DER length");
+
+                length = 0;
+                for (int i = 0; i < octets; i++) length = (length << 8) | readOctet();
+            }
+
+            if (length > end - offset) throw new IllegalArgumentException("Truncated DER element");
+
+            contentOffset = offset;
+            contentEnd = offset + length;
+            offset = contentEnd;
+        }
+
+        private int readOctet() {
+            if (offset >= end) throw new IllegalArgumentException("Truncated DER element");
+            return der[offset++] & 0xFF;
+        }
+
+    }
+
+}
@@ -3,14 +3,10 @@ package xyz.apollosoftware.jenkins.pki.x500;
 import jakarta.annotation.Nonnull;
 import jakarta.annotation.Nullable;
 
-import javax.naming.InvalidNameException;
-import javax.naming.ldap.LdapName;
 import javax.security.auth.x500.X500Principal;
 import java.util.*;
 
 import static java.util.Collections.unmodifiableMap;
-import static java.util.stream.Collectors.*;
-import static xyz.apollosoftware.jenkins.pki.x500.RelativeDN.fromLdapRdn;
 
 /**
  * A string-normalized X.500 principal.
@@ -72,6 +68,9 @@ public record Principal(@Nonnull String dn, @Nonnull Map<String, Set<String>> re
     /**
      * Parse the X.500 principal into a set of key-value pairs ({@link Map}).
      *
+     * <p>The principal is parsed directly from its DER encoding (see {@link DERName}), with the same result as parsing
+     * its RFC 2253 form with {@link javax.naming.ldap.LdapName}.
+     *
      * <p>If the principal cannot be parsed, this function returns null.
      *
      * @param principal to parse.
@@ -83,17 +82,26 @@ public record Principal(@Nonnull String dn, @Nonnull Map<String, Set<String>> re
         @Nonnull X500Principal principal,
         @Nonnull Set<String> customRDNTypes
     ) {
-        try {
-            LdapName ldapName = new LdapName(principal.getName());
-            return new Principal(
-                    principal.getName(),
-                    unmodifiableMap(ldapName.getRdns().stream()
-                        .map(rdn -> fromLdapRdn(rdn, customRDNTypes))
-                        .filter(Objects::nonNull)
-                        .collect(groupingBy(RelativeDN::key, mapping(RelativeDN::value, toUnmodifiableSet())))));
-        } catch (InvalidNameException ex) {
-            return null;
-        }
+        final var relativeDNs = new HashMap<String, Set<String>>();
+        final var parsed = DERName.forEachAttribute(principal.getEncoded(), attribute -> {
+            final var value = attribute.value(customRDNTypes);
+            if (value == null) return;
+
+            // Most attribute types occur once, so only build a merged set for those that don't.
+            final var type = attribute.type();
+            final var values = relativeDNs.get(type);
+            if (values == null) {
+                relativeDNs.put(type, Set.of(value));
+            } else if (!values.contains(value)) {
+                final var merged = new HashSet<>(values);
+                merged.add(value);
+                relativeDNs.put(type, Set.copyOf(merged));
+            }
+        });
+
+        if (!parsed) return null;
+
+        return new Principal(principal.getName(), unmodifiableMap(relativeDNs));
     }
 
 }
@@ -37,32 +37,55 @@ public record RelativeDN(@Nonnull String key, @Nullable String value) {
      * @return the normalized {@link RelativeDN}.
      */
     public static RelativeDN fromLdapRdn(@Nonnull Rdn rdn, @Nonnull Set<String> customRDNTypes) {
+        final var value = decodeValue(rdn, customRDNTypes);
+        return value != null ? new RelativeDN(rdn.getType(), value) : null;
+    }
+
+    /**
+     * Decode the value of an LDAP {@link Rdn} as a string.
+     *
+     * @param rdn to decode the value of.
+     * @param customRDNTypes to parse from a BER-encoded string (the default set from RFC 2253 are always parsed by
+     *                       the Java LDAP library).
+     * @return the RDN's value, or null if it is not a string (or a custom type that can be parsed as a string).
+     */
+    @Nullable
+    public static String decodeValue(@Nonnull Rdn rdn, @Nonnull Set<String> customRDNTypes) {
         final var key = rdn.getType();
         final var value = rdn.getValue();
 
         if (value instanceof String valueString) {
-            return new RelativeDN(key, valueString);
+            return valueString;
         }
 
         if (customRDNTypes.contains(key) && value instanceof byte[] valueRawBytes) {
-            final var valueStream = new ASN1InputStream(new ByteArrayInputStream(valueRawBytes));
+            return decodeBER(key, valueRawBytes);
+        }
 
-            try (valueStream) {
-                final var valueObject = valueStream.readObject();
+        return null;
+    }
 
-                // Check if the object implements the generic ASN1String interface. If it does, use BouncyCastle to
-                // parse it.
-                if (valueObject instanceof ASN1String valueASN1String) {
-                    return new RelativeDN(
-                            key,
-                            valueASN1String.getString()
-                    );
-                }
-            } catch (IOException ex) {
-                LOGGER.warning("Failed to parse custom RDN type (%s): %s".formatted(key, ex.getMessage()));
-                return null;
-            }
+    /**
+     * Decode a BER-encoded RDN value as a string.
+     *
+     * @param key of the RDN (used for logging).
+     * @param valueRawBytes the BER encoding of the RDN's value.
+     * @return the RDN's value, or null if it could not be parsed as a string.
+     */
+    @Nullable
+    static String decodeBER(@Nonnull final String key, @Nonnull final byte[] valueRawBytes) {
+        final var valueStream = new ASN1InputStream(new ByteArrayInputStream(valueRawBytes));
 
+        try (valueStream) {
+            final var valueObject = valueStream.readObject();
+
+            // Check if the object implements the generic ASN1String interface. If it does, use BouncyCastle to
+            // parse it.
+            if (valueObject instanceof ASN1String valueASN1String) {
+                return valueASN1String.getString();
+            }
+        } catch (IOException ex) {
+            LOGGER.warning("Failed to parse custom RDN type (%s): %s".formatted(key, ex.getMessage()));
         }
 
         return null;
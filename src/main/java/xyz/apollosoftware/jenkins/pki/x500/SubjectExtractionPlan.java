@@ -0,0 +1,174 @@
+package xyz.apollosoftware.jenkins.pki.x500;
+
+import jakarta.annotation.Nonnull;
+import jakarta.annotation.Nullable;
+import xyz.apollosoftware.jenkins.pki.struct.PKIMapping;
+
+import javax.security.auth.x500.X500Principal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link PKIMapping}, compiled into a plan for extracting a user's fields from the X.500 subject of their
+ * certificate.
+ *
+ * <p>Each attribute type that is needed (the mapped fields, and the common name that the username falls back to) is
+ * assigned a slot, and resolved to its encoded OID, when the plan is compiled. Extraction then walks the DER encoding
+ * of the subject once (see {@link DERName}), only decoding the values of types that have a slot - so a field is read
+ * with a single array lookup.
+ *
+ * <p>Where an attribute type occurs more than once in the subject, the most specific (left-most) value is extracted.
+ */
+public final class SubjectExtractionPlan {
+
+    private static final String COMMON_NAME_ATTRIBUTE = "CN";
+
+    /**
+     * The slot of a field that is not mapped.
+     */
+    private static final int UNMAPPED = -1;
+
+    /**
+     * The encoded OID of the attribute type for each slot, or null if the type can never be present in a subject.
+     */
+    private final byte[][] types;
+
+    /**
+     * The OIDs of the custom attribute types, which are decoded from BER.
+     */
+    private final Set<String> customTypes;
+
+    private final int usernameSlot;
+    private final int nameSlot;
+    private final int groupSlot;
+    private final int emailSlot;
+    private final int commonNameSlot;
+
+    private SubjectExtractionPlan(
+        final List<String> types,
+        final Set<String> customTypes,
+        final int usernameSlot,
+        final int nameSlot,
+        final int groupSlot,
+        final int emailSlot,
+        final int commonNameSlot
+    ) {
+        this.types = types.stream().map(DERName::encodeType).toArray(byte[][]::new);
+        this.customTypes = Set.copyOf(customTypes);
+        this.usernameSlot = usernameSlot;
+        this.nameSlot = nameSlot;
+        this.groupSlot = groupSlot;
+        this.emailSlot = emailSlot;
+        this.commonNameSlot = commonNameSlot;
+    }
+
+    /**
+     * Compile the given mapping into an extraction plan.
+     *
+     * @param mapping to compile.
+     * @return the compiled {@link SubjectExtractionPlan}.
+     */
+    @Nonnull
+    public static SubjectExtractionPlan compile(@Nonnull final PKIMapping mapping) {
+        final var customTypes = new HashSet<String>();
+        if (mapping.customAttributes() != null) {
+            for (final var customAttribute : mapping.customAttributes()) {
+                customTypes.add(customAttribute.getOid());
+            }
+        }
+
+        final var types = new ArrayList<String>();
+        return new SubjectExtractionPlan(
+            types,
+            customTypes,
+            slot(types, mapping.usernameField()),
+            slot(types, mapping.nameField()),
+            slot(types, mapping.groupField()),
+            slot(types, mapping.emailField()),
+            slot(types, COMMON_NAME_ATTRIBUTE)
+        );
+    }
+
+    /**
+     * Get the slot for the given attribute type, adding one if there is not one already.
+     */
+    private static int slot(final List<String> types, @Nullable final String type) {
+        if (type == null) return UNMAPPED;
+
+        final var slot = types.indexOf(type);
+        if (slot != UNMAPPED) return slot;
+
+        types.add(type);
+        return types.size() - 1;
+    }
+
+    /**
+     * Extract the mapped fields from the given X.500 principal.
+     *
+     * <p>If the principal cannot be parsed, this function returns null.
+     *
+     * @param principal to extract the fields from.
+     * @return the extracted {@link Subject}, or null.
+     */
+    @Nullable
+    public Subject extract(@Nonnull final X500Principal principal) {
+        // Attributes are visited from the least to the most specific, so later values take precedence.
+        final var values = new String[types.length];
+        final var parsed = DERName.forEachAttribute(principal.getEncoded(), attribute -> {
+            final var slot = slotOf(attribute);
+            if (slot == UNMAPPED) return;
+
+            final var value = attribute.value(customTypes);
+            if (value != null) values[slot] = value;
+        });
+
+        if (!parsed) return null;
+
+        return new Subject(
+            principal.getName(),
+            valueAt(values, usernameSlot),
+            valueAt(values, nameSlot),
+            valueAt(values, groupSlot),
+            valueAt(values, emailSlot),
+            valueAt(values, commonNameSlot)
+        );
+    }
+
+    private int slotOf(final DERName.Attribute attribute) {
+        for (int slot = 0; slot < types.length; slot++) {
+            if (types[slot] != null && attribute.hasType(types[slot])) return slot;
+        }
+
+        return UNMAPPED;
+    }
+
+    @Nullable
+    private static String valueAt(final String[] values, final int slot) {
+        return slot == UNMAPPED ? null : values[slot];
+    }
+
+    /**
+     * The fields extracted from an X.500 subject by a {@link SubjectExtractionPlan}.
+     *
+     * <p>Each field is null if it is not mapped, or not present in the subject.
+     *
+     * @param dn the subject's distinguished name.
+     * @param username the value of the username field.
+     * @param name the value of the name field.
+     * @param group the value of the group field.
+     * @param email the value of the email field.
+     * @param commonName the subject's Common Name ({@code CN}).
+     */
+    public record Subject(
+        @Nonnull String dn,
+        @Nullable String username,
+        @Nullable String name,
+        @Nullable String group,
+        @Nullable String email,
+        @Nullable String commonName
+    ) {
+    }
+
+}
@@ -0,0 +1,49 @@
+package xyz.apollosoftware.jenkins.pki;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the JMH benchmarks (the classes named {@code *Benchmark}), reporting their throughput and - with the GC
+ * profiler - their allocation rate.
+ *
+ * <p>The benchmarks take a while, so they are only run when the {@code benchmark} system property is set - and, as
+ * this class is not named like a test, it must be selected explicitly (for example
+ * {@code mvn test -Dtest=BenchmarkRunner -Dbenchmark}). If the property has a value, only the benchmarks matching it
+ * are run (for example {@code -Dbenchmark=LDAPCacheBenchmark}). The results are also written to
+ * {@code target/jmh-report.json}.
+ */
+class BenchmarkRunner {
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = ".*")
+    void runBenchmarks() throws RunnerException {
+        final var filter = System.getProperty("benchmark", "");
+        final var options = new OptionsBuilder()
+                .include(getClass().getPackageName() + "\\." + (filter.isBlank() ? "" : "(?=.*%s)".formatted(filter)) + ".*Benchmark")
+                .mode(Mode.Throughput)
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .forks(1)
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-report.json")
+                .build();
+
+        new Runner(options).run();
+    }
+
+}
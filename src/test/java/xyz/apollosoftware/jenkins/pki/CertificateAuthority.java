@@ -0,0 +1,139 @@
+package xyz.apollosoftware.jenkins.pki;
+
+import jakarta.annotation.Nullable;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import javax.security.auth.x500.X500Principal;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A throwaway certificate authority, for issuing client certificates in tests and benchmarks.
+ *
+ * <p>Keys are EC (P-256), as they are much quicker to generate than RSA keys - which matters when issuing thousands
+ * of certificates.
+ */
+public final class CertificateAuthority {
+
+    private static final String KEY_ALGORITHM = "EC";
+    private static final int KEY_SIZE = 256;
+    private static final String SIGNATURE_ALGORITHM = "SHA256withECDSA";
+
+    private static final Duration VALIDITY = Duration.ofDays(1);
+
+    private final KeyPair keyPair;
+    private final X509Certificate certificate;
+    private final AtomicLong serial = new AtomicLong(1);
+
+    public CertificateAuthority(final String subject) throws GeneralSecurityException {
+        this.keyPair = generateKeyPair();
+
+        final var name = new X500Principal(subject);
+        this.certificate = sign(name, name, keyPair.getPublic(), true, null);
+    }
+
+    /**
+     * Generate a key pair for a certificate.
+     *
+     * @return the new {@link KeyPair}.
+     * @throws GeneralSecurityException if EC keys are not supported.
+     */
+    public static KeyPair generateKeyPair() throws GeneralSecurityException {
+        final var generator = KeyPairGenerator.getInstance(KEY_ALGORITHM);
+        generator.initialize(KEY_SIZE);
+        return generator.generateKeyPair();
+    }
+
+    /**
+     * Returns the (self-signed) certificate of the authority.
+     *
+     * @return the CA certificate.
+     */
+    public X509Certificate certificate() {
+        return certificate;
+    }
+
+    /**
+     * Issue a client certificate.
+     *
+     * @param subject the subject DN of the certificate (in RFC 2253 format).
+     * @param keyPair of the client (see {@link #generateKeyPair()}) - which may be shared between certificates.
+     * @return the issued certificate.
+     * @throws GeneralSecurityException if the certificate could not be signed.
+     */
+    public X509Certificate issue(final String subject, final KeyPair keyPair) throws GeneralSecurityException {
+        return sign(certificate.getSubjectX500Principal(), new X500Principal(subject), keyPair.getPublic(), false, null);
+    }
+
+    /**
+     * Issue a server certificate for the given host name.
+     *
+     * @param hostname of the server.
+     * @param keyPair of the server (see {@link #generateKeyPair()}).
+     * @return the issued certificate.
+     * @throws GeneralSecurityException if the certificate could not be signed.
+     */
+    public X509Certificate issueServer(final String hostname, final KeyPair keyPair) throws GeneralSecurityException {
+        return sign(
+                certificate.getSubjectX500Principal(),
+                new X500Principal("CN=" + hostname),
+                keyPair.getPublic(),
+                false,
+                hostname);
+    }
+
+    private X509Certificate sign(
+            final X500Principal issuer,
+            final X500Principal subject,
+            final PublicKey publicKey,
+            final boolean ca,
+            @Nullable final String hostname
+    ) throws GeneralSecurityException {
+        final var now = Instant.now();
+        final var builder = new JcaX509v3CertificateBuilder(
+                issuer,
+                BigInteger.valueOf(serial.getAndIncrement()),
+                Date.from(now.minus(Duration.ofHours(1))),
+                Date.from(now.plus(VALIDITY)),
+                subject,
+                publicKey);
+
+        try {
+            builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(ca));
+            builder.addExtension(Extension.keyUsage, true, new KeyUsage(ca
+                    ? KeyUsage.keyCertSign | KeyUsage.cRLSign
+                    : KeyUsage.digitalSignature | KeyUsage.keyAgreement));
+            if (hostname != null) {
+                builder.addExtension(Extension.subjectAlternativeName, false,
+                        new GeneralNames(new GeneralName(GeneralName.dNSName, hostname)));
+                builder.addExtension(Extension.extendedKeyUsage, false,
+                        new ExtendedKeyUsage(KeyPurposeId.id_kp_serverAuth));
+            }
+
+            final var signer = new JcaContentSignerBuilder(SIGNATURE_ALGORITHM).build(keyPair.getPrivate());
+            return new JcaX509CertificateConverter().getCertificate(builder.build(signer));
+        } catch (CertIOException | OperatorCreationException ex) {
+            throw new GeneralSecurityException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+package xyz.apollosoftware.jenkins.pki;
+
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A Jenkins instance (started by a {@link JenkinsRule}) whose lifetime is managed explicitly, rather than by a test
+ * method - for benchmarks and load tests.
+ *
+ * <p>The rule is evaluated on a dedicated thread, which holds Jenkins up until the instance is closed.
+ */
+public final class EmbeddedJenkins implements AutoCloseable {
+
+    private final JenkinsRule rule;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private final Thread thread;
+
+    private volatile Throwable failure;
+
+    /**
+     * Start Jenkins with the given rule.
+     *
+     * @param rule to start Jenkins with (which may be customized before it is started).
+     * @param owner the class that Jenkins is started for (used to name the instance).
+     * @throws Exception if Jenkins could not be started.
+     */
+    public EmbeddedJenkins(final JenkinsRule rule, final Class<?> owner) throws Exception {
+        this.rule = rule;
+
+        // Jenkins is held up for as long as it is needed, rather than for the length of a test.
+        rule.timeout = 0;
+
+        final var statement = rule.apply(new Statement() {
+            @Override
+            public void evaluate() throws InterruptedException {
+                started.countDown();
+                stopped.await();
+            }
+        }, Description.createTestDescription(owner, "embedded"));
+
+        thread = new Thread(() -> {
+            try {
+                statement.evaluate();
+            } catch (Throwable ex) {
+                failure = ex;
+                started.countDown();
+            }
+        }, EmbeddedJenkins.class.getSimpleName());
+        thread.start();
+
+        started.await();
+        if (failure != null) throw new IllegalStateException("Failed to start Jenkins", failure);
+    }
+
+    /**
+     * Returns the rule that started Jenkins.
+     *
+     * @return the {@link JenkinsRule}.
+     */
+    public JenkinsRule rule() {
+        return rule;
+    }
+
+    /**
+     * Stop Jenkins.
+     *
+     * @throws InterruptedException if interrupted while waiting for Jenkins to stop.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        stopped.countDown();
+        thread.join();
+    }
+
+}
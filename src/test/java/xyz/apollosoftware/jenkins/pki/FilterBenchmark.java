@@ -0,0 +1,97 @@
+package xyz.apollosoftware.jenkins.pki;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPSettings;
+import xyz.apollosoftware.jenkins.pki.struct.PKIMapping;
+import xyz.apollosoftware.jenkins.pki.x500.SubjectExtractionPlan;
+
+import java.io.IOException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmarks {@link ClientCertificateFilter#doFilter} end-to-end: from a (mocked) request carrying a client
+ * certificate, through LDAP enrichment against an in-memory directory, to the Jenkins user - with and without the
+ * authentication cache.
+ *
+ * <p>Jenkins is started (once per fork) with a {@link JenkinsRule}.
+ */
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+
+    private static final FilterChain CHAIN = (request, response) -> {
+    };
+
+    @Param({"1000"})
+    public int users;
+
+    @Param({"50"})
+    public int groups;
+
+    @Param({"0", "30"})
+    public int authenticationCacheDuration;
+
+    private EmbeddedJenkins jenkins;
+    private InMemoryDirectory directory;
+    private ClientCertificateFilter filter;
+
+    private HttpServletRequest[] requests;
+    private HttpServletResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        jenkins = new EmbeddedJenkins(new JenkinsRule(), FilterBenchmark.class);
+        directory = new InMemoryDirectory(users, groups);
+
+        filter = new ClientCertificateFilter(
+                SubjectExtractionPlan.compile(new PKIMapping.Builder().build()),
+                directory.mapping(new LDAPSettings.Builder()),
+                authenticationCacheDuration,
+                0
+        );
+
+        final var authority = new CertificateAuthority("CN=Benchmark CA");
+        final var keyPair = CertificateAuthority.generateKeyPair();
+        requests = new HttpServletRequest[users];
+        for (int i = 0; i < users; i++) {
+            final var certificate = authority.issue("CN=%s,O=Example".formatted(InMemoryDirectory.username(i)), keyPair);
+            requests[i] = ServletMocks.request(new X509Certificate[]{ certificate, authority.certificate() });
+        }
+        response = ServletMocks.mock(HttpServletResponse.class, (method, args) -> null);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        filter.destroy();
+        directory.close();
+        jenkins.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void doFilter1Thread() throws ServletException, IOException {
+        doFilter();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void doFilterMaxThreads() throws ServletException, IOException {
+        doFilter();
+    }
+
+    private void doFilter() throws ServletException, IOException {
+        filter.doFilter(requests[ThreadLocalRandom.current().nextInt(users)], response, CHAIN);
+    }
+
+}
@@ -0,0 +1,190 @@
+package xyz.apollosoftware.jenkins.pki;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPMapping;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPSettings;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory LDAP server, seeded with {@code users} users ({@code user0}, {@code user1}, ...) and {@code groups}
+ * groups ({@code group0}, {@code group1}, ...), for tests and benchmarks.
+ *
+ * <p>Each user is a member of one group ({@code user<i>} is a member of {@code group<i % groups>}), and the searches
+ * made against the server are counted.
+ */
+public final class InMemoryDirectory implements AutoCloseable {
+
+    public static final String BASE_DN = "dc=example,dc=com";
+    public static final String USER_SEARCH_BASE = "ou=people";
+    public static final String USER_SEARCH_FILTER = "(uid={1})";
+    public static final String GROUP_SEARCH_BASE = "ou=groups";
+    public static final String GROUP_SEARCH_FILTER = "(&(objectClass=groupOfNames)(member={0}))";
+
+    private final InMemoryDirectoryServer server;
+
+    private final LongAdder searches = new LongAdder();
+
+    public InMemoryDirectory(final int users, final int groups) throws LDAPException {
+        final var config = new InMemoryDirectoryServerConfig(BASE_DN);
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", 0));
+        config.addInMemoryOperationInterceptor(new InMemoryOperationInterceptor() {
+            @Override
+            public void processSearchRequest(final InMemoryInterceptedSearchRequest request) {
+                searches.increment();
+            }
+        });
+
+        server = new InMemoryDirectoryServer(config);
+        server.add("dn: " + BASE_DN, "objectClass: domain", "dc: example");
+        server.add("dn: ou=people," + BASE_DN, "objectClass: organizationalUnit", "ou: people");
+        server.add("dn: ou=groups," + BASE_DN, "objectClass: organizationalUnit", "ou: groups");
+
+        final var members = new ArrayList<ArrayList<String>>(groups);
+        for (int i = 0; i < groups; i++) members.add(new ArrayList<>());
+
+        for (int i = 0; i < users; i++) {
+            final var username = username(i);
+            server.add(
+                    "dn: " + userDN(username),
+                    "objectClass: inetOrgPerson",
+                    "uid: " + username,
+                    "cn: " + username,
+                    "sn: " + username,
+                    "mail: %s@example.com".formatted(username)
+            );
+            if (groups > 0) members.get(i % groups).add(userDN(username));
+        }
+
+        for (int i = 0; i < groups; i++) {
+            final var name = groupName(i);
+            final var group = new Entry(groupDN(name));
+            group.addAttribute("objectClass", "groupOfNames");
+            group.addAttribute("cn", name);
+
+            // groupOfNames requires at least one member.
+            group.addAttribute("member", members.get(i).isEmpty()
+                    ? new String[]{ "cn=nobody," + BASE_DN }
+                    : members.get(i).toArray(String[]::new));
+            server.add(group);
+        }
+
+        server.startListening();
+    }
+
+    /**
+     * Get the username of the user with the given index.
+     *
+     * @param index of the user.
+     * @return the username.
+     */
+    public static String username(final int index) {
+        return "user%d".formatted(index);
+    }
+
+    /**
+     * Get the name of the group with the given index.
+     *
+     * @param index of the group.
+     * @return the group's name.
+     */
+    public static String groupName(final int index) {
+        return "group%d".formatted(index);
+    }
+
+    /**
+     * Get the DN of the given user's entry.
+     *
+     * @param username of the user.
+     * @return the user's DN.
+     */
+    public static String userDN(final String username) {
+        return "uid=%s,ou=people,%s".formatted(username, BASE_DN);
+    }
+
+    /**
+     * Get the DN of the given group's entry.
+     *
+     * @param name of the group.
+     * @return the group's DN.
+     */
+    public static String groupDN(final String name) {
+        return "cn=%s,ou=groups,%s".formatted(name, BASE_DN);
+    }
+
+    /**
+     * Build an {@link LDAPMapping} for searching the directory (with the plugin's default settings otherwise).
+     *
+     * @param settings to start from - with everything but the connection and search settings.
+     * @return the mapping.
+     */
+    public LDAPMapping mapping(final LDAPSettings.Builder settings) {
+        return new LDAPMapping.Builder()
+                .usernameField("uid")
+                .nameField("cn")
+                .emailField("mail")
+                .withSettings(settings
+                        .enabled(true)
+                        .url(url())
+                        .baseDN(BASE_DN)
+                        .userSearchBase(USER_SEARCH_BASE)
+                        .userSearchFilter(USER_SEARCH_FILTER)
+                        .groupSearchBase(GROUP_SEARCH_BASE)
+                        .groupSearchFilter(GROUP_SEARCH_FILTER)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Returns the URL of the directory.
+     *
+     * @return the LDAP URL.
+     */
+    public String url() {
+        return "ldap://localhost:%d".formatted(server.getListenPort());
+    }
+
+    /**
+     * Returns the number of searches made against the directory.
+     *
+     * @return the number of searches.
+     */
+    public long searches() {
+        return searches.sum();
+    }
+
+    /**
+     * Modify the given entry.
+     *
+     * @param dn of the entry to modify.
+     * @param modifications to apply.
+     * @throws LDAPException if the entry could not be modified.
+     */
+    public void modify(final String dn, final Modification... modifications) throws LDAPException {
+        server.modify(dn, modifications);
+    }
+
+    /**
+     * Delete the given entry.
+     *
+     * @param dn of the entry to delete.
+     * @throws LDAPException if the entry could not be deleted.
+     */
+    public void delete(final String dn) throws LDAPException {
+        server.delete(dn);
+    }
+
+    @Override
+    public void close() {
+        server.shutDown(true);
+    }
+
+}
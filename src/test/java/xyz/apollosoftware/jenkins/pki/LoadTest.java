@@ -0,0 +1,465 @@
+package xyz.apollosoftware.jenkins.pki;
+
+import hudson.ExtensionList;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.jvnet.hudson.test.JenkinsRule;
+import xyz.apollosoftware.jenkins.pki.metrics.AuthenticationMetrics;
+import xyz.apollosoftware.jenkins.pki.metrics.LatencyHistogram;
+import xyz.apollosoftware.jenkins.pki.services.UserStateWriter;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPResilienceSettings;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load tests the realm end-to-end: Jenkins behind TLS client authentication, enriching users from an in-memory LDAP
+ * directory, driven by concurrent HTTPS requests from thousands of client certificates.
+ *
+ * <p>Everything (the CA, the server and client certificates, the directory and Jenkins itself) is created in-process,
+ * so the test runs offline. Requests are made in two phases: a cold phase, which authenticates each user once (so
+ * every request searches the directory and creates the user), and a warm phase, which makes requests from random
+ * users for a fixed duration. For each phase, the throughput, latency, LDAP searches and user saves (writes to
+ * {@code users/}) are reported - and written to {@code target/load-test-report.json}.
+ *
+ * <p>The test takes a while, so it is only run when the {@code loadTest} system property is set (for example
+ * {@code mvn test -Dtest=LoadTest -DloadTest}). A small run with {@link LDAPResilienceSettings#asyncEnrichment()}
+ * enabled is always made, to check that suspended requests are still authenticated end-to-end. The load test is
+ * configured with the following system properties:
+ * <ul>
+ *     <li>{@code loadTest.users} - the number of users (and client certificates), 2000 by default.</li>
+ *     <li>{@code loadTest.groups} - the number of groups, 100 by default.</li>
+ *     <li>{@code loadTest.threads} - the number of concurrent clients, 16 by default.</li>
+ *     <li>{@code loadTest.duration} - the duration of the warm phase (in seconds), 30 by default.</li>
+ *     <li>{@code loadTest.ldapCacheDuration} - the realm's LDAP cache duration (in seconds), 300 by default.</li>
+ *     <li>{@code loadTest.authenticationCacheDuration} - the realm's authentication cache duration (in seconds), 30
+ *     by default.</li>
+ *     <li>{@code loadTest.asyncEnrichment} - whether requests are suspended while their users are enriched from LDAP,
+ *     false by default.</li>
+ * </ul>
+ */
+class LoadTest {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadTest.class.getName());
+
+    private static final String HOSTNAME = "localhost";
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private final int users = Integer.getInteger("loadTest.users", 2000);
+    private final int groups = Integer.getInteger("loadTest.groups", 100);
+    private final int threads = Integer.getInteger("loadTest.threads", 16);
+    private final int duration = Integer.getInteger("loadTest.duration", 30);
+    private final int ldapCacheDuration = Integer.getInteger("loadTest.ldapCacheDuration", 300);
+    private final int authenticationCacheDuration = Integer.getInteger("loadTest.authenticationCacheDuration", 30);
+    private final boolean asyncEnrichment = Boolean.getBoolean("loadTest.asyncEnrichment");
+
+    private final LongAdder userSaves = new LongAdder();
+
+    @Test
+    @EnabledIfSystemProperty(named = "loadTest", matches = ".*")
+    void runLoadTest() throws Exception {
+        final var phases = load(users, groups, threads, duration, asyncEnrichment);
+        report(phases);
+
+        for (final var phase : phases) assertEquals(0, phase.errors(), "Failed requests (%s)".formatted(phase.name()));
+    }
+
+    @Test
+    void testAsyncEnrichment() throws Exception {
+        // Every request is suspended (nothing is cached yet), and must still see its certificate's user in whoAmI.
+        final var phases = load(20, 2, 4, 0, true);
+
+        for (final var phase : phases) assertEquals(0, phase.errors(), "Failed requests (%s)".formatted(phase.name()));
+    }
+
+    /**
+     * Serve Jenkins (with the realm) over HTTPS, and make requests from {@code users} client certificates on
+     * {@code threads} threads: each user once (the cold phase), then random users for {@code duration} seconds (the
+     * warm phase).
+     */
+    private List<Phase> load(
+            final int users,
+            final int groups,
+            final int threads,
+            final int duration,
+            final boolean asyncEnrichment
+    ) throws Exception {
+        final var authority = new CertificateAuthority("CN=Load Test CA");
+        final var keyPair = CertificateAuthority.generateKeyPair();
+        final var serverKeyPair = CertificateAuthority.generateKeyPair();
+        final var serverCertificate = authority.issueServer(HOSTNAME, serverKeyPair);
+
+        final var rule = new TlsJenkinsRule();
+        try (
+                var directory = new InMemoryDirectory(users, groups);
+                var ignored = new EmbeddedJenkins(rule, LoadTest.class)
+        ) {
+            final var realm = new ClientCertificateSecurityRealm(
+                    null, null, null, null, Set.of(),
+                    true,
+                    ldapCacheDuration,
+                    null,
+                    null,
+                    directory.url(),
+                    InMemoryDirectory.BASE_DN,
+                    InMemoryDirectory.USER_SEARCH_BASE,
+                    InMemoryDirectory.USER_SEARCH_FILTER,
+                    InMemoryDirectory.GROUP_SEARCH_BASE,
+                    InMemoryDirectory.GROUP_SEARCH_FILTER,
+                    "uid",
+                    "cn",
+                    "mail"
+            );
+            realm.setAuthenticationCacheDuration(authenticationCacheDuration);
+            realm.setLdapAsyncEnrichment(asyncEnrichment);
+            rule.jenkins.setSecurityRealm(realm);
+
+            ExtensionList.lookup(SaveableListener.class).add(new SaveableListener() {
+                @Override
+                public void onChange(final Saveable o, final XmlFile file) {
+                    if (o instanceof User) userSaves.increment();
+                }
+            });
+
+            final var port = rule.startTls(
+                    keyStore(serverKeyPair, serverCertificate, authority.certificate()),
+                    trustStore(authority.certificate())
+            );
+            final var url = URI.create("https://%s:%d%swhoAmI/api/json".formatted(
+                    HOSTNAME, port, rule.getURL().getPath())).toURL();
+
+            final var clients = new Client[users];
+            for (int i = 0; i < users; i++) {
+                final var username = InMemoryDirectory.username(i);
+                final var certificate = authority.issue("CN=%s,O=Example".formatted(username), keyPair);
+                clients[i] = new Client(username, socketFactory(keyPair, certificate, authority.certificate()));
+            }
+
+            final var phases = new ArrayList<Phase>();
+            final var executor = Executors.newFixedThreadPool(threads);
+            try {
+                // Cold: each user once, in order.
+                final var next = new AtomicInteger();
+                phases.add(run("cold", url, directory, executor, threads, deadline -> {
+                    final var i = next.getAndIncrement();
+                    return i < users ? clients[i] : null;
+                }, Long.MAX_VALUE));
+
+                // Warm: random users, for the configured duration.
+                phases.add(run("warm", url, directory, executor, threads,
+                        deadline -> System.nanoTime() < deadline
+                                ? clients[ThreadLocalRandom.current().nextInt(users)]
+                                : null,
+                        TimeUnit.SECONDS.toNanos(duration)));
+            } finally {
+                executor.shutdownNow();
+            }
+
+            return phases;
+        }
+    }
+
+    /**
+     * Run a phase of the test: make requests to {@code url} (from the clients chosen by {@code clients}) on
+     * {@code threads} threads, until no more clients are chosen.
+     */
+    private Phase run(
+            final String name,
+            final URL url,
+            final InMemoryDirectory directory,
+            final ExecutorService executor,
+            final int threads,
+            final ClientSelector clients,
+            final long durationNanos
+    ) throws Exception {
+        final var histogram = new LatencyHistogram();
+        final var errors = new LongAdder();
+        final var searches = directory.searches();
+        final var saves = userSaves.sum();
+        final var metricSaves = AuthenticationMetrics.get().timer(AuthenticationMetrics.Stage.USER_SAVE).count();
+
+        final var start = System.nanoTime();
+        final var deadline = durationNanos == Long.MAX_VALUE ? Long.MAX_VALUE : start + durationNanos;
+
+        final var workers = new ArrayList<Future<?>>(threads);
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                for (var client = clients.next(deadline); client != null; client = clients.next(deadline)) {
+                    final var requestStart = System.nanoTime();
+                    try {
+                        if (!client.request(url)) errors.increment();
+                    } catch (IOException ex) {
+                        errors.increment();
+                    } finally {
+                        histogram.record(System.nanoTime() - requestStart);
+                    }
+                }
+            }));
+        }
+        for (final var worker : workers) worker.get();
+
+        final var elapsed = System.nanoTime() - start;
+
+        // Write any queued user state, so that it is counted against the phase that caused it.
+        UserStateWriter.get().flush();
+
+        return new Phase(
+                name,
+                histogram.snapshot(),
+                errors.sum(),
+                elapsed,
+                directory.searches() - searches,
+                Math.max(
+                        userSaves.sum() - saves,
+                        AuthenticationMetrics.get().timer(AuthenticationMetrics.Stage.USER_SAVE).count() - metricSaves
+                )
+        );
+    }
+
+    private void report(final List<Phase> phases) throws IOException {
+        final var json = new StringBuilder("{\n");
+        json.append("  \"users\": %d,\n  \"groups\": %d,\n  \"threads\": %d,\n".formatted(users, groups, threads));
+        json.append("  \"ldapCacheDuration\": %d,\n  \"authenticationCacheDuration\": %d,\n  \"asyncEnrichment\": %b,\n"
+                .formatted(ldapCacheDuration, authenticationCacheDuration, asyncEnrichment));
+        json.append("  \"phases\": [\n");
+        for (int i = 0; i < phases.size(); i++) {
+            final var phase = phases.get(i);
+            LOGGER.info(phase.toString());
+            json.append(phase.toJson()).append(i < phases.size() - 1 ? ",\n" : "\n");
+        }
+        json.append("  ]\n}\n");
+
+        final var target = Path.of("target");
+        Files.createDirectories(target);
+        Files.writeString(target.resolve("load-test-report.json"), json, StandardCharsets.UTF_8);
+    }
+
+    private static KeyStore keyStore(
+            final KeyPair keyPair,
+            final X509Certificate certificate,
+            final X509Certificate authority
+    ) throws GeneralSecurityException, IOException {
+        final var keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("key", keyPair.getPrivate(), PASSWORD, new Certificate[]{ certificate, authority });
+        return keyStore;
+    }
+
+    private static KeyStore trustStore(final X509Certificate authority) throws GeneralSecurityException, IOException {
+        final var trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("ca", authority);
+        return trustStore;
+    }
+
+    /**
+     * Create a socket factory that presents the given client certificate, and trusts the given authority.
+     *
+     * <p>{@link HttpsURLConnection} keeps connections alive per socket factory, so each client reuses its own
+     * connection(s) - as a browser would - rather than handshaking on every request.
+     */
+    private static SSLSocketFactory socketFactory(
+            final KeyPair keyPair,
+            final X509Certificate certificate,
+            final X509Certificate authority
+    ) throws GeneralSecurityException, IOException {
+        final var keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore(keyPair, certificate, authority), PASSWORD);
+
+        final var trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(trustStore(authority));
+
+        final var context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+        return context.getSocketFactory();
+    }
+
+    /**
+     * Chooses the client to make the next request from, or null if the phase is complete.
+     */
+    @FunctionalInterface
+    private interface ClientSelector {
+
+        Client next(long deadline);
+
+    }
+
+    /**
+     * A user (with their own client certificate) making requests.
+     */
+    private record Client(String username, SSLSocketFactory socketFactory) {
+
+        /**
+         * Make a request, returning whether the user was authenticated as themselves.
+         */
+        boolean request(final URL url) throws IOException {
+            final var connection = (HttpsURLConnection) url.openConnection();
+            connection.setSSLSocketFactory(socketFactory);
+            try {
+                final var status = connection.getResponseCode();
+                final String body;
+                try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                    body = in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+                return status == 200 && body.contains("\"name\":\"%s\"".formatted(username));
+            } catch (IOException ex) {
+                // Don't keep a broken connection alive.
+                connection.disconnect();
+                throw ex;
+            }
+        }
+
+    }
+
+    /**
+     * The results of a phase of the test.
+     */
+    private record Phase(
+            String name,
+            LatencyHistogram.Snapshot latency,
+            long errors,
+            long elapsedNanos,
+            long ldapSearches,
+            long userSaves
+    ) {
+
+        double throughput() {
+            return latency.count() / (elapsedNanos / 1e9);
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT, """
+                        {
+                          "name": "%s",
+                          "requests": %d,
+                          "errors": %d,
+                          "seconds": %.3f,
+                          "throughput": %.1f,
+                          "p50Micros": %d,
+                          "p99Micros": %d,
+                          "maxMicros": %d,
+                          "ldapSearches": %d,
+                          "userSaves": %d
+                        }""",
+                    name,
+                    latency.count(),
+                    errors,
+                    elapsedNanos / 1e9,
+                    throughput(),
+                    micros(latency.quantile(0.5)),
+                    micros(latency.quantile(0.99)),
+                    micros(latency.max()),
+                    ldapSearches,
+                    userSaves
+            );
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    Locale.ROOT,
+                    "%-5s %8d requests (%d errors) in %.1fs: %.1f req/s, p50 %dus, p99 %dus, max %dus; %d LDAP searches, %d user saves",
+                    name,
+                    latency.count(),
+                    errors,
+                    elapsedNanos / 1e9,
+                    throughput(),
+                    micros(latency.quantile(0.5)),
+                    micros(latency.quantile(0.99)),
+                    micros(latency.max()),
+                    ldapSearches,
+                    userSaves
+            );
+        }
+
+        private static long micros(final long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+
+    }
+
+    /**
+     * A {@link JenkinsRule} that can also serve Jenkins over HTTPS, requiring a client certificate.
+     *
+     * <p>The connector mirrors {@code jetty-ssl.xml} (TLS 1.3, with the server's key and the trusted CA), but with
+     * in-memory key stores - so nothing has to be generated on disk first.
+     */
+    private static final class TlsJenkinsRule extends JenkinsRule {
+
+        /**
+         * Add an HTTPS connector to the (started) server.
+         *
+         * @return the port that the connector is listening on.
+         */
+        int startTls(final KeyStore keyStore, final KeyStore trustStore) throws Exception {
+            final Server server = this.server;
+
+            final var ssl = new SslContextFactory.Server();
+            ssl.setIncludeProtocols("TLSv1.3");
+            ssl.setKeyStore(keyStore);
+            ssl.setKeyStorePassword(new String(PASSWORD));
+            ssl.setTrustStore(trustStore);
+            ssl.setNeedClientAuth(true);
+
+            final var secure = new SecureRequestCustomizer();
+            secure.setSniHostCheck(false);
+            final var http = new HttpConfiguration();
+            http.addCustomizer(secure);
+
+            final var connector = new ServerConnector(
+                    server,
+                    new SslConnectionFactory(ssl, "http/1.1"),
+                    new HttpConnectionFactory(http)
+            );
+            connector.setHost(HOSTNAME);
+            connector.setPort(0);
+
+            server.addConnector(connector);
+            connector.start();
+            return connector.getLocalPort();
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+package xyz.apollosoftware.jenkins.pki;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.lang.reflect.Proxy;
+import java.security.cert.X509Certificate;
+import java.util.function.BiFunction;
+
+/**
+ * Minimal (proxy-based) mocks of the servlet API, for driving {@link ClientCertificateFilter} directly in tests and
+ * benchmarks.
+ */
+public final class ServletMocks {
+
+    public static final String X509_CERTIFICATE_ATTRIBUTE = "jakarta.servlet.request.X509Certificate";
+
+    private ServletMocks() {
+    }
+
+    /**
+     * Mock a request that carries the given certificate chain (and nothing else).
+     *
+     * @param chain the client's certificate chain.
+     * @return the mocked request.
+     */
+    public static HttpServletRequest request(final X509Certificate[] chain) {
+        return mock(HttpServletRequest.class, (method, args) -> switch (method) {
+            case "getAttribute" -> X509_CERTIFICATE_ATTRIBUTE.equals(args[0]) ? chain : null;
+            case "getContextPath" -> "";
+            case "isSecure" -> true;
+            default -> null;
+        });
+    }
+
+    /**
+     * Mock the given interface, answering each method from {@code answers} (by name and arguments), or with the
+     * default value (null, zero or false) where the answer is null.
+     *
+     * @param type to mock.
+     * @param answers function that answers each method call.
+     * @param <T> the mocked type.
+     * @return the mock.
+     */
+    public static <T> T mock(final Class<T> type, final BiFunction<String, Object[], Object> answers) {
+        return type.cast(Proxy.newProxyInstance(
+                type.getClassLoader(),
+                new Class<?>[]{ type },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> type.getSimpleName();
+                    default -> {
+                        final var answer = answers.apply(method.getName(), args);
+                        yield answer != null ? answer : defaultValue(method.getReturnType());
+                    }
+                }));
+    }
+
+    private static Object defaultValue(final Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+
+}
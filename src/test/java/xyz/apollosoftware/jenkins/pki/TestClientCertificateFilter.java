@@ -0,0 +1,276 @@
+package xyz.apollosoftware.jenkins.pki;
+
+import jakarta.annotation.Nullable;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import xyz.apollosoftware.jenkins.pki.services.LDAPCache;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPMapping;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPResilienceSettings;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPSettings;
+import xyz.apollosoftware.jenkins.pki.struct.PKIMapping;
+import xyz.apollosoftware.jenkins.pki.x500.SubjectExtractionPlan;
+
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@WithJenkins
+class TestClientCertificateFilter {
+
+    private static final HttpServletResponse RESPONSE = ServletMocks.mock(HttpServletResponse.class, (method, args) -> null);
+
+    @Test
+    void testAuthenticationCache(final JenkinsRule rule) throws Exception {
+        final var authority = new CertificateAuthority("CN=Test CA");
+        final var certificate = authority.issue("CN=foo,O=Example", CertificateAuthority.generateKeyPair());
+        final var request = ServletMocks.request(new X509Certificate[]{ certificate, authority.certificate() });
+
+        final var filter = filter(30);
+        final var first = authenticate(filter, request);
+        assertEquals("foo", first.getName());
+
+        // The second request is served from the cache.
+        assertSame(first, authenticate(filter, request));
+
+        // A reconfigured realm (i.e., a new filter) does not reuse results cached with the previous configuration.
+        final var reconfigured = filter(30);
+        final var third = authenticate(reconfigured, request);
+        assertEquals("foo", third.getName());
+        assertNotSame(first, third);
+
+        // Without the cache, every request is authenticated in full.
+        final var uncached = filter(0);
+        assertNotSame(authenticate(uncached, request), authenticate(uncached, request));
+
+        filter.destroy();
+        reconfigured.destroy();
+        uncached.destroy();
+    }
+
+    @Test
+    void testAsyncEnrichment(final JenkinsRule rule) throws Exception {
+        try (var directory = new InMemoryDirectory(1, 1)) {
+            LDAPCache.get().invalidate(user -> true);
+            final var filter = asyncFilter(directory, 4);
+            final var request = new AsyncRequest(chain(InMemoryDirectory.username(0)), null);
+
+            // The request is suspended while the user is enriched, and continues (on another thread) as the user.
+            final var authentication = authenticateAsync(filter, request);
+            assertEquals(InMemoryDirectory.username(0), authentication.getName());
+            assertTrue(groups(authentication).contains(InMemoryDirectory.groupName(0)));
+            assertEquals(1, request.asyncStarts());
+
+            filter.destroy();
+        }
+    }
+
+    @Test
+    void testSaturatedExecutorEnrichesOnRequestThread(final JenkinsRule rule) throws Exception {
+        try (var directory = new InMemoryDirectory(1, 1)) {
+            LDAPCache.get().invalidate(user -> true);
+            final var filter = asyncFilter(directory, 1);
+
+            // Occupy the only enrichment thread, and fill its queue.
+            final var executor = filter.ldapEnrichmentExecutor();
+            final var blocked = new CountDownLatch(1);
+            executor.execute(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            while (executor.getQueue().remainingCapacity() > 0) executor.execute(() -> { });
+
+            // The user is enriched on the request thread, so the request completes while the executor is blocked.
+            final var request = new AsyncRequest(chain(InMemoryDirectory.username(0)), null);
+            try {
+                final var authentication = authenticateAsync(filter, request);
+                assertEquals(InMemoryDirectory.username(0), authentication.getName());
+            } finally {
+                blocked.countDown();
+            }
+
+            filter.destroy();
+        }
+    }
+
+    @Test
+    void testUpgradeRequestsAreNotSuspended(final JenkinsRule rule) throws Exception {
+        try (var directory = new InMemoryDirectory(1, 1)) {
+            LDAPCache.get().invalidate(user -> true);
+            final var filter = asyncFilter(directory, 4);
+            final var request = new AsyncRequest(chain(InMemoryDirectory.username(0)), "websocket");
+
+            final var authentication = authenticate(filter, request.mock());
+            assertEquals(InMemoryDirectory.username(0), authentication.getName());
+            assertEquals(0, request.asyncStarts());
+
+            filter.destroy();
+        }
+    }
+
+    @Test
+    void testFailedContinuationSendsError(final JenkinsRule rule) throws Exception {
+        try (var directory = new InMemoryDirectory(1, 1)) {
+            LDAPCache.get().invalidate(user -> true);
+            final var filter = asyncFilter(directory, 4);
+            final var request = new AsyncRequest(chain(InMemoryDirectory.username(0)), null);
+            final var status = new AtomicInteger();
+            final var response = ServletMocks.mock(HttpServletResponse.class, (method, args) -> {
+                if (method.equals("sendError")) status.set((Integer) args[0]);
+                return null;
+            });
+
+            filter.doFilter(request.mock(), response, (req, res) -> {
+                throw new ServletException("Failed to serve request");
+            });
+
+            // The failure is not lost on the thread that continued the request.
+            assertTrue(request.awaitCompletion());
+            assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, status.get());
+
+            filter.destroy();
+        }
+    }
+
+    private static ClientCertificateFilter filter(final int authenticationCacheDuration) {
+        return new ClientCertificateFilter(
+                SubjectExtractionPlan.compile(new PKIMapping.Builder().build()),
+                new LDAPMapping.Builder().withSettings(new LDAPSettings.Builder().enabled(false).build()).build(),
+                authenticationCacheDuration,
+                0
+        );
+    }
+
+    private static ClientCertificateFilter asyncFilter(final InMemoryDirectory directory, final int threads) {
+        return new ClientCertificateFilter(
+                SubjectExtractionPlan.compile(new PKIMapping.Builder().build()),
+                directory.mapping(new LDAPSettings.Builder().resilience(new LDAPResilienceSettings.Builder()
+                        .maxConcurrentSearches(threads)
+                        .asyncEnrichment(true)
+                        .build())),
+                0,
+                0
+        );
+    }
+
+    private static X509Certificate[] chain(final String username) throws GeneralSecurityException {
+        final var authority = new CertificateAuthority("CN=Test CA");
+        final var certificate = authority.issue("CN=%s,O=Example".formatted(username), CertificateAuthority.generateKeyPair());
+        return new X509Certificate[]{ certificate, authority.certificate() };
+    }
+
+    private static List<String> groups(final Authentication authentication) {
+        return authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+    }
+
+    /**
+     * Run the given request through the filter, returning the authentication that the rest of the chain sees.
+     */
+    private static Authentication authenticate(final ClientCertificateFilter filter, final ServletRequest request) throws Exception {
+        final var authentication = new AtomicReference<Authentication>();
+        try {
+            filter.doFilter(request, RESPONSE, (req, res) ->
+                    authentication.set(SecurityContextHolder.getContext().getAuthentication()));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+
+        return authentication.get();
+    }
+
+    /**
+     * Run the given suspendable request through the filter, returning the authentication that the rest of the chain
+     * sees once the request has completed - which must be on another thread.
+     */
+    private static Authentication authenticateAsync(final ClientCertificateFilter filter, final AsyncRequest request) throws Exception {
+        final var authentication = new AtomicReference<Authentication>();
+        final var thread = new AtomicReference<Thread>();
+        try {
+            filter.doFilter(request.mock(), RESPONSE, (req, res) -> {
+                authentication.set(SecurityContextHolder.getContext().getAuthentication());
+                thread.set(Thread.currentThread());
+            });
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+
+        assertTrue(request.awaitCompletion());
+        assertNotSame(Thread.currentThread(), thread.get());
+        return authentication.get();
+    }
+
+    /**
+     * A request that carries the given certificate chain, and supports async processing - running
+     * {@link AsyncContext#start started} tasks on a new thread, as a container would on one of its own.
+     */
+    private static final class AsyncRequest {
+
+        private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final AtomicInteger asyncStarts = new AtomicInteger();
+        private final HttpServletRequest request;
+
+        private AsyncRequest(final X509Certificate[] chain, @Nullable final String upgrade) {
+            attributes.put(ServletMocks.X509_CERTIFICATE_ATTRIBUTE, chain);
+
+            final var asyncContext = ServletMocks.mock(AsyncContext.class, (method, args) -> {
+                switch (method) {
+                    case "start" -> new Thread((Runnable) args[0]).start();
+                    case "complete" -> completed.countDown();
+                    default -> { }
+                }
+                return null;
+            });
+
+            request = ServletMocks.mock(HttpServletRequest.class, (method, args) -> switch (method) {
+                case "getAttribute" -> attributes.get((String) args[0]);
+                case "setAttribute" -> attributes.put((String) args[0], args[1]);
+                case "removeAttribute" -> attributes.remove((String) args[0]);
+                case "getDispatcherType" -> DispatcherType.REQUEST;
+                case "getHeader" -> "Upgrade".equals(args[0]) ? upgrade : null;
+                case "getContextPath" -> "";
+                case "isSecure", "isAsyncSupported" -> true;
+                case "isAsyncStarted" -> asyncStarts.get() > 0;
+                case "startAsync" -> {
+                    asyncStarts.incrementAndGet();
+                    yield asyncContext;
+                }
+                default -> null;
+            });
+        }
+
+        private HttpServletRequest mock() {
+            return request;
+        }
+
+        private boolean awaitCompletion() throws InterruptedException {
+            return completed.await(10, TimeUnit.SECONDS);
+        }
+
+        private int asyncStarts() {
+            return asyncStarts.get();
+        }
+
+    }
+
+}
@@ -0,0 +1,37 @@
+package xyz.apollosoftware.jenkins.pki;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.core.Authentication;
+import xyz.apollosoftware.jenkins.pki.services.GroupDictionary;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Benchmarks creating a user's {@link Authentication} token, for users with a few or many groups.
+ */
+@State(Scope.Benchmark)
+public class TokenBenchmark {
+
+    @Param({"5", "200"})
+    public int groups;
+
+    private Set<String> canonicalGroups;
+
+    @Setup
+    public void setUp() {
+        final var names = new HashSet<String>();
+        for (int i = 0; i < groups; i++) names.add("group%d".formatted(i));
+        canonicalGroups = GroupDictionary.get().canonicalize(names);
+    }
+
+    @Benchmark
+    public Authentication createToken() {
+        return ClientCertificateFilter.createToken("foo", canonicalGroups);
+    }
+
+}
@@ -0,0 +1,39 @@
+package xyz.apollosoftware.jenkins.pki.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestAuthenticationMetrics {
+
+    private final AuthenticationMetrics metrics = new AuthenticationMetrics();
+
+    @Test
+    void testMetrics() {
+        metrics.record(AuthenticationMetrics.Stage.LOCATE_X500_SUBJECT, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(2));
+        metrics.increment(AuthenticationMetrics.Event.LDAP_CACHE_HIT);
+        metrics.increment(AuthenticationMetrics.Event.LDAP_CACHE_EVICTION, 3);
+        metrics.anonymous(AuthenticationMetrics.AnonymousReason.MISSING_CERTIFICATE);
+        metrics.gauge("ldapCacheSize", () -> 42);
+
+        final var snapshot = metrics.snapshot();
+        assertEquals(metrics.names(), snapshot.keySet().stream().toList());
+        assertEquals(1, snapshot.get("locateX500Subject.count"));
+        assertTrue(snapshot.get("locateX500Subject.max") >= 2000);
+        assertEquals(0, snapshot.get("request.count"));
+        assertEquals(1, snapshot.get("ldapCacheHit"));
+        assertEquals(3, snapshot.get("ldapCacheEviction"));
+        assertEquals(1, snapshot.get("anonymous.missingCertificate"));
+        assertEquals(42, snapshot.get("ldapCacheSize"));
+        assertNull(metrics.value("unknown"));
+
+        // Resetting the metrics keeps the gauges.
+        metrics.reset();
+        assertEquals(0, metrics.value("locateX500Subject.count"));
+        assertEquals(0, metrics.value("ldapCacheEviction"));
+        assertEquals(42, metrics.value("ldapCacheSize"));
+    }
+
+}
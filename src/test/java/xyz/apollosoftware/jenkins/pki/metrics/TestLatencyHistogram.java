@@ -0,0 +1,51 @@
+package xyz.apollosoftware.jenkins.pki.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestLatencyHistogram {
+
+    @Test
+    void testBuckets() {
+        // Buckets are contiguous, and cover every non-negative long.
+        assertEquals(0, LatencyHistogram.lowerBound(0));
+        for (int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+            assertEquals(LatencyHistogram.upperBound(i - 1) + 1, LatencyHistogram.lowerBound(i));
+            assertEquals(i, LatencyHistogram.index(LatencyHistogram.lowerBound(i)));
+            assertEquals(i, LatencyHistogram.index(LatencyHistogram.upperBound(i)));
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.BUCKETS - 1));
+
+        // Each bucket is within 12.5% of the values it counts.
+        for (final long value : new long[] { 9, 1_000, 123_456, 987_654_321L, Long.MAX_VALUE / 3 }) {
+            final var index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.upperBound(index) - LatencyHistogram.lowerBound(index) <= value / 8);
+        }
+    }
+
+    @Test
+    void testSnapshot() {
+        final var histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().quantile(0.99));
+
+        for (int i = 1; i <= 1000; i++) histogram.record(i * 1000L);
+        histogram.record(-1);
+
+        final var snapshot = histogram.snapshot();
+        assertEquals(1001, snapshot.count());
+        assertEquals(1_000_000, snapshot.max());
+        assertEquals(500_000, snapshot.mean());
+        assertWithin(500_000, snapshot.quantile(0.5));
+        assertWithin(990_000, snapshot.quantile(0.99));
+        assertEquals(1_000_000, snapshot.quantile(1));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().count());
+    }
+
+    private static void assertWithin(final long expected, final long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 8, "%d is not within 12.5%% of %d".formatted(actual, expected));
+    }
+
+}
@@ -0,0 +1,80 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPCacheSettings;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPUser;
+import xyz.apollosoftware.jenkins.pki.struct.PKIUser;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Benchmarks {@link LDAPCache#getOrUpdate(PKIUser, Supplier, int)} for cached users, with 1 to N threads looking up
+ * either a single (hot) user, or users spread across the cache.
+ */
+@State(Scope.Benchmark)
+public class LDAPCacheBenchmark {
+
+    private static final int CACHE_DURATION = 3600;
+
+    @Param({"1", "10000"})
+    public int users;
+
+    private LDAPCache cache;
+    private PKIUser[] pkiUsers;
+    private Supplier<LDAPUser>[] searches;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        cache = new LDAPCache(System::currentTimeMillis, Runnable::run);
+        cache.configure(new LDAPCacheSettings.Builder().maxEntries(users * 2).build());
+
+        pkiUsers = new PKIUser[users];
+        searches = new Supplier[users];
+        for (int i = 0; i < users; i++) {
+            final var username = "user%d".formatted(i);
+            final var ldapUser = new LDAPUser(
+                    "uid=%s,ou=people,dc=example,dc=com".formatted(username),
+                    username,
+                    username,
+                    "%s@example.com".formatted(username),
+                    GroupDictionary.get().canonicalize(Set.of("staff", "group%d".formatted(i % 100)))
+            );
+
+            pkiUsers[i] = new PKIUser.Builder().dn("CN=%s".formatted(username)).username(username).name(username).build();
+            searches[i] = () -> ldapUser;
+            cache.getOrUpdate(pkiUsers[i], searches[i], CACHE_DURATION);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public LDAPUser getOrUpdate1Thread() {
+        return lookUp();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public LDAPUser getOrUpdate4Threads() {
+        return lookUp();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public LDAPUser getOrUpdateMaxThreads() {
+        return lookUp();
+    }
+
+    private LDAPUser lookUp() {
+        final var i = users == 1 ? 0 : ThreadLocalRandom.current().nextInt(users);
+        return cache.getOrUpdate(pkiUsers[i], searches[i], CACHE_DURATION);
+    }
+
+}
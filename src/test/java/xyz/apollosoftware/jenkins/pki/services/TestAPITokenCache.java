@@ -0,0 +1,81 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import org.junit.jupiter.api.Test;
+import xyz.apollosoftware.jenkins.pki.struct.PKIUser;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestAPITokenCache {
+
+    private static final String HEADER = "Basic Zm9vOjExMjIzMzQ0NTU2Njc3ODg5OQ==";
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final APITokenCache cache = new APITokenCache(clock::get);
+
+    @Test
+    void testKeys() {
+        assertEquals(cache.key(HEADER), cache.key(HEADER));
+        assertNotEquals(cache.key(HEADER), cache.key(HEADER + "x"));
+
+        // Headers outside ISO-8859-1 are not cached.
+        assertNull(cache.key("Basic \u0141"));
+
+        // Keys are specific to each cache (and so each Jenkins process).
+        assertNotEquals(cache.key(HEADER), new APITokenCache(clock::get).key(HEADER));
+    }
+
+    @Test
+    void testCacheHit() {
+        final var key = cache.key(HEADER);
+        assertNull(cache.lookup(key));
+
+        cache.put(key, "foo", pkiUser("foo"));
+        assertEquals("foo", cache.lookup(cache.key(HEADER)).username());
+        assertNull(cache.lookup(cache.key(HEADER + "x")));
+    }
+
+    @Test
+    void testCacheExpiry() {
+        final var key = cache.key(HEADER);
+        cache.put(key, "foo", pkiUser("foo"));
+
+        clock.addAndGet(APITokenCache.CACHE_DURATION * 1000L + 1);
+        assertNull(cache.lookup(key));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testInvalidate() {
+        cache.put(cache.key(HEADER), "foo", pkiUser("foo"));
+        cache.put(cache.key(HEADER + "x"), "bar", pkiUser("bar"));
+
+        cache.invalidate("foo");
+        assertNull(cache.lookup(cache.key(HEADER)));
+        assertNotNull(cache.lookup(cache.key(HEADER + "x")));
+    }
+
+    @Test
+    void testEvictionTrimsBelowMaximum() {
+        for (int i = 0; i <= APITokenCache.MAX_ENTRIES; i++) {
+            cache.put(cache.key(HEADER + i), "user" + i, pkiUser("user" + i));
+        }
+
+        // The cache is trimmed below its maximum, so that the next insertions do not each evict again.
+        assertTrue(cache.size() < APITokenCache.MAX_ENTRIES);
+        final var size = cache.size();
+        cache.put(cache.key(HEADER + "x"), "foo", pkiUser("foo"));
+        assertEquals(size + 1, cache.size());
+    }
+
+    private static PKIUser pkiUser(final String username) {
+        return new PKIUser.Builder()
+                .dn("CN=%s".formatted(username))
+                .username(username)
+                .name(username)
+                .build();
+    }
+
+}
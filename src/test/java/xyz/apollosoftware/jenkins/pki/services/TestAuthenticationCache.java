@@ -0,0 +1,82 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import xyz.apollosoftware.jenkins.pki.CertificateAuthority;
+import xyz.apollosoftware.jenkins.pki.struct.PKIUser;
+
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestAuthenticationCache {
+
+    private static X509Certificate certificate;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AuthenticationCache cache = new AuthenticationCache(clock::get);
+
+    @BeforeAll
+    static void setUpCertificate() throws GeneralSecurityException {
+        certificate = new CertificateAuthority("CN=Test CA").certificate();
+    }
+
+    @Test
+    void testLookup() {
+        final var key = new AuthenticationCache.Key("aa", 1);
+        cache.put(key, certificate, cached("foo"), 30);
+
+        assertEquals("foo", cache.lookup(key).authentication().getName());
+        assertNull(cache.lookup(new AuthenticationCache.Key("bb", 1)));
+
+        // Entries are scoped to the realm configuration they were created with.
+        assertNull(cache.lookup(new AuthenticationCache.Key("aa", 2)));
+    }
+
+    @Test
+    void testExpiry() {
+        final var key = new AuthenticationCache.Key("aa", 1);
+        cache.put(key, certificate, cached("foo"), 30);
+
+        clock.addAndGet(30_001);
+        assertNull(cache.lookup(key));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testEvictionTrimsBelowMaximum() {
+        for (int i = 0; i <= AuthenticationCache.MAX_ENTRIES; i++) {
+            cache.put(new AuthenticationCache.Key(Integer.toHexString(i), 1), certificate, cached("user" + i), 30);
+        }
+
+        // The cache is trimmed below its maximum, so that the next insertions do not each evict again.
+        assertTrue(cache.size() < AuthenticationCache.MAX_ENTRIES);
+        final var size = cache.size();
+        cache.put(new AuthenticationCache.Key("new", 1), certificate, cached("new"), 30);
+        assertEquals(size + 1, cache.size());
+    }
+
+    @Test
+    void testEvictionDropsOldConfigurationsFirst() {
+        for (int i = 0; i < AuthenticationCache.MAX_ENTRIES; i++) {
+            cache.put(new AuthenticationCache.Key(Integer.toHexString(i), 1), certificate, cached("user" + i), 30);
+        }
+
+        final var key = new AuthenticationCache.Key("current", 2);
+        cache.put(key, certificate, cached("current"), 30);
+
+        assertEquals(1, cache.size());
+        assertNotNull(cache.lookup(key));
+    }
+
+    private static AuthenticationCache.CachedAuthentication cached(final String username) {
+        return new AuthenticationCache.CachedAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null),
+                new PKIUser.Builder().dn("CN=%s".formatted(username)).username(username).name(username).build()
+        );
+    }
+
+}
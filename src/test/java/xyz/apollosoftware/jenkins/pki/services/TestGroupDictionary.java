@@ -0,0 +1,58 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import hudson.security.SecurityRealm;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestGroupDictionary {
+
+    private final GroupDictionary dictionary = new GroupDictionary();
+
+    @Test
+    void testIntern() {
+        final var name = dictionary.intern(new String("staff"));
+        assertSame(name, dictionary.intern(new String("staff")));
+    }
+
+    @Test
+    void testCanonicalize() {
+        final var canonical = dictionary.canonicalize(new HashSet<>(Set.of("staff", "admins")));
+
+        assertEquals(Set.of("staff", "admins"), canonical);
+        assertSame(canonical, dictionary.canonicalize(Set.of("admins", "staff")));
+        assertNotSame(canonical, dictionary.canonicalize(Set.of("staff")));
+        assertThrows(UnsupportedOperationException.class, () -> canonical.add("users"));
+
+        assertEquals(Set.of(), dictionary.canonicalize(null));
+    }
+
+    @Test
+    void testCanonicalGroupNamesAreInterned() {
+        final var canonical = dictionary.canonicalize(Set.of(new String("staff")));
+        assertSame(dictionary.intern("staff"), canonical.iterator().next());
+    }
+
+    @Test
+    void testAuthorities() {
+        final var authorities = dictionary.authorities(Set.of("staff", "admins"));
+
+        assertEquals(
+            Set.of("staff", "admins", SecurityRealm.AUTHENTICATED_AUTHORITY2.getAuthority()),
+            authorities.stream().map(GrantedAuthority::getAuthority).collect(Collectors.toSet())
+        );
+        assertSame(authorities, dictionary.authorities(new HashSet<>(Set.of("admins", "staff"))));
+
+        // Authorities for each group are shared between sets.
+        final var staff = dictionary.authorities(Set.of("staff")).stream()
+                .filter(authority -> authority.getAuthority().equals("staff"))
+                .findFirst().orElseThrow();
+        assertTrue(authorities.stream().anyMatch(authority -> authority == staff));
+    }
+
+}
@@ -0,0 +1,98 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import org.junit.jupiter.api.Test;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestGroupGraph {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final Map<String, Set<String>> parents = new HashMap<>();
+
+    private final GroupGraph graph = new GroupGraph(clock::get);
+
+    @Test
+    void testExpandsNestedGroups() {
+        parents.put("developers", Set.of("engineering"));
+        parents.put("engineering", Set.of("staff"));
+
+        assertEquals(Set.of("developers", "engineering", "staff"), expand(5, 30, "developers"));
+    }
+
+    @Test
+    void testCycleTerminates() {
+        parents.put("a", Set.of("b"));
+        parents.put("b", Set.of("c"));
+        parents.put("c", Set.of("a"));
+
+        assertEquals(Set.of("a", "b", "c"), expand(32, 30, "a"));
+        assertEquals(3, fetches.get());
+    }
+
+    @Test
+    void testDepthLimit() {
+        parents.put("a", Set.of("b"));
+        parents.put("b", Set.of("c"));
+        parents.put("c", Set.of("d"));
+
+        assertEquals(Set.of("a", "b", "c"), expand(2, 30, "a"));
+    }
+
+    @Test
+    void testParentsAreShared() {
+        parents.put("developers", Set.of("staff"));
+        parents.put("designers", Set.of("staff"));
+
+        expand(5, 30, "developers");
+        expand(5, 30, "developers", "designers");
+
+        // developers, staff, then only designers.
+        assertEquals(3, fetches.get());
+        assertEquals(3, graph.size());
+    }
+
+    @Test
+    void testParentsExpire() {
+        parents.put("developers", Set.of("staff"));
+
+        expand(5, 30, "developers");
+        clock.addAndGet(30_001);
+        expand(5, 30, "developers");
+
+        assertEquals(4, fetches.get());
+    }
+
+    private Set<String> expand(final int maxDepth, final int cacheDuration, final String... names) {
+        final var groups = Set.of(names).stream().map(TestGroupGraph::group).collect(Collectors.toSet());
+        final Function<GroupGraph.Group, Set<GroupGraph.Group>> fetchParents = group -> {
+            fetches.incrementAndGet();
+            return parents.getOrDefault(group.name(), Set.of()).stream()
+                    .map(TestGroupGraph::group)
+                    .collect(Collectors.toSet());
+        };
+
+        return graph.expand(groups, maxDepth, cacheDuration, fetchParents).stream()
+                .map(GroupGraph.Group::name)
+                .collect(Collectors.toSet());
+    }
+
+    private static GroupGraph.Group group(final String name) {
+        try {
+            return new GroupGraph.Group(new LdapName("CN=%s,OU=groups".formatted(name)), name);
+        } catch (InvalidNameException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import org.junit.jupiter.api.Test;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPSettings;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestGroupMembershipIndex {
+
+    private static final String ALICE = "CN=Alice,OU=people,O=Example";
+
+    @Test
+    void testDirectMemberships() {
+        final var builder = new GroupMembershipIndex.Snapshot.Builder(null);
+        builder.add(group("developers", null, ALICE));
+        builder.add(group("designers", null, "CN=Bob,OU=people,O=Example"));
+        final var snapshot = builder.build(0);
+
+        assertEquals(Set.of("developers"), snapshot.groupsOf(LDAPDirectory.normalizeDN(ALICE), 0));
+        assertEquals(Set.of(), snapshot.groupsOf(LDAPDirectory.normalizeDN("CN=Carol,OU=people,O=Example"), 0));
+    }
+
+    @Test
+    void testEquivalentDNsMatch() {
+        final var builder = new GroupMembershipIndex.Snapshot.Builder(null);
+        builder.add(group("developers", null, "cn=alice, ou=People, o=example"));
+        final var snapshot = builder.build(0);
+
+        assertEquals(Set.of("developers"), snapshot.groupsOf(LDAPDirectory.normalizeDN(ALICE), 0));
+    }
+
+    @Test
+    void testNestedMemberships() {
+        final var builder = new GroupMembershipIndex.Snapshot.Builder(null);
+        builder.add(group("developers", null, ALICE));
+        builder.add(group("engineering", null, dn("developers")));
+        builder.add(group("staff", null, dn("engineering")));
+        builder.add(group("developers-cycle", null, dn("staff")));
+        builder.add(group("developers", null, ALICE, dn("developers-cycle")));
+        final var snapshot = builder.build(0);
+
+        final var alice = LDAPDirectory.normalizeDN(ALICE);
+        assertEquals(Set.of("developers"), snapshot.groupsOf(alice, 0));
+        assertEquals(Set.of("developers", "engineering"), snapshot.groupsOf(alice, 1));
+        assertEquals(Set.of("developers", "engineering", "staff", "developers-cycle"), snapshot.groupsOf(alice, 32));
+    }
+
+    @Test
+    void testIncrementalUpdate() {
+        final var builder = new GroupMembershipIndex.Snapshot.Builder(null);
+        builder.add(group("developers", "20250101000000Z", ALICE));
+        builder.add(group("designers", "20250102000000Z", ALICE));
+        final var snapshot = builder.build(0);
+
+        // Alice is removed from the developers group.
+        final var update = new GroupMembershipIndex.Snapshot.Builder(snapshot);
+        update.add(group("developers", "20250103000000Z"));
+        final var updated = update.build(0);
+
+        final var alice = LDAPDirectory.normalizeDN(ALICE);
+        assertEquals(Set.of("developers", "designers"), snapshot.groupsOf(alice, 0));
+        assertEquals(Set.of("designers"), updated.groupsOf(alice, 0));
+    }
+
+    @Test
+    void testGroupMemberAttributes() {
+        assertEquals(List.of("uniqueMember", "member"), LDAPDirectory.groupMemberAttributes(LDAPSettings.FALLBACK_GROUP_SEARCH_FILTER));
+        assertEquals(List.of("member"), LDAPDirectory.groupMemberAttributes("member={0}"));
+        assertEquals(List.of("member"), LDAPDirectory.groupMemberAttributes("(&(objectClass=group)(!(cn=disabled))(|(member={0})(Member={0})))"));
+
+        // Filters that cannot be turned into a search for groups with any member.
+        assertNull(LDAPDirectory.groupMemberAttributes("(objectClass=group)"));
+        assertNull(LDAPDirectory.groupMemberAttributes("(&(objectClass=group)(!(member={0})))"));
+        assertNull(LDAPDirectory.groupMemberAttributes("(member:1.2.840.113556.1.4.1941:={0})"));
+        assertNull(LDAPDirectory.groupMemberAttributes("(|(member={0})(owner=*{0}*))"));
+    }
+
+    private static LDAPDirectory.GroupEntry group(final String name, final String modifyTimestamp, final String... members) {
+        return new LDAPDirectory.GroupEntry(dn(name), name, List.of(members), modifyTimestamp);
+    }
+
+    private static String dn(final String group) {
+        return "CN=%s,OU=groups,O=Example".formatted(group);
+    }
+
+}
@@ -0,0 +1,88 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestIdentityCookie {
+
+    private static final String FINGERPRINT = "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff";
+
+    private static final IdentityCookie.Identity IDENTITY = new IdentityCookie.Identity("foo", Set.of("staff", "admins"));
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final IdentityCookie identityCookie = new IdentityCookie(60, clock::get, new byte[32]);
+
+    @Test
+    void testRoundTrip() {
+        final var value = identityCookie.encode(IDENTITY, FINGERPRINT, 60_000L);
+        final var identity = Objects.requireNonNull(identityCookie.decode(value, FINGERPRINT));
+        assertEquals(IDENTITY, identity);
+
+        // Decoded groups are canonicalized.
+        assertSame(GroupDictionary.get().canonicalize(IDENTITY.groups()), identity.groups());
+    }
+
+    @Test
+    void testFingerprintBinding() {
+        final var value = identityCookie.encode(IDENTITY, FINGERPRINT, 60_000L);
+        assertNull(identityCookie.decode(value, FINGERPRINT.replace('0', '1')));
+    }
+
+    @Test
+    void testExpiry() {
+        final var value = identityCookie.encode(IDENTITY, FINGERPRINT, 60_000L);
+
+        clock.set(60_000L);
+        assertNotNull(identityCookie.decode(value, FINGERPRINT));
+
+        clock.set(60_001L);
+        assertNull(identityCookie.decode(value, FINGERPRINT));
+    }
+
+    @Test
+    void testSignature() {
+        final var value = Objects.requireNonNull(identityCookie.encode(IDENTITY, FINGERPRINT, 60_000L));
+
+        // Cookies signed with another key (i.e., by another realm configuration) are rejected.
+        final var secret = new byte[32];
+        secret[0] = 1;
+        assertNull(new IdentityCookie(60, clock::get, secret).decode(value, FINGERPRINT));
+
+        // Tampered cookies are rejected.
+        final var separator = value.indexOf('.');
+        final var forged = identityCookie.encode(new IdentityCookie.Identity("foo", Set.of("root")), FINGERPRINT, 60_000L);
+        assertNull(identityCookie.decode(
+            Objects.requireNonNull(forged).substring(0, forged.indexOf('.')) + value.substring(separator),
+            FINGERPRINT
+        ));
+    }
+
+    @Test
+    void testMalformed() {
+        assertNull(identityCookie.decode(null, FINGERPRINT));
+        assertNull(identityCookie.decode("", FINGERPRINT));
+        assertNull(identityCookie.decode("no-separator", FINGERPRINT));
+        assertNull(identityCookie.decode("!!!.!!!", FINGERPRINT));
+    }
+
+    @Test
+    void testMaximumLength() {
+        final var groups = Set.of("g".repeat(IdentityCookie.MAX_LENGTH));
+        assertNull(identityCookie.encode(new IdentityCookie.Identity("foo", groups), FINGERPRINT, 60_000L));
+    }
+
+    @Test
+    void testNormalizeDuration() {
+        assertEquals(IdentityCookie.DURATION_DEFAULT, IdentityCookie.normalizeDuration(null));
+        assertEquals(IdentityCookie.DURATION_DEFAULT, IdentityCookie.normalizeDuration(-1));
+        assertEquals(600, IdentityCookie.normalizeDuration(600));
+        assertEquals(IdentityCookie.DURATION_MAX, IdentityCookie.normalizeDuration(Integer.MAX_VALUE));
+    }
+
+}
@@ -0,0 +1,321 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPCacheSettings;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPUser;
+import xyz.apollosoftware.jenkins.pki.struct.PKIUser;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestLDAPCache {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger searches = new AtomicInteger();
+
+    private LDAPCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new LDAPCache(clock::get, Runnable::run);
+        cache.configure(settings().build());
+    }
+
+    @Test
+    void testCacheHit() {
+        final var pkiUser = pkiUser("foo");
+
+        assertEquals("CN=foo,OU=people", cache.getOrUpdate(pkiUser, search("foo"), 30).dn());
+        assertEquals("CN=foo,OU=people", cache.getOrUpdate(pkiUser, search("foo"), 30).dn());
+        assertEquals(1, searches.get());
+    }
+
+    @Test
+    void testCacheExpiry() {
+        final var pkiUser = pkiUser("foo");
+
+        cache.getOrUpdate(pkiUser, search("foo"), 30);
+        clock.addAndGet(30_001);
+        cache.getOrUpdate(pkiUser, search("foo"), 30);
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void testRemoveExpiredEntries() {
+        cache.getOrUpdate(pkiUser("foo"), search("foo"), 30);
+        cache.getOrUpdate(pkiUser("bar"), search("bar"), 60);
+
+        clock.addAndGet(30_001);
+        cache.removeExpiredEntries();
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testDistinctIdentities() {
+        cache.getOrUpdate(pkiUser("foo"), search("foo"), 30);
+        assertEquals("CN=bar,OU=people", cache.getOrUpdate(pkiUser("bar"), search("bar"), 30).dn());
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void testFailedSearchIsNotCached() {
+        cache.configure(settings().negativeDuration(0).build());
+        final var pkiUser = pkiUser("foo");
+
+        assertThrows(IllegalStateException.class, () -> cache.getOrUpdate(pkiUser, () -> {
+            throw new IllegalStateException("directory unavailable");
+        }, 30));
+
+        assertEquals(0, cache.size());
+        assertEquals("CN=foo,OU=people", cache.getOrUpdate(pkiUser, search("foo"), 30).dn());
+    }
+
+    @Test
+    void testNegativeCaching() {
+        cache.configure(settings().negativeDuration(10).build());
+        final var pkiUser = pkiUser("foo");
+        final Supplier<LDAPUser> notFound = () -> {
+            searches.incrementAndGet();
+            throw new UsernameNotFoundException("User could not be found in LDAP");
+        };
+
+        final var first = assertThrows(UsernameNotFoundException.class, () -> cache.getOrUpdate(pkiUser, notFound, 30));
+        final var second = assertThrows(UsernameNotFoundException.class, () -> cache.getOrUpdate(pkiUser, notFound, 30));
+        assertEquals(1, searches.get());
+        assertEquals(1, cache.failureCount());
+
+        // Each hit is thrown its own exception.
+        assertNotSame(first, second);
+        assertEquals(first.getMessage(), second.getMessage());
+
+        clock.addAndGet(10_001);
+        assertEquals("CN=foo,OU=people", cache.getOrUpdate(pkiUser, search("foo"), 30).dn());
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void testTransientFailureIsNotNegativelyCached() {
+        cache.configure(settings().negativeDuration(10).build());
+        final var pkiUser = pkiUser("foo");
+
+        assertThrows(IllegalStateException.class, () -> cache.getOrUpdate(pkiUser, () -> {
+            throw new IllegalStateException("LDAP response read timed out");
+        }, 30));
+
+        assertEquals(0, cache.failureCount());
+        assertEquals("CN=foo,OU=people", cache.getOrUpdate(pkiUser, search("foo"), 30).dn());
+    }
+
+    @Test
+    void testRejectedSearchIsNotNegativelyCached() {
+        cache.configure(settings().negativeDuration(10).build());
+        final var pkiUser = pkiUser("foo");
+
+        assertThrows(LDAPUnavailableException.class, () -> cache.getOrUpdate(pkiUser, () -> {
+            throw new LDAPUnavailableException("LDAP circuit breaker is open");
+        }, 30));
+
+        assertEquals(0, cache.failureCount());
+        assertEquals("CN=foo,OU=people", cache.getOrUpdate(pkiUser, search("foo"), 30).dn());
+    }
+
+    @Test
+    void testNegativeCacheLimit() {
+        cache.configure(settings().negativeDuration(10).negativeMaxEntries(2).build());
+
+        for (int i = 0; i < 3; i++) {
+            final var pkiUser = pkiUser("user" + i);
+            assertThrows(UsernameNotFoundException.class, () -> cache.getOrUpdate(pkiUser, () -> {
+                throw new UsernameNotFoundException("User could not be found in LDAP");
+            }, 30));
+        }
+
+        assertEquals(2, cache.failureCount());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        cache.configure(settings().maxEntries(10).build());
+
+        for (int i = 0; i < 10; i++) {
+            clock.incrementAndGet();
+            cache.getOrUpdate(pkiUser("user" + i), search("user" + i), 30);
+        }
+
+        // Touch the first user, so it is the most recently used.
+        clock.incrementAndGet();
+        cache.getOrUpdate(pkiUser("user0"), search("user0"), 30);
+
+        clock.incrementAndGet();
+        cache.getOrUpdate(pkiUser("user10"), search("user10"), 30);
+
+        assertEquals(9, cache.size());
+        assertTrue(cache.weight() > 0);
+
+        searches.set(0);
+        cache.getOrUpdate(pkiUser("user0"), search("user0"), 30);
+        assertEquals(0, searches.get());
+        cache.getOrUpdate(pkiUser("user1"), search("user1"), 30);
+        assertEquals(1, searches.get());
+    }
+
+    @Test
+    void testRefreshAhead() {
+        cache.configure(settings().refreshAhead(50).build());
+        final var pkiUser = pkiUser("foo");
+
+        cache.getOrUpdate(pkiUser, search("foo"), 30);
+        clock.addAndGet(15_000);
+
+        // The entry is served (and refreshed) once it has been cached for half of its duration.
+        assertEquals("CN=foo,OU=people", cache.getOrUpdate(pkiUser, search("foo"), 30).dn());
+        assertEquals(2, searches.get());
+
+        // The refreshed entry is served until it is due to be refreshed again.
+        clock.addAndGet(14_000);
+        cache.getOrUpdate(pkiUser, search("foo"), 30);
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void testRefreshMissRemovesEntry() {
+        cache.configure(settings().refreshAhead(50).negativeDuration(10).build());
+        final var pkiUser = pkiUser("foo");
+
+        cache.getOrUpdate(pkiUser, search("foo"), 30);
+        clock.addAndGet(15_000);
+
+        // The user has been removed from the directory, so the entry is dropped once the refresh fails to find them.
+        cache.getOrUpdate(pkiUser, () -> {
+            throw new UsernameNotFoundException("User could not be found in LDAP");
+        }, 30);
+        assertFalse(cache.contains(pkiUser));
+        assertEquals(1, cache.failureCount());
+        assertThrows(UsernameNotFoundException.class, () -> cache.getOrUpdate(pkiUser, search("foo"), 30));
+    }
+
+    @Test
+    void testFailedRefreshBacksOff() {
+        cache.configure(settings().refreshAhead(50).build());
+        final var pkiUser = pkiUser("foo");
+        final Supplier<LDAPUser> unavailable = () -> {
+            searches.incrementAndGet();
+            throw new IllegalStateException("directory unavailable");
+        };
+
+        cache.getOrUpdate(pkiUser, search("foo"), 30);
+        clock.addAndGet(15_000);
+
+        // The cached user is still served, but the refresh is not retried on every access.
+        assertEquals("CN=foo,OU=people", cache.getOrUpdate(pkiUser, unavailable, 30).dn());
+        cache.getOrUpdate(pkiUser, unavailable, 30);
+        assertEquals(2, searches.get());
+
+        clock.addAndGet(1_000);
+        cache.getOrUpdate(pkiUser, unavailable, 30);
+        assertEquals(3, searches.get());
+
+        // The delay doubles after each consecutive failure.
+        clock.addAndGet(1_000);
+        cache.getOrUpdate(pkiUser, unavailable, 30);
+        assertEquals(3, searches.get());
+
+        clock.addAndGet(1_000);
+        cache.getOrUpdate(pkiUser, search("foo"), 30);
+        assertEquals(4, searches.get());
+    }
+
+    @Test
+    void testStaleGrace() {
+        cache.configure(settings().staleGrace(10).build());
+        final var pkiUser = pkiUser("foo");
+
+        cache.getOrUpdate(pkiUser, () -> {
+            searches.incrementAndGet();
+            return new LDAPUser("CN=foo,OU=people", "foo", "Old Name", null, null);
+        }, 30);
+
+        // The expired entry is served while it is refreshed.
+        clock.addAndGet(35_000);
+        assertEquals("Old Name", cache.getOrUpdate(pkiUser, search("foo"), 30).name());
+        assertEquals("foo", cache.getOrUpdate(pkiUser, search("foo"), 30).name());
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void testJitterShortensDuration() {
+        cache.configure(settings().jitter(50).build());
+
+        for (int i = 0; i < 100; i++) {
+            cache.getOrUpdate(pkiUser("user" + i), search("user" + i), 30);
+        }
+
+        clock.addAndGet(30_001);
+        cache.removeExpiredEntries();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testPut() {
+        final var pkiUser = pkiUser("foo");
+
+        assertTrue(cache.put(pkiUser, new LDAPUser("CN=foo,OU=people", "foo", "Warm", null, null), 30));
+        assertTrue(cache.contains(pkiUser));
+        assertEquals("Warm", cache.getOrUpdate(pkiUser, search("foo"), 30).name());
+        assertEquals(0, searches.get());
+
+        // An existing entry is never replaced.
+        assertFalse(cache.put(pkiUser, new LDAPUser("CN=foo,OU=people", "foo", "Warmer", null, null), 30));
+        assertEquals("Warm", cache.getOrUpdate(pkiUser, search("foo"), 30).name());
+    }
+
+    @Test
+    void testIsCached() {
+        cache.configure(settings().negativeDuration(10).build());
+        final var foo = pkiUser("foo");
+        final var bar = pkiUser("bar");
+
+        assertFalse(cache.isCached(foo, 30));
+        cache.getOrUpdate(foo, search("foo"), 30);
+        assertTrue(cache.isCached(foo, 30));
+
+        assertThrows(UsernameNotFoundException.class, () -> cache.getOrUpdate(bar, () -> {
+            throw new UsernameNotFoundException("User could not be found in LDAP");
+        }, 30));
+        assertTrue(cache.isCached(bar, 30));
+
+        // Neither the expired entry nor the expired failure can be served.
+        clock.addAndGet(30_001);
+        assertFalse(cache.isCached(foo, 30));
+        assertFalse(cache.isCached(bar, 30));
+    }
+
+    private static LDAPCacheSettings.Builder settings() {
+        return new LDAPCacheSettings.Builder()
+                .refreshAhead(0)
+                .staleGrace(0)
+                .jitter(0);
+    }
+
+    private static PKIUser pkiUser(final String username) {
+        return new PKIUser.Builder()
+                .dn("CN=%s".formatted(username))
+                .username(username)
+                .name(username)
+                .build();
+    }
+
+    private Supplier<LDAPUser> search(final String username) {
+        return () -> {
+            searches.incrementAndGet();
+            return new LDAPUser("CN=%s,OU=people".formatted(username), username, username, null, Set.of("staff"));
+        };
+    }
+
+}
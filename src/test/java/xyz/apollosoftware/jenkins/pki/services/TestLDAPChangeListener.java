@@ -0,0 +1,128 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import xyz.apollosoftware.jenkins.pki.InMemoryDirectory;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPCacheSettings;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPMapping;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPSettings;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPUser;
+import xyz.apollosoftware.jenkins.pki.struct.PKIUser;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static xyz.apollosoftware.jenkins.pki.InMemoryDirectory.groupDN;
+import static xyz.apollosoftware.jenkins.pki.InMemoryDirectory.groupName;
+import static xyz.apollosoftware.jenkins.pki.InMemoryDirectory.userDN;
+import static xyz.apollosoftware.jenkins.pki.InMemoryDirectory.username;
+
+class TestLDAPChangeListener {
+
+    private static final String ALICE = username(0);
+    private static final String BOB = username(1);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private InMemoryDirectory server;
+    private LDAPDirectory directory;
+    private LDAPMapping mapping;
+    private LDAPCache cache;
+    private LDAPChangeListener listener;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Alice is a member of group0, and Bob of group1.
+        server = new InMemoryDirectory(2, 2);
+        mapping = server.mapping(new LDAPSettings.Builder());
+
+        directory = new LDAPDirectory(mapping.settings());
+        cache = new LDAPCache(clock::get, Runnable::run);
+        cache.configure(new LDAPCacheSettings.Builder().refreshAhead(0).staleGrace(0).jitter(0).build());
+        listener = new LDAPChangeListener(directory, mapping.settings(), cache);
+
+        // The first poll reads every entry (as they were all just created), which sets the watermarks.
+        listener.poll();
+
+        lookUp(ALICE);
+        lookUp(BOB);
+    }
+
+    @AfterEach
+    void tearDown() {
+        directory.close();
+        server.close();
+    }
+
+    @Test
+    void testGroupChangeInvalidatesMembers() throws Exception {
+        assertEquals(Set.of(groupName(0)), cache.getOrUpdate(pkiUser(ALICE), () -> fail("cached"), 3600).groups());
+
+        server.modify(groupDN(groupName(0)), new Modification(ModificationType.REPLACE, "member", userDN(BOB)));
+        listener.poll();
+
+        // Alice was cached as a member of the group, and Bob is now a member of it.
+        assertFalse(cache.contains(pkiUser(ALICE)));
+        assertFalse(cache.contains(pkiUser(BOB)));
+        assertEquals(Set.of(), lookUp(ALICE).groups());
+        assertEquals(Set.of(groupName(0), groupName(1)), lookUp(BOB).groups());
+    }
+
+    @Test
+    void testUserChangeInvalidatesUser() throws Exception {
+        server.modify(userDN(BOB), new Modification(ModificationType.REPLACE, "mail", "robert@example.com"));
+        listener.poll();
+
+        assertTrue(cache.contains(pkiUser(ALICE)));
+        assertFalse(cache.contains(pkiUser(BOB)));
+        assertEquals("robert@example.com", lookUp(BOB).email());
+    }
+
+    @Test
+    void testUnchangedEntriesAreNotInvalidated() {
+        listener.poll();
+
+        assertTrue(cache.contains(pkiUser(ALICE)));
+        assertTrue(cache.contains(pkiUser(BOB)));
+    }
+
+    @Test
+    void testDeletedUserIsInvalidated() throws Exception {
+        server.delete(userDN(BOB));
+        listener.poll();
+
+        assertTrue(cache.contains(pkiUser(ALICE)));
+        assertFalse(cache.contains(pkiUser(BOB)));
+    }
+
+    @Test
+    void testWatermarkComparesInstants() {
+        final var watermark = new LDAPChangeListener.Watermark("20250101000000Z");
+
+        // The same instant, with fractional seconds or an offset, does not advance the watermark.
+        assertTrue(watermark.advance("cn=a", "20250101000000.0Z", 1));
+        assertFalse(watermark.advance("cn=a", "20250101010000+0100", 1));
+        assertEquals("20250101000000Z", watermark.value());
+
+        assertTrue(watermark.advance("cn=b", "20250101000000.5Z", 2));
+        assertEquals("20250101000000.5Z", watermark.value());
+    }
+
+    private LDAPUser lookUp(final String username) {
+        final var pkiUser = pkiUser(username);
+        return cache.getOrUpdate(pkiUser, () -> directory.searchUser(mapping, pkiUser), 3600);
+    }
+
+    private static PKIUser pkiUser(final String username) {
+        return new PKIUser.Builder()
+                .dn("CN=%s".formatted(username))
+                .username(username)
+                .name(username)
+                .build();
+    }
+
+}
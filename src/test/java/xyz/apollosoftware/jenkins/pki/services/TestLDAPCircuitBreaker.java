@@ -0,0 +1,168 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ldap.CommunicationException;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPResilienceSettings;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestLDAPCircuitBreaker {
+
+    private static final LDAPResilienceSettings SETTINGS =
+        new LDAPResilienceSettings.Builder().failureThreshold(3).openDuration(30).maxConcurrentSearches(1).build();
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger searches = new AtomicInteger();
+
+    private final LDAPCircuitBreaker breaker = new LDAPCircuitBreaker(SETTINGS, clock::get);
+
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        for (int i = 0; i < 3; i++) {
+            assertThrows(CommunicationException.class, () -> breaker.execute(unavailable()));
+        }
+
+        assertTrue(breaker.isOpen());
+        assertThrows(LDAPUnavailableException.class, () -> breaker.execute(available()));
+        assertEquals(3, searches.get());
+    }
+
+    @Test
+    void testSuccessResetsFailures() {
+        for (int i = 0; i < 2; i++) {
+            assertThrows(CommunicationException.class, () -> breaker.execute(unavailable()));
+        }
+        breaker.execute(available());
+        assertThrows(CommunicationException.class, () -> breaker.execute(unavailable()));
+
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    void testDirectoryErrorsAreNotFailures() {
+        for (int i = 0; i < 5; i++) {
+            assertThrows(UsernameNotFoundException.class, () -> breaker.execute(() -> {
+                throw new UsernameNotFoundException("User could not be found in LDAP");
+            }));
+        }
+
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    void testTrialSearchClosesCircuit() {
+        open();
+
+        clock.addAndGet(30_000);
+        assertEquals("ok", breaker.execute(available()));
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    void testFailedTrialSearchReopensCircuit() {
+        open();
+
+        clock.addAndGet(30_000);
+        assertThrows(CommunicationException.class, () -> breaker.execute(unavailable()));
+        assertTrue(breaker.isOpen());
+
+        searches.set(0);
+        clock.addAndGet(29_999);
+        assertThrows(LDAPUnavailableException.class, () -> breaker.execute(available()));
+        assertEquals(0, searches.get());
+    }
+
+    @Test
+    void testBulkheadQueuesBurstOfSearches() throws Exception {
+        final var threads = new ArrayList<Thread>();
+        final var succeeded = new AtomicInteger();
+        final var start = new CountDownLatch(1);
+
+        for (int i = 0; i < 8; i++) {
+            final var thread = new Thread(() -> {
+                try {
+                    start.await();
+                    breaker.execute(() -> {
+                        try {
+                            Thread.sleep(20);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return "ok";
+                    });
+                    succeeded.incrementAndGet();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // Only one search can be made at once, so the others wait (well beyond 100ms) for it.
+        start.countDown();
+        for (final var thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(8, succeeded.get());
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    void testBulkheadRejectsExcessSearches() throws Exception {
+        final var breaker = new LDAPCircuitBreaker(SETTINGS, clock::get, 100);
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var thread = new Thread(() -> breaker.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return "ok";
+        }));
+        thread.start();
+
+        try {
+            started.await();
+            assertThrows(LDAPUnavailableException.class, () -> breaker.execute(available()));
+        } finally {
+            release.countDown();
+            thread.join();
+        }
+
+        assertEquals("ok", breaker.execute(available()));
+        assertFalse(breaker.isOpen());
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            assertThrows(CommunicationException.class, () -> breaker.execute(unavailable()));
+        }
+        assertTrue(breaker.isOpen());
+    }
+
+    private Supplier<String> available() {
+        return () -> {
+            searches.incrementAndGet();
+            return "ok";
+        };
+    }
+
+    private Supplier<String> unavailable() {
+        return () -> {
+            searches.incrementAndGet();
+            throw new CommunicationException(new javax.naming.CommunicationException("Connection refused"));
+        };
+    }
+
+}
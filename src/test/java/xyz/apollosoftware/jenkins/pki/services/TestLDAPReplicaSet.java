@@ -0,0 +1,179 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ldap.CommunicationException;
+import org.springframework.ldap.UncategorizedLdapException;
+import org.springframework.ldap.core.AttributesMapper;
+import org.springframework.ldap.query.SearchScope;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import xyz.apollosoftware.jenkins.pki.InMemoryDirectory;
+import xyz.apollosoftware.jenkins.pki.struct.LDAPSettings;
+
+import javax.naming.NamingException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.ldap.query.LdapQueryBuilder.query;
+
+class TestLDAPReplicaSet {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private InMemoryDirectory server;
+    private LDAPReplicaSet replicas;
+    private LDAPReplica unreachable;
+    private LDAPReplica reachable;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new InMemoryDirectory(0, 0);
+
+        // A port that nothing is listening on.
+        final int closedPort;
+        try (var socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+
+        final var url = "ldap://localhost:%d %s".formatted(closedPort, server.url());
+        replicas = new LDAPReplicaSet(settings(url), clock::get);
+        unreachable = replicas.replicas().get(0);
+        reachable = replicas.replicas().get(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        replicas.close();
+        server.close();
+    }
+
+    @Test
+    void testUrls() {
+        final var settings = settings(" ldap://a:389/,ldap://b:389/  ldap://a:389/ ");
+        assertEquals(List.of("ldap://a:389/", "ldap://b:389/"), settings.urls());
+    }
+
+    @Test
+    void testFailover() {
+        final var attempted = new ArrayList<String>();
+
+        // The unreachable replica is attempted first, as it was configured first (and neither has been measured).
+        assertEquals("example", replicas.execute(replica -> {
+            attempted.add(replica.url());
+            return lookUpBase(replica);
+        }));
+        assertEquals(List.of(unreachable.url(), reachable.url()), attempted);
+        assertFalse(unreachable.isAvailable());
+        assertTrue(reachable.isAvailable());
+
+        // The unavailable replica is not attempted again.
+        attempted.clear();
+        replicas.execute(replica -> {
+            attempted.add(replica.url());
+            return lookUpBase(replica);
+        });
+        assertEquals(List.of(reachable.url()), attempted);
+    }
+
+    @Test
+    void testEveryReplicaFails() {
+        server.close();
+
+        assertThrows(RuntimeException.class, () -> replicas.execute(this::lookUpBase));
+        assertFalse(unreachable.isAvailable());
+        assertFalse(reachable.isAvailable());
+    }
+
+    @Test
+    void testDirectoryErrorsDoNotMarkReplicaUnavailable() {
+        assertThrows(UsernameNotFoundException.class, () -> replicas.execute(replica -> {
+            throw new UsernameNotFoundException("User could not be found in LDAP");
+        }));
+        assertTrue(unreachable.isAvailable());
+        assertTrue(reachable.isAvailable());
+    }
+
+    @Test
+    void testSelectsLowestLatency() {
+        markMeasured(unreachable, 50);
+        markMeasured(reachable, 5);
+        assertSame(reachable, replicas.select(List.of()));
+
+        // The faster replica costs more once enough requests are outstanding on it.
+        for (int i = 0; i < 10; i++) {
+            reachable.onStart();
+        }
+        assertSame(unreachable, replicas.select(List.of()));
+    }
+
+    @Test
+    void testReprobe() {
+        reachable.onStart();
+        reachable.onFailure(clock.get());
+        assertFalse(reachable.isAvailable());
+
+        // The replica is not re-probed until it is due.
+        replicas.probeUnavailable();
+        assertFalse(reachable.isAvailable());
+
+        clock.addAndGet(LDAPReplica.RETRY_INTERVAL_MILLIS);
+        replicas.probeUnavailable();
+        assertTrue(reachable.isAvailable());
+    }
+
+    @Test
+    void testReprobeBacksOff() {
+        unreachable.onStart();
+        unreachable.onFailure(clock.get());
+
+        clock.addAndGet(LDAPReplica.RETRY_INTERVAL_MILLIS);
+        replicas.probeUnavailable();
+        assertFalse(unreachable.isAvailable());
+        assertEquals(clock.get() + (2 * LDAPReplica.RETRY_INTERVAL_MILLIS), unreachable.retryAt());
+    }
+
+    @Test
+    void testIsUnavailable() {
+        assertTrue(LDAPReplicaSet.isUnavailable(new CommunicationException(
+                new javax.naming.CommunicationException("Connection refused")
+        )));
+        assertTrue(LDAPReplicaSet.isUnavailable(new UncategorizedLdapException(
+                new NamingException("LDAP response read timed out, timeout used: 10000 ms.")
+        )));
+        assertFalse(LDAPReplicaSet.isUnavailable(new UsernameNotFoundException("User could not be found in LDAP")));
+    }
+
+    private String lookUpBase(final LDAPReplica replica) {
+        return replica.client().search()
+                .query(query()
+                        .base("")
+                        .searchScope(SearchScope.OBJECT)
+                        .filter("(objectClass=*)"))
+                .toList((AttributesMapper<String>) attributes ->
+                        attributes.get("dc").get().toString())
+                .get(0);
+    }
+
+    private static LDAPSettings settings(final String url) {
+        return new LDAPSettings.Builder()
+                .enabled(true)
+                .url(url)
+                .baseDN(InMemoryDirectory.BASE_DN)
+                .userSearchBase("")
+                .userSearchFilter("")
+                .groupSearchBase("")
+                .groupSearchFilter("")
+                .build();
+    }
+
+    private static void markMeasured(final LDAPReplica replica, final long latencyMillis) {
+        replica.onStart();
+        replica.onSuccess(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+    }
+
+}
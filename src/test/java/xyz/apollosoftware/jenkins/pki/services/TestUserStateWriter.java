@@ -0,0 +1,106 @@
+package xyz.apollosoftware.jenkins.pki.services;
+
+import hudson.ExtensionList;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@WithJenkins
+class TestUserStateWriter {
+
+    private final AtomicInteger saves = new AtomicInteger();
+
+    private final SaveableListener listener = new SaveableListener() {
+        @Override
+        public void onChange(final Saveable o, final XmlFile file) {
+            if (o instanceof User) saves.incrementAndGet();
+        }
+    };
+
+    private final UserStateWriter writer = new UserStateWriter();
+
+    private User user;
+
+    @BeforeEach
+    void setUp(final JenkinsRule rule) {
+        user = User.getById("foo", true);
+        ExtensionList.lookup(SaveableListener.class).add(listener);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ExtensionList.lookup(SaveableListener.class).remove(listener);
+    }
+
+    @Test
+    void testChangedStateIsSaved() {
+        writer.update(user, state("Foo", Set.of("staff")));
+        assertEquals(0, saves.get());
+
+        writer.flush();
+        assertEquals(1, saves.get());
+        assertEquals("Foo", user.getFullName());
+        assertTrue(state("Foo", Set.of("staff")).isAppliedTo(user));
+    }
+
+    @Test
+    void testUnchangedStateIsNotSaved() {
+        writer.update(user, state("Foo", Set.of("staff")));
+        writer.flush();
+        saves.set(0);
+
+        writer.update(user, state("Foo", Set.of("staff")));
+        writer.flush();
+        assertEquals(0, saves.get());
+    }
+
+    @Test
+    void testChangesAreCoalesced() {
+        writer.update(user, state("Foo", Set.of("staff")));
+        writer.update(user, state("Foo", Set.of("staff", "admins")));
+        writer.update(user, state("Foo Bar", Set.of("staff", "admins")));
+
+        writer.flush();
+        assertEquals(1, saves.get());
+        assertTrue(state("Foo Bar", Set.of("staff", "admins")).isAppliedTo(user));
+    }
+
+    @Test
+    void testRevertedChangeIsDropped() {
+        writer.update(user, state("Foo", Set.of("staff")));
+        writer.flush();
+        saves.set(0);
+
+        // A change that is reverted before it is written is never written.
+        writer.update(user, state("Foo", Set.of("staff", "admins")));
+        writer.update(user, state("Foo", Set.of("staff")));
+        writer.flush();
+        assertEquals(0, saves.get());
+        assertTrue(state("Foo", Set.of("staff")).isAppliedTo(user));
+    }
+
+    @Test
+    void testFlushOnShutdown() {
+        UserStateWriter.get().update(user, state("Foo", Set.of("staff")));
+
+        UserStateWriter.flushOnShutdown();
+        assertEquals(1, saves.get());
+        assertTrue(state("Foo", Set.of("staff")).isAppliedTo(user));
+    }
+
+    private static UserStateWriter.UserState state(final String fullName, final Set<String> groups) {
+        return new UserStateWriter.UserState(fullName, "foo@example.com", "CN=foo,O=Example", groups, "foo", null);
+    }
+
+}
@@ -0,0 +1,24 @@
+package xyz.apollosoftware.jenkins.pki.struct;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestLDAPUser {
+
+    @Test
+    void testGroupNameOf() {
+        assertEquals("developers", LDAPUser.groupNameOf("CN=developers,OU=groups,O=Example"));
+        assertEquals("developers", LDAPUser.groupNameOf("cn=developers,ou=groups,o=Example"));
+        assertEquals("Smith, Jones", LDAPUser.groupNameOf("CN=Smith\\, Jones,OU=groups"));
+    }
+
+    @Test
+    void testGroupNameOfWithoutCommonName() {
+        assertNull(LDAPUser.groupNameOf("OU=groups,O=Example"));
+        assertNull(LDAPUser.groupNameOf(""));
+        assertNull(LDAPUser.groupNameOf(null));
+        assertNull(LDAPUser.groupNameOf("not a DN"));
+    }
+
+}
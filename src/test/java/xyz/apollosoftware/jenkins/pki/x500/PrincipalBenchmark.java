@@ -0,0 +1,86 @@
+package xyz.apollosoftware.jenkins.pki.x500;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import xyz.apollosoftware.jenkins.pki.settings.CustomAttributeSelector;
+import xyz.apollosoftware.jenkins.pki.struct.PKIMapping;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.security.auth.x500.X500Principal;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.util.stream.Collectors.*;
+
+/**
+ * Benchmarks parsing a certificate subject, by walking its DER encoding, against formatting it as an RFC 2253 string
+ * and parsing that with {@link LdapName} (as {@link Principal} used to).
+ *
+ * <p>Decoding a custom (BER-encoded) attribute with {@link RelativeDN#fromLdapRdn(Rdn, Set)}, and resolving a
+ * {@link PKIMapping} (with a custom attribute) into a {@link SubjectExtractionPlan}, are also benchmarked.
+ */
+@State(Scope.Benchmark)
+public class PrincipalBenchmark {
+
+    private static final String EMAIL_OID = "1.2.840.113549.1.9.1";
+
+    private X500Principal principal;
+    private Set<String> customTypes;
+    private SubjectExtractionPlan plan;
+    private Rdn customRdn;
+    private Set<CustomAttributeSelector> customAttributes;
+
+    @Setup
+    public void setUp() throws InvalidNameException {
+        principal = new X500Principal("CN=Foo Bar,UID=foo,OU=team,OU=staff,O=Acme,C=GB,%s=foo@bar.com".formatted(EMAIL_OID));
+        customTypes = Set.of(EMAIL_OID);
+        customAttributes = Set.of(new CustomAttributeSelector(EMAIL_OID, "email"));
+        plan = compile();
+
+        // The RFC 2253 form of the subject holds custom attributes as hex-encoded BER.
+        customRdn = new LdapName(principal.getName()).getRdns().stream()
+                .filter(rdn -> rdn.getType().equals(EMAIL_OID))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Benchmark
+    public Principal parse() {
+        return Principal.parse(principal, customTypes);
+    }
+
+    @Benchmark
+    public Map<String, Set<String>> parseRFC2253() throws InvalidNameException {
+        return new LdapName(principal.getName()).getRdns().stream()
+                .map(rdn -> RelativeDN.fromLdapRdn(rdn, customTypes))
+                .filter(Objects::nonNull)
+                .collect(groupingBy(RelativeDN::key, mapping(RelativeDN::value, toUnmodifiableSet())));
+    }
+
+    @Benchmark
+    public SubjectExtractionPlan.Subject extract() {
+        return plan.extract(principal);
+    }
+
+    @Benchmark
+    public RelativeDN fromLdapRdnCustomOID() {
+        return RelativeDN.fromLdapRdn(customRdn, customTypes);
+    }
+
+    @Benchmark
+    public SubjectExtractionPlan compile() {
+        return SubjectExtractionPlan.compile(new PKIMapping.Builder()
+                .usernameField("uid")
+                .nameField("cn")
+                .groupField("ou")
+                .emailField("email")
+                .customAttributes(customAttributes)
+                .build());
+    }
+
+}
@@ -54,6 +54,31 @@ class TestPrincipal {
         ), Objects.requireNonNull(Principal.parse(new X500Principal("CN=foo,1.2.840.113549.1.9.1=foo@bar.com"), Collections.singleton("1.2.840.113549.1.9.1"))).getRelativeDNs());
     }
 
+    @Test
+    void testParseX500PrincipalMultiValuedRDN() {
+        // Only the first attribute (by type) of a multi-valued RDN is parsed.
+        assertEquals(Map.of(
+                "CN", Collections.singleton("foo"),
+                "O", Collections.singleton("bar")
+        ), Objects.requireNonNull(Principal.parse(new X500Principal("OU=baz+CN=foo,O=bar"), Collections.emptySet())).getRelativeDNs());
+    }
+
+    @Test
+    void testParseX500PrincipalCustomFieldEncodings() {
+        // BMPString
+        assertEquals(Map.of(
+                "1.2.3.4", Collections.singleton("AB")
+        ), Objects.requireNonNull(Principal.parse(new X500Principal("1.2.3.4=#1e0400410042"), Collections.singleton("1.2.3.4"))).getRelativeDNs());
+
+        // UTF8String
+        assertEquals(Map.of(
+                "1.2.3.4", Collections.singleton("abc")
+        ), Objects.requireNonNull(Principal.parse(new X500Principal("1.2.3.4=#0c03616263"), Collections.singleton("1.2.3.4"))).getRelativeDNs());
+
+        // Not a string (OCTET STRING)
+        assertEquals(Map.of(), Objects.requireNonNull(Principal.parse(new X500Principal("1.2.3.4=#0403616263"), Collections.singleton("1.2.3.4"))).getRelativeDNs());
+    }
+
     @Test
     void testParseX500PrincipalBadCharacters() {
         assertEquals(Map.of(
@@ -0,0 +1,68 @@
+package xyz.apollosoftware.jenkins.pki.x500;
+
+import org.junit.jupiter.api.Test;
+import xyz.apollosoftware.jenkins.pki.settings.CustomAttributeSelector;
+import xyz.apollosoftware.jenkins.pki.struct.PKIMapping;
+
+import javax.security.auth.x500.X500Principal;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestSubjectExtractionPlan {
+
+    @Test
+    void testExtractMappedFields() {
+        final var plan = SubjectExtractionPlan.compile(new PKIMapping.Builder()
+                .usernameField("uid")
+                .nameField("CN")
+                .groupField("OU")
+                .build());
+
+        final var subject = Objects.requireNonNull(plan.extract(new X500Principal("CN=Foo Bar,UID=foo,OU=staff,C=GB")));
+        assertEquals("CN=Foo Bar,UID=foo,OU=staff,C=GB", subject.dn());
+        assertEquals("foo", subject.username());
+        assertEquals("Foo Bar", subject.name());
+        assertEquals("staff", subject.group());
+        assertNull(subject.email());
+        assertEquals("Foo Bar", subject.commonName());
+    }
+
+    @Test
+    void testExtractUnmappedFields() {
+        final var plan = SubjectExtractionPlan.compile(new PKIMapping.Builder().build());
+
+        final var subject = Objects.requireNonNull(plan.extract(new X500Principal("CN=foo,OU=staff")));
+        assertNull(subject.username());
+        assertNull(subject.group());
+        assertEquals("foo", subject.commonName());
+    }
+
+    @Test
+    void testExtractDuplicateFields() {
+        final var plan = SubjectExtractionPlan.compile(new PKIMapping.Builder().groupField("OU").build());
+
+        // The most specific value is extracted.
+        final var subject = Objects.requireNonNull(plan.extract(new X500Principal("CN=foo,OU=team,OU=staff")));
+        assertEquals("team", subject.group());
+    }
+
+    @Test
+    void testExtractCustomField() {
+        final var customAttributes = Set.of(new CustomAttributeSelector("1.2.840.113549.1.9.1", "email"));
+        final var principal = new X500Principal("CN=foo,1.2.840.113549.1.9.1=foo@bar.com");
+
+        // Without the custom attribute, the field is not decoded.
+        assertNull(Objects.requireNonNull(SubjectExtractionPlan.compile(new PKIMapping.Builder()
+                .emailField("1.2.840.113549.1.9.1")
+                .build()).extract(principal)).email());
+
+        // With the custom attribute, the field can be mapped by its name.
+        assertEquals("foo@bar.com", Objects.requireNonNull(SubjectExtractionPlan.compile(new PKIMapping.Builder()
+                .emailField("email")
+                .customAttributes(customAttributes)
+                .build()).extract(principal)).email());
+    }
+
+}